@@ -0,0 +1,80 @@
+package com.agririze.petproject;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the prefix lookups of {@link BreedIndex} and reports how long one takes on a
+ * device with many distinct breeds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BreedIndexTest {
+
+    private static final String LOG_TAG = BreedIndexTest.class.getSimpleName();
+
+    private static final int BREEDS = 10_000;
+
+    private static final int LOOKUPS = 100_000;
+
+    @Test
+    public void lookup_matchesPrefixIgnoringCase(){
+        BreedIndex index = new BreedIndex(null);
+        index.setBreeds(Arrays.asList("Terrier","Beagle","tibetan Mastiff","Terrier","Boxer","Tosa"));
+
+        assertEquals(Arrays.asList("Terrier","tibetan Mastiff","Tosa"),index.lookup("t",10));
+        assertEquals(Arrays.asList("Terrier","tibetan Mastiff"),index.lookup("T",2));
+        assertEquals(Collections.singletonList("Beagle"),index.lookup("BEA",10));
+        assertEquals(Collections.<String>emptyList(),index.lookup("Z",10));
+        assertEquals(5,index.lookup("",10).size());
+    }
+
+    @Test
+    public void lookup_time(){
+        Random random = new Random(42);
+        List<String> breeds = new ArrayList<>(BREEDS);
+        for(int i = 0; i < BREEDS; i++){
+            breeds.add(randomWord(random,4 + random.nextInt(12)));
+        }
+        BreedIndex index = new BreedIndex(null);
+        index.setBreeds(breeds);
+
+        String[] prefixes = new String[LOOKUPS];
+        for(int i = 0; i < LOOKUPS; i++){
+            prefixes[i] = randomWord(random,1 + random.nextInt(3));
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for(String prefix : prefixes){
+            index.lookup(prefix,20);
+        }
+        long micros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+
+        Bundle timings = new Bundle();
+        timings.putDouble("breed_lookup_us",(double) micros / LOOKUPS);
+        Log.i(LOG_TAG,"Prefix lookups among " + BREEDS + " breeds: " + timings);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,timings);
+    }
+
+    private static String randomWord(Random random, int length){
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++){
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        chars[0] = Character.toUpperCase(chars[0]);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,92 @@
+package com.agririze.petproject;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Debug;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.data.Pet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the objects allocated while catalog rows are rebound on the main thread, as
+ * they are during a fling. Rows are bound from pets whose text is display-ready, so a
+ * bind should allocate nothing at all. ART's count covers the whole process, so a
+ * control loop that allocates once per pass first shows that the count moves, and
+ * the binds may allocate no more than {@link #NOISE} objects on other threads' behalf.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetPagedAdapterAllocationTest {
+
+    private static final int WARM_UP_BINDS = 100;
+
+    private static final int BINDS = 10_000;
+
+    /** Objects the rest of the process may allocate while the binds run */
+    private static final long NOISE = BINDS / 100;
+
+    private static final String OBJECTS_ALLOCATED = "art.gc.objects-allocated";
+
+    /** Keeps the control's allocations from being optimized away */
+    private static final Object[] sSink = new Object[16];
+
+    @Test
+    public void bind_allocatesNothing(){
+        // Runtime stats are readable from API 23, and older runtimes lack this one
+        assumeTrue(Build.VERSION.SDK_INT>=Build.VERSION_CODES.M);
+        assumeNotNull(Debug.getRuntimeStat(OBJECTS_ALLOCATED));
+        final Context context = new ContextThemeWrapper(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),R.style.AppTheme);
+        final Pet[] pets = {
+                new Pet(1,"Toto","Terrier",1,7,null,"Terrier"),
+                new Pet(2,"Bella",null,2,4,null,context.getString(R.string.unknown_breed))
+        };
+        final long[] allocations = new long[2];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                PetPagedAdapter adapter = new PetPagedAdapter(context, new PetPagedAdapter.OnPetClickListener() {
+                    @Override
+                    public void onPetClick(long id) {
+                    }
+                });
+                PetPagedAdapter.PetViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context),0);
+                for(int i = 0; i < WARM_UP_BINDS; i++){
+                    holder.bind(pets[i % pets.length]);
+                }
+
+                long start = objectsAllocated();
+                for(int i = 0; i < BINDS; i++){
+                    sSink[i % sSink.length] = new int[1];
+                }
+                allocations[0] = objectsAllocated() - start;
+
+                start = objectsAllocated();
+                for(int i = 0; i < BINDS; i++){
+                    holder.bind(pets[i % pets.length]);
+                }
+                allocations[1] = objectsAllocated() - start;
+                adapter.close();
+            }
+        });
+
+        assertTrue("Objects counted for " + BINDS + " control allocations: " + allocations[0],
+                allocations[0]>=BINDS);
+        assertTrue("Objects allocated by " + BINDS + " binds: " + allocations[1],allocations[1]<=NOISE);
+    }
+
+    private static long objectsAllocated(){
+        return Long.parseLong(Debug.getRuntimeStat(OBJECTS_ALLOCATED));
+    }
+}
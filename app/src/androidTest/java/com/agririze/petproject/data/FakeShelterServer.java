@@ -0,0 +1,129 @@
+package com.agririze.petproject.data;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+/**
+ * In-memory shelter server for MockWebServer, speaking the protocol of
+ * {@link PetSyncClient}. Every pushed change is appended to one stream under the next
+ * sequence number, and pulls page through that stream, so positions are plain numbers.
+ */
+class FakeShelterServer extends Dispatcher {
+
+    /** Device id of the changes added by tests, standing in for another shelter */
+    static final String OTHER_DEVICE = "other-device";
+
+    private final List<JSONObject> mChanges = new ArrayList<>();
+    private final List<String> mDevices = new ArrayList<>();
+
+    /** Sequence number of the first change in mChanges, less one */
+    private long mFirstSeq;
+
+    private long mPushedBytes;
+
+    @NonNull
+    @Override
+    public synchronized MockResponse dispatch(@NonNull RecordedRequest request) {
+        try{
+            if("POST".equals(request.getMethod())){
+                return push(request);
+            }
+            return pull(request);
+        }catch (IOException | JSONException e){
+            return new MockResponse().setResponseCode(400).setBody(e.toString());
+        }
+    }
+
+    private MockResponse push(RecordedRequest request) throws IOException, JSONException {
+        mPushedBytes += request.getBodySize();
+        Buffer body = request.getBody();
+        String json = "gzip".equals(request.getHeader("Content-Encoding"))
+                ? Okio.buffer(new GzipSource(body)).readUtf8() : body.readUtf8();
+        JSONObject push = new JSONObject(json);
+        JSONArray changes = push.getJSONArray("changes");
+        for(int i = 0; i < changes.length(); i++){
+            add(push.getString("device"),changes.getJSONObject(i));
+        }
+        return new MockResponse().setResponseCode(204);
+    }
+
+    private MockResponse pull(RecordedRequest request) throws IOException, JSONException {
+        String since = request.getRequestUrl().queryParameter("since");
+        int limit = Integer.parseInt(request.getRequestUrl().queryParameter("limit"));
+        String device = request.getRequestUrl().queryParameter("device");
+
+        long next = since==null ? 0 : Long.parseLong(since);
+        JSONArray changes = new JSONArray();
+        for(int i = (int) Math.max(0,next - mFirstSeq); i < mChanges.size() && changes.length()<limit; i++){
+            if(!mDevices.get(i).equals(device)){
+                changes.put(mChanges.get(i));
+            }
+            next = mFirstSeq + i + 1;
+        }
+        String json = new JSONObject().put("changes",changes).put("next",String.valueOf(next)).toString();
+
+        MockResponse response = new MockResponse().setHeader("Content-Type","application/json");
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if(acceptEncoding!=null && acceptEncoding.contains("gzip")){
+            Buffer gzipped = new Buffer();
+            BufferedSink sink = Okio.buffer(new GzipSink(gzipped));
+            sink.writeUtf8(json);
+            sink.close();
+            return response.setHeader("Content-Encoding","gzip").setBody(gzipped);
+        }
+        return response.setBody(json);
+    }
+
+    synchronized void add(String device, JSONObject change){
+        mChanges.add(change);
+        mDevices.add(device);
+    }
+
+    /**
+     * Adds a change made by {@link #OTHER_DEVICE}.
+     */
+    void addRemote(String syncId, long changedAt, String name, int weight) throws JSONException {
+        add(OTHER_DEVICE,new JSONObject().put("id",syncId).put("changed_at",changedAt).put("deleted",false)
+                .put("name",name).put("breed","Terrier").put("gender",PetContract.PetEntry.GENDER_MALE)
+                .put("weight",weight));
+    }
+
+    void addRemoteDelete(String syncId, long changedAt) throws JSONException {
+        add(OTHER_DEVICE,new JSONObject().put("id",syncId).put("changed_at",changedAt).put("deleted",true));
+    }
+
+    /** Changes pushed or added since the last {@link #clear} */
+    synchronized List<JSONObject> changes(){
+        return new ArrayList<>(mChanges);
+    }
+
+    synchronized long pushedBytes(){
+        return mPushedBytes;
+    }
+
+    /**
+     * Forgets every change, keeping the sequence going so saved positions stay valid.
+     */
+    synchronized void clear(){
+        mFirstSeq += mChanges.size();
+        mChanges.clear();
+        mDevices.clear();
+        mPushedBytes = 0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.agririze.petproject.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures what moving breeds into their own table does to a database of {@link #ROWS}
+ * pets: its size once vacuumed, and the time to count the pets of each breed, on the
+ * version 7 schema with a breed column and again after migrating it to breed ids.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetBreedNormalizationTest {
+
+    private static final String LOG_TAG = PetBreedNormalizationTest.class.getSimpleName();
+
+    private static final int ROWS = 1_000_000;
+
+    /** Runs of each count, the fastest of which is reported */
+    private static final int RUNS = 5;
+
+    private static final String COUNT_BY_BREED_TEXT = "SELECT COALESCE(" + PetContract.PetEntry.COLUMN_PET_BREED
+            + ", '') AS bucket, COUNT(*) FROM " + PetContract.PetEntry.TABLE_NAME + " WHERE "
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL GROUP BY bucket";
+
+    /** As the provider counts live breed stats since version 8 */
+    private static final String COUNT_BY_BREED_ID = "SELECT COALESCE(" + PetContract.PetEntry.COLUMN_PET_BREED
+            + ", ''), total FROM (SELECT " + PetContract.PetEntry.COLUMN_PET_BREED_ID + ", COUNT(*) AS total FROM "
+            + PetContract.PetEntry.TABLE_NAME + " WHERE " + PetContract.PetEntry.COLUMN_PET_DELETED_AT
+            + " IS NULL GROUP BY " + PetContract.PetEntry.COLUMN_PET_BREED_ID + ") LEFT JOIN "
+            + PetContract.PetEntry.BREEDS_TABLE_NAME + " USING (" + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")";
+
+    private File mFile;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp(){
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mFile = context.getDatabasePath("normalization_test.db");
+        SQLiteDatabase.deleteDatabase(mFile);
+        mFile.getParentFile().mkdirs();
+        mDatabase = SQLiteDatabase.openOrCreateDatabase(mFile,null);
+        PetMigrationTest.createVersion1(mDatabase,ROWS);
+        migrate(1,7);
+    }
+
+    @After
+    public void tearDown(){
+        mDatabase.close();
+        SQLiteDatabase.deleteDatabase(mFile);
+    }
+
+    @Test
+    public void breedIds_sizeAndCountByBreed(){
+        Bundle results = new Bundle();
+        Map<String, Long> before = measure(results,"breed_text",COUNT_BY_BREED_TEXT);
+        migrate(7,8);
+        Map<String, Long> after = measure(results,"breed_id",COUNT_BY_BREED_ID);
+
+        Log.i(LOG_TAG,"Breeds of " + ROWS + " pets as text and as ids: " + results);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,results);
+        assertEquals(before,after);
+    }
+
+    private void migrate(int fromVersion, int toVersion){
+        mDatabase.beginTransaction();
+        try{
+            PetMigration.migrate(mDatabase,PetDbHelper.MIGRATIONS,fromVersion,toVersion,null);
+            mDatabase.setTransactionSuccessful();
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Vacuums the database and reports its size and the fastest of {@link #RUNS} runs
+     * of countByBreed, whose counts it returns by breed.
+     */
+    private Map<String, Long> measure(Bundle results, String label, String countByBreed){
+        mDatabase.execSQL("VACUUM");
+        results.putLong(label + "_bytes",DatabaseUtils.longForQuery(mDatabase,"PRAGMA page_count",null)
+                * DatabaseUtils.longForQuery(mDatabase,"PRAGMA page_size",null));
+
+        Map<String, Long> counts = new HashMap<>();
+        long fastest = Long.MAX_VALUE;
+        for(int run = 0; run < RUNS; run++){
+            counts.clear();
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = mDatabase.rawQuery(countByBreed,null);
+            try{
+                while(cursor.moveToNext()){
+                    counts.put(cursor.getString(0),cursor.getLong(1));
+                }
+            }finally {
+                cursor.close();
+            }
+            fastest = Math.min(fastest,SystemClock.elapsedRealtimeNanos() - start);
+        }
+        results.putLong(label + "_count_by_breed_us",fastest / 1000);
+        return counts;
+    }
+}
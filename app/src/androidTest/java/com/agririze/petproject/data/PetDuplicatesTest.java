@@ -0,0 +1,169 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the keys, Bloom filter and lookup of {@link PetDuplicates}, and that a merged
+ * pet is read back merged, and reports the filter's false positive rate and the time
+ * of one probe at {@link #KEYS} pets.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetDuplicatesTest {
+
+    private static final String LOG_TAG = PetDuplicatesTest.class.getSimpleName();
+
+    private static final int KEYS = 100_000;
+
+    private static final String DATABASE_NAME = "duplicates_test.db";
+
+    /**
+     * The indexed lookup behind the filter, against the breeds table of a new database.
+     */
+    @Test
+    public void find_matchesLivePetsThroughBreedIds(){
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        PetDbHelper helper = new PetDbHelper(context,DATABASE_NAME);
+        PetStatements statements = new PetStatements(helper.getWritableDatabase());
+        PetDuplicates duplicates = new PetDuplicates(helper);
+        try{
+            long toto = statements.insert(pet("Toto","Terrier",1,7));
+            long bella = statements.insert(pet("Bella",null,2,4));
+
+            assertEquals(toto,duplicates.find(statements,pet("TOTO","terrier",1,7)));
+            assertEquals(bella,duplicates.find(statements,pet("bella","",2,4)));
+            assertEquals(-1,duplicates.find(statements,pet("Toto","Terrier",1,8)));
+            assertEquals(-1,duplicates.find(statements,pet("Toto","Beagle",1,7)));
+
+            statements.deleteById(toto,System.currentTimeMillis());
+            assertEquals(-1,duplicates.find(statements,pet("Toto","Terrier",1,7)));
+        }finally {
+            duplicates.close();
+            statements.close();
+            helper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    /**
+     * A pet that was cached before a duplicate was merged into it is read back merged,
+     * through insert and through bulkInsert.
+     */
+    @Test
+    public void merge_cachedPetIsReadBackMerged(){
+        ContentResolver resolver = InstrumentationRegistry.getInstrumentation().getTargetContext().getContentResolver();
+        Uri merge = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_DUPLICATES,PetContract.DUPLICATES_MERGE)
+                .build();
+        String name = "Merged " + System.currentTimeMillis();
+        Uri uri = resolver.insert(PetContract.PetEntry.CONTENT_URI,pet(name,"Terrier",1,7));
+        assertNotNull(uri);
+        try{
+            assertNull(readPet(resolver,uri).photo);
+
+            ContentValues photo = pet(name,"Terrier",1,7);
+            photo.put(PetContract.PetEntry.COLUMN_PET_PHOTO,"merged.jpg");
+            assertEquals(uri,resolver.insert(merge,photo));
+            assertEquals("merged.jpg",readPet(resolver,uri).photo);
+
+            photo.put(PetContract.PetEntry.COLUMN_PET_PHOTO,"bulk.jpg");
+            assertEquals(1,resolver.bulkInsert(merge,new ContentValues[]{ photo }));
+            assertEquals("bulk.jpg",readPet(resolver,uri).photo);
+        }finally {
+            resolver.delete(uri,null,null);
+        }
+    }
+
+    @Test
+    public void key_ignoresAsciiCaseAndEmptyBreed(){
+        assertEquals(PetDuplicates.key("Toto","Terrier",1,7),PetDuplicates.key("TOTO","terrier",1,7));
+        assertEquals(PetDuplicates.key("Toto",null,1,7),PetDuplicates.key("toto","",1,7));
+        assertNotEquals(PetDuplicates.key("Toto","Terrier",1,7),PetDuplicates.key("Toto","Terrier",2,7));
+        assertNotEquals(PetDuplicates.key("Toto","Terrier",1,7),PetDuplicates.key("Toto","Terrier",1,8));
+        // Like NOCASE, only ASCII letters are folded
+        assertNotEquals(PetDuplicates.key("Éclair",null,0,0),PetDuplicates.key("éclair",null,0,0));
+    }
+
+    @Test
+    public void filter_noFalseNegativesAndFalsePositiveRate(){
+        Random random = new Random(42);
+        PetDuplicates.Filter filter = new PetDuplicates.Filter(KEYS);
+        String[] added = new String[KEYS];
+        for(int i = 0; i < KEYS; i++){
+            added[i] = randomKey(random,i);
+            filter.add(added[i]);
+        }
+        for(String key : added){
+            assertTrue(key,filter.mightContain(key));
+        }
+
+        String[] absent = new String[KEYS];
+        for(int i = 0; i < KEYS; i++){
+            absent[i] = randomKey(random,KEYS + i);
+        }
+        int falsePositives = 0;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for(String key : absent){
+            if(filter.mightContain(key)){
+                falsePositives++;
+            }
+        }
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        double rate = (double) falsePositives / KEYS;
+        Bundle results = new Bundle();
+        results.putDouble("duplicates_false_positive_rate",rate);
+        results.putDouble("duplicates_probe_ns",(double) nanos / KEYS);
+        Log.i(LOG_TAG,"Filter of " + KEYS + " pets: " + results);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,results);
+        assertTrue("False positive rate " + rate,rate < 0.02);
+    }
+
+    /** Reads the pet at uri through the provider's cache */
+    private static Pet readPet(ContentResolver resolver, Uri uri){
+        Cursor cursor = resolver.query(uri,Pet.PROJECTION,null,null,null);
+        try{
+            assertTrue(cursor.moveToFirst());
+            return Pet.fromCursor(cursor);
+        }finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues pet(String name, String breed, int gender, int weight){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,name);
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,breed);
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,gender);
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,weight);
+        values.putNull(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        return values;
+    }
+
+    /** A key unique to i, shaped like the keys of real pets */
+    private static String randomKey(Random random, int i){
+        return PetDuplicates.key("Pet " + i,random.nextBoolean() ? "Terrier" : null,random.nextInt(3),
+                1 + random.nextInt(60));
+    }
+}
@@ -0,0 +1,97 @@
+package com.agririze.petproject.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link PetMergeCursor} merges shelters' pages as one sorted page would be
+ * read from a single database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetMergeCursorTest {
+
+    private static final String[] COLUMNS = { PetContract.PetEntry._ID, PetContract.PetEntry.COLUMN_PET_NAME };
+
+    private static final String BY_NAME = PetContract.PetEntry.COLUMN_PET_NAME + " COLLATE NOCASE ASC, "
+            + PetContract.PetEntry._ID + " ASC";
+
+    @Test
+    public void merge_followsSortOrderAcrossCursors(){
+        Cursor merged = new PetMergeCursor(new Cursor[]{
+                pets(1,"bella",4,"Max",9,"toto"),
+                pets(5,null,2,"Bella",3,"luna"),
+        },BY_NAME,0,-1);
+        // NULL sorts first, then names ignoring case, then _id
+        assertEquals(Arrays.asList("5:null","1:bella","2:Bella","3:luna","4:Max","9:toto"),read(merged));
+    }
+
+    @Test
+    public void merge_appliesOffsetAndLimitToMergedRows(){
+        Cursor merged = new PetMergeCursor(new Cursor[]{
+                pets(1,"a",3,"c",5,"e"),
+                pets(2,"b",4,"d",6,"f"),
+        },BY_NAME,2,3);
+        assertEquals(Arrays.asList("3:c","4:d","5:e"),read(merged));
+    }
+
+    @Test
+    public void merge_descendingAndBinary(){
+        Cursor merged = new PetMergeCursor(new Cursor[]{
+                pets(3,"b",1,"B"),
+                pets(2,"a"),
+        },PetContract.PetEntry.COLUMN_PET_NAME + " DESC",0,-1);
+        // Upper case sorts before lower case in BINARY
+        assertEquals(Arrays.asList("3:b","2:a","1:B"),read(merged));
+    }
+
+    @Test
+    public void merge_withoutSortOrderConcatenates(){
+        Cursor merged = new PetMergeCursor(new Cursor[]{
+                pets(7,"z",8,"y"),
+                pets(1,"a"),
+        },null,0,-1);
+        assertEquals(Arrays.asList("7:z","8:y","1:a"),read(merged));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_rejectsColumnOutsideProjection(){
+        new PetMergeCursor(new Cursor[]{ pets(1,"a") },PetContract.PetEntry.COLUMN_PET_WEIGHT + " ASC",0,-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_rejectsExpressions(){
+        new PetMergeCursor(new Cursor[]{ pets(1,"a") },"length(" + PetContract.PetEntry.COLUMN_PET_NAME + ")",0,-1);
+    }
+
+    /** A shelter's page of (_id, name) pairs, already in the order being merged */
+    private static Cursor pets(Object... rows){
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for(int i = 0; i < rows.length; i += 2){
+            cursor.addRow(new Object[]{ rows[i], rows[i + 1] });
+        }
+        return cursor;
+    }
+
+    private static List<String> read(Cursor cursor){
+        List<String> rows = new ArrayList<>();
+        try{
+            while(cursor.moveToNext()){
+                rows.add(cursor.getLong(0) + ":" + cursor.getString(1));
+            }
+        }finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}
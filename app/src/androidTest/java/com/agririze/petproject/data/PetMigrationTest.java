@@ -0,0 +1,242 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Upgrades a version 1 database holding {@link #ROWS} pets to the current version and
+ * checks that it ends up with the same schema as a freshly created one, reporting how
+ * long each step took, and that the pets keep their breeds through the breeds table
+ * and can be written by breed name afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetMigrationTest {
+
+    private static final String LOG_TAG = PetMigrationTest.class.getSimpleName();
+
+    private static final int ROWS = 100_000;
+
+    private static final String[] BREEDS = { "Terrier", "Poodle", "Tabby", "Beagle", null };
+
+    private Context mContext;
+    private File mFile;
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp(){
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mFile = mContext.getDatabasePath("migration_test.db");
+        SQLiteDatabase.deleteDatabase(mFile);
+        mFile.getParentFile().mkdirs();
+        mDatabase = SQLiteDatabase.openOrCreateDatabase(mFile,null);
+        createVersion1(mDatabase,ROWS);
+    }
+
+    @After
+    public void tearDown(){
+        mDatabase.close();
+        SQLiteDatabase.deleteDatabase(mFile);
+    }
+
+    @Test
+    public void migrate_fromVersion1_matchesCreatedSchema(){
+        final Bundle timings = new Bundle();
+        migrate(new PetMigration.Listener() {
+            @Override
+            public void onMigrated(int version, long elapsedMillis) {
+                timings.putLong("migration_v" + version + "_ms",elapsedMillis);
+            }
+        });
+        Log.i(LOG_TAG,"Migrated " + ROWS + " pets: " + timings);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,timings);
+
+        assertEquals(ROWS,DatabaseUtils.queryNumEntries(mDatabase,PetContract.PetEntry.TABLE_NAME));
+        assertEquals(ROWS,DatabaseUtils.longForQuery(mDatabase,"SELECT SUM(" + PetContract.StatsEntry.COLUMN_TOTAL
+                + ") FROM " + PetContract.StatsEntry.TABLE_NAME + " WHERE " + PetContract.StatsEntry.COLUMN_KIND
+                + "=?",new String[]{ PetContract.StatsEntry.KIND_GENDER }));
+        assertEquals(ROWS / BREEDS.length,DatabaseUtils.longForQuery(mDatabase,"SELECT COUNT(*) FROM "
+                + PetContract.PetEntry.SEARCH_TABLE_NAME + " WHERE " + PetContract.PetEntry.SEARCH_TABLE_NAME
+                + " MATCH 'poodle'",null));
+
+        SQLiteDatabase created = SQLiteDatabase.create(null);
+        try{
+            new PetDbHelper(mContext).onCreate(created);
+            assertEquals(describeSchema(created),describeSchema(mDatabase));
+        }finally {
+            created.close();
+        }
+    }
+
+    @Test
+    public void migrate_breedsBecomeIdsThatWritesByNameResolve(){
+        migrate(new PetMigration.Listener() {
+            @Override
+            public void onMigrated(int version, long elapsedMillis) {
+            }
+        });
+        int perBreed = ROWS / BREEDS.length;
+        for(String breed : BREEDS){
+            assertEquals(String.valueOf(breed),perBreed,countBreed(breed));
+        }
+        assertEquals(BREEDS.length - 1,DatabaseUtils.queryNumEntries(mDatabase,PetContract.PetEntry.BREEDS_TABLE_NAME));
+        assertEquals(ROWS,DatabaseUtils.longForQuery(mDatabase,"SELECT SUM(" + PetContract.StatsEntry.COLUMN_TOTAL
+                + ") FROM " + PetContract.StatsEntry.TABLE_NAME + " WHERE " + PetContract.StatsEntry.COLUMN_KIND
+                + "=?",new String[]{ PetContract.StatsEntry.KIND_BREED }));
+
+        PetStatements statements = new PetStatements(mDatabase);
+        try{
+            // A new breed is added with the pet, through BREED_ID_OF
+            long id = statements.insert(pet("Rex","Boxer"));
+            assertEquals("Boxer",breedOf(id));
+            assertEquals(BREEDS.length,DatabaseUtils.queryNumEntries(mDatabase,PetContract.PetEntry.BREEDS_TABLE_NAME));
+            assertEquals(1,countSearch("boxer"));
+
+            statements.updateById(id,pet("Rex","Poodle"));
+            assertEquals("Poodle",breedOf(id));
+            assertEquals(0,countSearch("boxer"));
+
+            // A selection naming the breed, through SQLiteDatabase.update
+            ContentValues beagles = new ContentValues();
+            beagles.put(PetContract.PetEntry.COLUMN_PET_BREED,"Beagle");
+            assertEquals(perBreed,statements.update(beagles,PetContract.PetEntry.COLUMN_PET_BREED + "=?",
+                    new String[]{ "Tabby" }));
+            assertEquals(0,countBreed("Tabby"));
+            assertEquals(2 * perBreed,countBreed("Beagle"));
+            assertEquals(0,countSearch("tabby"));
+            assertEquals(2 * perBreed,countSearch("beagle"));
+        }finally {
+            statements.close();
+        }
+    }
+
+    private void migrate(PetMigration.Listener listener){
+        mDatabase.beginTransaction();
+        try{
+            PetMigration.migrate(mDatabase,PetDbHelper.MIGRATIONS,1,PetDbHelper.DATABASE_VERSION,listener);
+            mDatabase.setTransactionSuccessful();
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private long countBreed(String breed){
+        if(breed==null){
+            return DatabaseUtils.longForQuery(mDatabase,"SELECT COUNT(*) FROM " + PetDbHelper.PETS_WITH_BREEDS
+                    + " WHERE " + PetContract.PetEntry.COLUMN_PET_BREED + " IS NULL",null);
+        }
+        return DatabaseUtils.longForQuery(mDatabase,"SELECT COUNT(*) FROM " + PetDbHelper.PETS_WITH_BREEDS
+                + " WHERE " + PetContract.PetEntry.COLUMN_PET_BREED + "=?",new String[]{ breed });
+    }
+
+    private String breedOf(long id){
+        return DatabaseUtils.stringForQuery(mDatabase,"SELECT " + PetContract.PetEntry.COLUMN_PET_BREED + " FROM "
+                + PetDbHelper.PETS_WITH_BREEDS + " WHERE " + PetContract.PetEntry._ID + "=?",
+                new String[]{ String.valueOf(id) });
+    }
+
+    private long countSearch(String term){
+        return DatabaseUtils.longForQuery(mDatabase,"SELECT COUNT(*) FROM " + PetContract.PetEntry.SEARCH_TABLE_NAME
+                + " WHERE " + PetContract.PetEntry.SEARCH_TABLE_NAME + " MATCH ?",new String[]{ term });
+    }
+
+    private static ContentValues pet(String name, String breed){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,name);
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,breed);
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,PetContract.PetEntry.GENDER_MALE);
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,30);
+        values.putNull(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        return values;
+    }
+
+    /**
+     * The schema as first shipped, before any migration, holding rows pets.
+     */
+    static void createVersion1(SQLiteDatabase db, int rows){
+        db.execSQL("CREATE TABLE " + PetContract.PetEntry.TABLE_NAME + " ("
+                + PetContract.PetEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + PetContract.PetEntry.COLUMN_PET_NAME + " TEXT NOT NULL, "
+                + PetContract.PetEntry.COLUMN_PET_BREED + " TEXT, "
+                + PetContract.PetEntry.COLUMN_PET_GENDER + " INTEGER NOT NULL, "
+                + PetContract.PetEntry.COLUMN_PET_WEIGHT + " INTEGER NOT NULL DEFAULT 0)");
+        db.setVersion(1);
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + PetContract.PetEntry.TABLE_NAME + " ("
+                + PetContract.PetEntry.COLUMN_PET_NAME + ", " + PetContract.PetEntry.COLUMN_PET_BREED + ", "
+                + PetContract.PetEntry.COLUMN_PET_GENDER + ", " + PetContract.PetEntry.COLUMN_PET_WEIGHT
+                + ") VALUES (?, ?, ?, ?)");
+        db.beginTransaction();
+        try{
+            for(int i = 0; i < rows; i++){
+                insert.bindString(1,"Pet " + i);
+                String breed = BREEDS[i % BREEDS.length];
+                if(breed==null){
+                    insert.bindNull(2);
+                }else{
+                    insert.bindString(2,breed);
+                }
+                insert.bindLong(3,i % 3);
+                insert.bindLong(4,i % 40);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        }finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    /**
+     * Every table, index and trigger with the columns of each table, in a stable order.
+     * The SQL text is left out since ALTER TABLE and CREATE TABLE word columns differently.
+     */
+    private static List<String> describeSchema(SQLiteDatabase db){
+        List<String> schema = new ArrayList<>();
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master WHERE name NOT LIKE 'sqlite_%'"
+                + " AND name NOT LIKE 'android_%' ORDER BY type, name",null);
+        try{
+            while(cursor.moveToNext()){
+                schema.add(cursor.getString(0) + " " + cursor.getString(1));
+                if("table".equals(cursor.getString(0))){
+                    tables.add(cursor.getString(1));
+                }
+            }
+        }finally {
+            cursor.close();
+        }
+
+        for(String table : tables){
+            cursor = db.rawQuery("PRAGMA table_info(" + table + ")",null);
+            try{
+                while(cursor.moveToNext()){
+                    schema.add(table + "." + cursor.getString(1) + " " + cursor.getString(2)
+                            + (cursor.getInt(3)!=0 ? " NOT NULL" : "") + " pk=" + cursor.getInt(5));
+                }
+            }finally {
+                cursor.close();
+            }
+        }
+        return schema;
+    }
+}
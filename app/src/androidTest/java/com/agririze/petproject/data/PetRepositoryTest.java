@@ -0,0 +1,331 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link PetRepository} on a write thread that waits {@link #DELAY_MS} before every
+ * write, and checks that saves and deletes return to the main thread at once, that
+ * their callbacks come back on the main looper, and that updates to a pet queued
+ * behind a slow write go to the provider as one. Also checks that a transfer's outcome
+ * survives the activity that started it, and that one cancelled before it started ends
+ * at once.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetRepositoryTest {
+
+    private static final long DELAY_MS = 1_000;
+
+    /** Longest a call may block the main thread, far below the delay */
+    private static final long MAX_CALL_MS = DELAY_MS / 10;
+
+    /**
+     * Runs tasks one at a time, in order, each after the delay, and counts the tasks it
+     * was given.
+     */
+    private static final class DelayedExecutor implements Executor {
+
+        private final ExecutorService mThread = Executors.newSingleThreadExecutor();
+        final AtomicInteger mTasks = new AtomicInteger();
+
+        @Override
+        public void execute(final Runnable task) {
+            mTasks.incrementAndGet();
+            mThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    SystemClock.sleep(DELAY_MS);
+                    task.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Records what a callback got and whether it ran on the main looper.
+     */
+    private static final class Recorder<T> implements PetRepository.TransferCallback<T> {
+
+        final CountDownLatch mDone = new CountDownLatch(1);
+        volatile T mResult;
+        volatile Exception mFailure;
+        volatile boolean mCancelled;
+        volatile boolean mOnMainLooper;
+
+        @Override
+        public void onSuccess(T result) {
+            mResult = result;
+            finish();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            mFailure = e;
+            finish();
+        }
+
+        @Override
+        public void onCancelled() {
+            mCancelled = true;
+            finish();
+        }
+
+        private void finish(){
+            mOnMainLooper = Looper.myLooper()==Looper.getMainLooper();
+            mDone.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("No callback",mDone.await(10 * DELAY_MS,TimeUnit.MILLISECONDS));
+            assertNull(String.valueOf(mFailure),mFailure);
+            assertFalse("Cancelled",mCancelled);
+            assertTrue("Callback off the main looper",mOnMainLooper);
+        }
+    }
+
+    private ContentResolver mResolver;
+    private DelayedExecutor mExecutor;
+    private PetRepository mRepository;
+    private final List<Uri> mPets = new ArrayList<>();
+
+    @Before
+    public void setUp(){
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mResolver = context.getContentResolver();
+        mExecutor = new DelayedExecutor();
+        mRepository = new PetRepository(mResolver,new PetPhotos(context),mExecutor);
+    }
+
+    @After
+    public void tearDown(){
+        mExecutor.mThread.shutdown();
+        for(Uri uri : mPets){
+            mResolver.delete(uri,null,null);
+        }
+    }
+
+    @Test
+    public void insert_returnsAtOnceAndCallsBackOnMainLooper() throws Exception {
+        final Recorder<Uri> callback = new Recorder<>();
+        long blocked = onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.insert(pet("Toto",7),callback);
+            }
+        });
+        assertTrue("Insert blocked the main thread for " + blocked + " ms",blocked < MAX_CALL_MS);
+
+        callback.await();
+        assertNotNull(callback.mResult);
+        mPets.add(callback.mResult);
+    }
+
+    @Test
+    public void delete_returnsAtOnceAndCallsBackOnMainLooper() throws Exception {
+        final Uri uri = insertPet("Bella",4);
+        final Recorder<Integer> callback = new Recorder<>();
+        long blocked = onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.delete(uri,callback);
+            }
+        });
+        assertTrue("Delete blocked the main thread for " + blocked + " ms",blocked < MAX_CALL_MS);
+
+        callback.await();
+        assertEquals(Integer.valueOf(1),callback.mResult);
+    }
+
+    @Test
+    public void update_queuedUpdatesToOnePetAreCoalesced() throws Exception {
+        final Uri uri = insertPet("Max",10);
+        final List<Recorder<Integer>> callbacks = new ArrayList<>();
+        for(int i = 0; i < 3; i++){
+            callbacks.add(new Recorder<Integer>());
+        }
+
+        long blocked = onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.update(uri,pet("Milo",12),callbacks.get(0));
+                ContentValues name = new ContentValues();
+                name.put(PetContract.PetEntry.COLUMN_PET_NAME,"Luna");
+                mRepository.update(uri,name,callbacks.get(1));
+                ContentValues weight = new ContentValues();
+                weight.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,15);
+                mRepository.update(uri,weight,callbacks.get(2));
+            }
+        });
+        assertTrue("Saves blocked the main thread for " + blocked + " ms",blocked < MAX_CALL_MS);
+
+        for(Recorder<Integer> callback : callbacks){
+            callback.await();
+            assertEquals(Integer.valueOf(1),callback.mResult);
+        }
+        assertEquals("Writes run for three queued updates",1,mExecutor.mTasks.get());
+
+        Cursor cursor = mResolver.query(uri,Pet.PROJECTION,null,null,null);
+        try{
+            assertTrue(cursor.moveToFirst());
+            Pet pet = Pet.fromCursor(cursor);
+            assertEquals("Luna",pet.name);
+            assertEquals(15,pet.weight);
+        }finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * An export that finishes while no activity is attached, as during a rotation,
+     * delivers its outcome to the callback attached next and to no other.
+     */
+    @Test
+    public void export_outcomeWaitsForNextAttach() throws Exception {
+        insertPet("Daisy",3);
+        final File file = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(),
+                "repository_test.csv");
+        final Recorder<Long> destroyed = new Recorder<>();
+        final Recorder<Long> recreated = new Recorder<>();
+        final PetExporter.ProgressListener progress = new PetExporter.ProgressListener() {
+            @Override
+            public void onProgress(long exported) {
+            }
+        };
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.exportPets(Uri.fromFile(file),PetExporter.Format.CSV,progress,destroyed);
+                mRepository.detachTransfer();
+            }
+        });
+
+        long deadline = SystemClock.elapsedRealtime() + 10 * DELAY_MS;
+        while(isTransferRunning()){
+            assertTrue("Export still running",SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(10);
+        }
+        final boolean[] attached = new boolean[2];
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                attached[0] = mRepository.attachExport(progress,recreated);
+                attached[1] = mRepository.attachExport(progress,recreated);
+            }
+        });
+        file.delete();
+
+        assertTrue("No export to attach to",attached[0]);
+        assertFalse("Outcome delivered twice",attached[1]);
+        recreated.await();
+        assertTrue(recreated.mResult>0);
+        assertEquals(1,destroyed.mDone.getCount());
+    }
+
+    /**
+     * An export queued behind another on the transfer thread and cancelled there never
+     * starts, so it ends as cancelled at once and is no longer running; the one ahead of
+     * it still finishes.
+     */
+    @Test
+    public void cancelTransfer_beforeStartEndsAtOnce() throws Exception {
+        insertPet("Coco",5);
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File first = new File(context.getCacheDir(),"repository_test_first.csv");
+        final File queued = new File(context.getCacheDir(),"repository_test_queued.csv");
+        final Recorder<Long> firstCallback = new Recorder<>();
+        final Recorder<Long> queuedCallback = new Recorder<>();
+        final PetExporter.ProgressListener progress = new PetExporter.ProgressListener() {
+            @Override
+            public void onProgress(long exported) {
+            }
+        };
+        final boolean[] running = new boolean[1];
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.exportPets(Uri.fromFile(first),PetExporter.Format.CSV,progress,firstCallback);
+                mRepository.exportPets(Uri.fromFile(queued),PetExporter.Format.CSV,progress,queuedCallback);
+                mRepository.cancelTransfer();
+                running[0] = mRepository.isTransferRunning();
+            }
+        });
+
+        assertEquals("Cancelled export not ended at once",0,queuedCallback.mDone.getCount());
+        assertTrue(queuedCallback.mCancelled);
+        assertTrue(queuedCallback.mOnMainLooper);
+        assertFalse("Cancelled export still running",running[0]);
+        firstCallback.await();
+        assertFalse("Cancelled export wrote its file",queued.exists());
+        first.delete();
+    }
+
+    private boolean isTransferRunning(){
+        final boolean[] running = new boolean[1];
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                running[0] = mRepository.isTransferRunning();
+            }
+        });
+        return running[0];
+    }
+
+    /** Runs task on the main thread and returns how long it took, in milliseconds */
+    private static long onMainThread(final Runnable task){
+        final long[] elapsed = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.elapsedRealtime();
+                task.run();
+                elapsed[0] = SystemClock.elapsedRealtime() - start;
+            }
+        });
+        return elapsed[0];
+    }
+
+    private Uri insertPet(String name, int weight){
+        Uri uri = mResolver.insert(PetContract.PetEntry.CONTENT_URI,pet(name,weight));
+        mPets.add(uri);
+        return uri;
+    }
+
+    private static ContentValues pet(String name, int weight){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,name);
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,"Terrier");
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,PetContract.PetEntry.GENDER_MALE);
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,weight);
+        values.putNull(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        return values;
+    }
+}
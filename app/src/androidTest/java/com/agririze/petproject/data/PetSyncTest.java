@@ -0,0 +1,191 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.UUID;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Syncs the app's pets with {@link FakeShelterServer} end to end, over HTTP on the
+ * device, and reports how sync time grows with the number of changed pets. This wipes
+ * whatever the app had stored.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetSyncTest {
+
+    private static final String LOG_TAG = PetSyncTest.class.getSimpleName();
+
+    private static final int[] CHANGE_VOLUMES = { 100, 1_000, 10_000 };
+
+    private ContentResolver mResolver;
+    private MockWebServer mServer;
+    private FakeShelterServer mShelter;
+    private PetSync mSync;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mResolver = context.getContentResolver();
+        mShelter = new FakeShelterServer();
+        mServer = new MockWebServer();
+        mServer.setDispatcher(mShelter);
+        mServer.start();
+        mSync = new PetSync(context,mServer.url("/").toString());
+        clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void sync_pushesOnlyChangedPets() throws Exception {
+        long id = insertPet("Toto",7);
+        insertPet("Bella",4);
+        insertPet("Max",12);
+        assertEquals(3,mSync.sync().pushed);
+        assertEquals(0,mSync.sync().pushed);
+
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,8);
+        mResolver.update(ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,id),values,null,null);
+        mResolver.update(ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,id),values,null,null);
+        assertEquals(1,mSync.sync().pushed);
+
+        List<JSONObject> changes = mShelter.changes();
+        assertEquals(4,changes.size());
+        JSONObject last = changes.get(3);
+        assertEquals("Toto",last.getString("name"));
+        assertEquals(8,last.getInt("weight"));
+    }
+
+    @Test
+    public void sync_pullsRemoteChangesAndDeletes() throws Exception {
+        String syncId = newSyncId();
+        long now = System.currentTimeMillis();
+        mShelter.addRemote(syncId,now,"Remote",9);
+        PetSync.Result result = mSync.sync();
+        assertEquals(1,result.pulled);
+        assertEquals(0,result.pushed);
+        assertEquals(1,countPets("Remote"));
+
+        // Pulled changes are not logged, so nothing goes back
+        assertEquals(0,mSync.sync().pushed);
+
+        mShelter.addRemoteDelete(syncId,now + 1);
+        assertEquals(1,mSync.sync().pulled);
+        assertEquals(0,countPets("Remote"));
+    }
+
+    @Test
+    public void sync_keepsNewerChangeOfEachPet() throws Exception {
+        long id = insertPet("Local",5);
+        mSync.sync();
+        String syncId = mShelter.changes().get(0).getString("id");
+
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,"Edited");
+        mResolver.update(ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,id),values,null,null);
+        // Made elsewhere before the local edit, but reaching the server after it
+        mShelter.addRemote(syncId,System.currentTimeMillis() - 60_000,"Stale",5);
+        PetSync.Result result = mSync.sync();
+        assertEquals(1,result.pushed);
+        assertEquals(0,result.pulled);
+        assertEquals(1,countPets("Edited"));
+
+        mShelter.addRemote(syncId,System.currentTimeMillis() + 60_000,"Newer",5);
+        assertEquals(1,mSync.sync().pulled);
+        assertEquals(0,countPets("Edited"));
+        assertEquals(1,countPets("Newer"));
+    }
+
+    @Test
+    public void sync_timeByChangeVolume() throws Exception {
+        Bundle timings = new Bundle();
+        for(int volume : CHANGE_VOLUMES){
+            clear();
+            ContentValues[] pets = new ContentValues[volume];
+            for(int i = 0; i < volume; i++){
+                pets[i] = pet("Pet " + i,i % 40);
+                mShelter.addRemote(newSyncId(),System.currentTimeMillis(),"Remote " + i,i % 40);
+            }
+            mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,pets);
+
+            long start = SystemClock.elapsedRealtime();
+            PetSync.Result result = mSync.sync();
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(volume,result.pushed);
+            assertEquals(volume,result.pulled);
+            timings.putLong("sync_" + volume + "_ms",elapsed);
+            timings.putLong("sync_" + volume + "_pushed_bytes",mShelter.pushedBytes());
+        }
+        Log.i(LOG_TAG,"Synced pushes and pulls of each volume: " + timings);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,timings);
+    }
+
+    /**
+     * Removes every pet and pushes the deletes, leaving an empty table, an empty change
+     * log and a server that has nothing left to pull.
+     */
+    private void clear() throws Exception {
+        mResolver.delete(PetContract.PetEntry.CONTENT_URI,null,null);
+        Bundle result;
+        do{
+            result = mResolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_PURGE,
+                    String.valueOf(Long.MAX_VALUE),null);
+        }while(result.getInt(PetContract.EXTRA_ROWS)>0);
+        mSync.sync();
+        mShelter.clear();
+    }
+
+    private long insertPet(String name, int weight){
+        Uri uri = mResolver.insert(PetContract.PetEntry.CONTENT_URI,pet(name,weight));
+        return ContentUris.parseId(uri);
+    }
+
+    private static ContentValues pet(String name, int weight){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,name);
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,"Terrier");
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,PetContract.PetEntry.GENDER_MALE);
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,weight);
+        return values;
+    }
+
+    private int countPets(String name){
+        Cursor cursor = mResolver.query(PetContract.PetEntry.CONTENT_URI,new String[]{ PetContract.PetEntry._ID },
+                PetContract.PetEntry.COLUMN_PET_NAME + "=?",new String[]{ name },null);
+        try{
+            return cursor.getCount();
+        }finally {
+            cursor.close();
+        }
+    }
+
+    private static String newSyncId(){
+        return UUID.randomUUID().toString().replace("-","");
+    }
+}
@@ -0,0 +1,222 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.PetSort;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs writer threads against reader threads through PetProvider, with write-ahead
+ * logging and then with the rollback journal, and reports the p50/p90/p99 latency of the
+ * readers' catalog pages in each mode. This wipes whatever the app had stored.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetWalStressTest {
+
+    private static final String LOG_TAG = PetWalStressTest.class.getSimpleName();
+
+    private static final int ROWS = 10_000;
+
+    private static final int WRITERS = 2;
+
+    private static final int READERS = 4;
+
+    private static final long DURATION_MS = 10_000;
+
+    private static final int PAGE_SIZE = 50;
+
+    private ContentResolver mResolver;
+    private PetDbHelper mHelper;
+    private long[] mIds;
+
+    @Before
+    public void setUp(){
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mResolver = context.getContentResolver();
+        ContentProviderClient client = mResolver.acquireContentProviderClient(PetContract.CONTENT_AUTHORITY);
+        try{
+            mHelper = ((PetProvider) client.getLocalContentProvider()).dbHelper();
+        }finally {
+            client.release();
+        }
+
+        mResolver.delete(PetContract.PetEntry.CONTENT_URI,null,null);
+        Bundle result;
+        do{
+            result = mResolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_PURGE,
+                    String.valueOf(Long.MAX_VALUE),null);
+        }while(result.getInt(PetContract.EXTRA_ROWS)>0);
+
+        Random random = new Random(42);
+        ContentValues[] pets = new ContentValues[ROWS];
+        for(int i = 0; i < ROWS; i++){
+            pets[i] = randomPet(random);
+        }
+        mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,pets);
+
+        Cursor cursor = mResolver.query(PetContract.PetEntry.CONTENT_URI,new String[]{ PetContract.PetEntry._ID },
+                null,null,null);
+        try{
+            mIds = new long[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++){
+                mIds[i] = cursor.getLong(0);
+            }
+        }finally {
+            cursor.close();
+        }
+    }
+
+    @After
+    public void tearDown(){
+        mHelper.getWritableDatabase().enableWriteAheadLogging();
+    }
+
+    @Test
+    public void readLatency_walAgainstRollbackJournal() throws Exception {
+        Bundle results = new Bundle();
+        SQLiteDatabase database = mHelper.getWritableDatabase();
+
+        database.enableWriteAheadLogging();
+        stress(results,"wal");
+
+        database.disableWriteAheadLogging();
+        stress(results,"rollback");
+
+        Log.i(LOG_TAG,WRITERS + " writers against " + READERS + " readers: " + results);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,results);
+    }
+
+    /**
+     * Runs the writers and readers for {@link #DURATION_MS} and puts the readers'
+     * latency percentiles and the writes done under label.
+     */
+    private void stress(Bundle results, String label) throws Exception {
+        final long end = System.nanoTime() + DURATION_MS * 1_000_000;
+        final long[][] latencies = new long[READERS][];
+        final long[] writes = new long[WRITERS];
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(WRITERS + READERS);
+
+        for(int w = 0; w < WRITERS; w++){
+            final int writer = w;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        Random random = new Random(writer);
+                        while(System.nanoTime() < end){
+                            Uri uri = ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,
+                                    mIds[random.nextInt(mIds.length)]);
+                            mResolver.update(uri,randomPet(random),null,null);
+                            writes[writer]++;
+                        }
+                    }catch (Throwable t){
+                        failure.compareAndSet(null,t);
+                    }finally {
+                        done.countDown();
+                    }
+                }
+            },"writer-" + w).start();
+        }
+
+        final Uri pageUri = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .build();
+        for(int r = 0; r < READERS; r++){
+            final int reader = r;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        long[] samples = new long[1024];
+                        int count = 0;
+                        while(System.nanoTime() < end){
+                            long start = System.nanoTime();
+                            Cursor cursor = mResolver.query(pageUri,Pet.PROJECTION,null,null,PetSort.NAME.orderBy());
+                            try{
+                                while(cursor.moveToNext()){
+                                    cursor.getLong(0);
+                                }
+                            }finally {
+                                cursor.close();
+                            }
+                            if(count==samples.length){
+                                samples = Arrays.copyOf(samples,count * 2);
+                            }
+                            samples[count++] = System.nanoTime() - start;
+                        }
+                        latencies[reader] = Arrays.copyOf(samples,count);
+                    }catch (Throwable t){
+                        failure.compareAndSet(null,t);
+                    }finally {
+                        done.countDown();
+                    }
+                }
+            },"reader-" + r).start();
+        }
+
+        done.await();
+        assertNull(String.valueOf(failure.get()),failure.get());
+
+        int reads = 0;
+        for(long[] samples : latencies){
+            reads += samples.length;
+        }
+        long[] all = new long[reads];
+        int at = 0;
+        for(long[] samples : latencies){
+            System.arraycopy(samples,0,all,at,samples.length);
+            at += samples.length;
+        }
+        Arrays.sort(all);
+        assertTrue("No reads in " + label,reads>0);
+
+        long totalWrites = 0;
+        for(long count : writes){
+            totalWrites += count;
+        }
+        results.putLong(label + "_reads",reads);
+        results.putLong(label + "_writes",totalWrites);
+        results.putLong(label + "_read_p50_us",percentile(all,50) / 1000);
+        results.putLong(label + "_read_p90_us",percentile(all,90) / 1000);
+        results.putLong(label + "_read_p99_us",percentile(all,99) / 1000);
+    }
+
+    private static long percentile(long[] sorted, int percent){
+        int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(index,0)];
+    }
+
+    private static ContentValues randomPet(Random random){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,"Pet " + random.nextInt(100_000));
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,random.nextBoolean() ? "Terrier" : "Beagle");
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,random.nextInt(3));
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,1 + random.nextInt(60));
+        return values;
+    }
+}
@@ -0,0 +1,124 @@
+package com.agririze.petproject;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.agririze.petproject.data.PetContract;
+
+import java.util.Random;
+
+/**
+ * Tops the pets table up, or cuts it down, to the number of pets in {@link #EXTRA_COUNT},
+ * so startup and scrolling can be measured with a catalog of a known size. Sent by
+ * :macrobenchmark with {@code am broadcast -a com.agririze.petproject.SEED --ei count N},
+ * which returns once the pets are in place.
+ */
+public class PetSeedReceiver extends BroadcastReceiver {
+
+    private static final String LOG_TAG = PetSeedReceiver.class.getSimpleName();
+
+    private static final String EXTRA_COUNT = "count";
+
+    private static final int CHUNK_SIZE = 1_000;
+
+    private static final String[] NAMES = {
+            "Toto", "Bella", "Max", "Luna", "Charlie", "Lucy", "Cooper", "Daisy", "Milo", "Molly"
+    };
+
+    private static final String[] BREEDS = {
+            "Terrier", "Labrador Retriever", "Beagle", "Poodle", "Siamese", "Persian", "Boxer", "Tabby", null
+    };
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final int count = intent.getIntExtra(EXTRA_COUNT,CHUNK_SIZE);
+        final ContentResolver resolver = context.getContentResolver();
+        final PendingResult result = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    int inserted = seed(resolver,count);
+                    Log.i(LOG_TAG,"Seeded " + inserted + " pets");
+                    result.setResultCode(inserted);
+                }finally {
+                    result.finish();
+                }
+            }
+        },LOG_TAG).start();
+    }
+
+    private static int seed(ContentResolver resolver, int count){
+        Random random = new Random(count);
+        int missing = count - countPets(resolver);
+        if(missing < 0){
+            trim(resolver,count);
+            return 0;
+        }
+        int inserted = 0;
+        while(inserted < missing){
+            ContentValues[] chunk = new ContentValues[Math.min(CHUNK_SIZE,missing - inserted)];
+            for(int i = 0; i < chunk.length; i++){
+                ContentValues values = new ContentValues();
+                values.put(PetContract.PetEntry.COLUMN_PET_NAME,
+                        NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(10_000));
+                values.put(PetContract.PetEntry.COLUMN_PET_BREED,BREEDS[random.nextInt(BREEDS.length)]);
+                values.put(PetContract.PetEntry.COLUMN_PET_GENDER,random.nextInt(3));
+                values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,1 + random.nextInt(60));
+                chunk[i] = values;
+            }
+            inserted += resolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,chunk);
+        }
+        return inserted;
+    }
+
+    /**
+     * Deletes and purges the pets after the first count by _id, so a smaller catalog
+     * is measured as a smaller one.
+     */
+    private static void trim(ContentResolver resolver, int count){
+        Uri lastKept = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,"1")
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_OFFSET,String.valueOf(count - 1))
+                .build();
+        long lastId = 0;
+        Cursor cursor = count==0 ? null : resolver.query(lastKept,new String[]{ PetContract.PetEntry._ID },
+                null,null,PetContract.PetEntry._ID + " ASC");
+        if(cursor!=null){
+            try{
+                if(cursor.moveToFirst()){
+                    lastId = cursor.getLong(0);
+                }
+            }finally {
+                cursor.close();
+            }
+        }
+        resolver.delete(PetContract.PetEntry.CONTENT_URI,PetContract.PetEntry._ID + ">?",
+                new String[]{ String.valueOf(lastId) });
+        Bundle purged;
+        do{
+            purged = resolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_PURGE,
+                    String.valueOf(Long.MAX_VALUE),null);
+        }while(purged.getInt(PetContract.EXTRA_ROWS)>0);
+    }
+
+    private static int countPets(ContentResolver resolver){
+        Cursor cursor = resolver.query(PetContract.PetEntry.CONTENT_URI,
+                new String[]{ "COUNT(*)" },null,null,null);
+        if(cursor==null){
+            return 0;
+        }
+        try{
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }finally {
+            cursor.close();
+        }
+    }
+}
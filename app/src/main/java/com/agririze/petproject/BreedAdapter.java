@@ -0,0 +1,84 @@
+package com.agririze.petproject;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Breed suggestions for an AutoCompleteTextView, looked up in the {@link BreedIndex}
+ * as the user types.
+ */
+public class BreedAdapter extends BaseAdapter implements Filterable {
+
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final LayoutInflater mInflater;
+    private final BreedIndex mIndex;
+    private List<String> mBreeds = Collections.emptyList();
+
+    private final Filter mFilter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<String> breeds = constraint==null
+                    ? Collections.<String>emptyList() : mIndex.lookup(constraint,MAX_SUGGESTIONS);
+            results.values = breeds;
+            results.count = breeds.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            mBreeds = (List<String>) results.values;
+            if(results.count>0){
+                notifyDataSetChanged();
+            }else{
+                notifyDataSetInvalidated();
+            }
+        }
+    };
+
+    public BreedAdapter(Context context, BreedIndex index) {
+        mInflater = LayoutInflater.from(context);
+        mIndex = index;
+    }
+
+    @Override
+    public int getCount() {
+        return mBreeds.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return mBreeds.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) convertView;
+        if(view==null){
+            view = (TextView) mInflater.inflate(android.R.layout.simple_dropdown_item_1line,parent,false);
+        }
+        view.setText(mBreeds.get(position));
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return mFilter;
+    }
+}
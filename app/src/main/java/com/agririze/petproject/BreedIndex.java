@@ -0,0 +1,249 @@
+package com.agririze.petproject;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.agririze.petproject.data.PetContract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The distinct breeds of the pets, held in memory as a sorted array so prefix lookups
+ * are a binary search and never touch the database. The array is built on a
+ * background thread from the breed counts of {@link PetContract.StatsEntry}, which
+ * has one row per breed, and replaced as a whole so lookups never see it half
+ * changed. A pet inserted or updated adds its breed in place; other changes rebuild
+ * the array, so a breed whose last pet was updated away lingers until then. Only the
+ * device's own pets are covered, not other shelters'.
+ */
+public class BreedIndex {
+
+    private static final String LOG_TAG = BreedIndex.class.getSimpleName();
+
+    private static BreedIndex sInstance;
+
+    /**
+     * Breeds in order of their keys, with the keys (the breeds lower cased) alongside
+     * to search. Never changed once published.
+     */
+    private static final class Snapshot {
+        final String[] keys;
+        final String[] breeds;
+
+        Snapshot(String[] keys, String[] breeds) {
+            this.keys = keys;
+            this.breeds = breeds;
+        }
+    }
+
+    private final ContentResolver mContentResolver;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /** True while a rebuild is queued and not started, so change bursts build once */
+    private final AtomicBoolean mRebuildPending = new AtomicBoolean();
+
+    private volatile Snapshot mSnapshot = new Snapshot(new String[0],new String[0]);
+
+    public static synchronized BreedIndex getInstance(Context context){
+        if(sInstance==null){
+            sInstance = new BreedIndex(context.getApplicationContext().getContentResolver());
+            sInstance.start();
+        }
+        return sInstance;
+    }
+
+    BreedIndex(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    private void start(){
+        mContentResolver.registerContentObserver(PetContract.PetEntry.CONTENT_URI,true,new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                onPetsChanged(uri);
+            }
+        });
+        scheduleRebuild();
+    }
+
+    /**
+     * Returns up to max breeds starting with prefix, ignoring case, in alphabetical
+     * order. Safe to call on any thread.
+     */
+    public List<String> lookup(CharSequence prefix, int max){
+        Snapshot snapshot = mSnapshot;
+        String key = key(prefix.toString());
+        int from = lowerBound(snapshot.keys,key);
+        int to = from;
+        while(to < snapshot.keys.length && to - from < max && snapshot.keys[to].startsWith(key)){
+            to++;
+        }
+        if(from==to){
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(snapshot.breeds).subList(from,to));
+    }
+
+    private void onPetsChanged(Uri uri){
+        String change = uri==null ? null : uri.getQueryParameter(PetContract.QUERY_PARAMETER_CHANGE);
+        if(PetContract.CHANGE_INSERT.equals(change) || PetContract.CHANGE_UPDATE.equals(change)){
+            final long id = ContentUris.parseId(uri);
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    add(queryBreed(id));
+                }
+            });
+        }else{
+            scheduleRebuild();
+        }
+    }
+
+    private void scheduleRebuild(){
+        if(!mRebuildPending.compareAndSet(false,true)){
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mRebuildPending.set(false);
+                rebuild();
+            }
+        });
+    }
+
+    private void rebuild(){
+        List<String> breeds = new ArrayList<>();
+        Cursor cursor = null;
+        try{
+            cursor = mContentResolver.query(
+                    PetContract.StatsEntry.buildStatsUri(PetContract.StatsEntry.KIND_BREED),
+                    new String[]{ PetContract.StatsEntry.COLUMN_BUCKET },null,null,null);
+            if(cursor==null){
+                return;
+            }
+            while(cursor.moveToNext()){
+                String breed = cursor.getString(0);
+                if(!TextUtils.isEmpty(breed)){
+                    breeds.add(breed);
+                }
+            }
+        }catch (RuntimeException e){
+            Log.e(LOG_TAG,"Failed to read breeds",e);
+            return;
+        }finally {
+            if(cursor!=null){
+                cursor.close();
+            }
+        }
+        setBreeds(breeds);
+    }
+
+    /**
+     * Replaces every breed of the index. The breeds may be in any order and repeat.
+     */
+    void setBreeds(List<String> breeds){
+        String[][] entries = new String[breeds.size()][];
+        for(int i = 0; i < entries.length; i++){
+            String breed = breeds.get(i);
+            entries[i] = new String[]{ key(breed), breed };
+        }
+        Arrays.sort(entries,new Comparator<String[]>() {
+            @Override
+            public int compare(String[] a, String[] b) {
+                int byKey = a[0].compareTo(b[0]);
+                return byKey!=0 ? byKey : a[1].compareTo(b[1]);
+            }
+        });
+
+        List<String> keys = new ArrayList<>(entries.length);
+        List<String> sorted = new ArrayList<>(entries.length);
+        for(String[] entry : entries){
+            int last = sorted.size() - 1;
+            if(last<0 || !entry[1].equals(sorted.get(last))){
+                keys.add(entry[0]);
+                sorted.add(entry[1]);
+            }
+        }
+        mSnapshot = new Snapshot(keys.toArray(new String[0]),sorted.toArray(new String[0]));
+    }
+
+    /**
+     * Publishes a copy of the snapshot with breed added, unless it is already there.
+     * Called on the index's thread only, so copies are never made from a stale snapshot.
+     */
+    private void add(String breed){
+        if(TextUtils.isEmpty(breed)){
+            return;
+        }
+        Snapshot snapshot = mSnapshot;
+        String key = key(breed);
+        int at = lowerBound(snapshot.keys,key);
+        for(int i = at; i < snapshot.keys.length && snapshot.keys[i].equals(key); i++){
+            if(snapshot.breeds[i].equals(breed)){
+                return;
+            }
+        }
+        mSnapshot = new Snapshot(insert(snapshot.keys,at,key),insert(snapshot.breeds,at,breed));
+    }
+
+    private String queryBreed(long id){
+        Cursor cursor = null;
+        try{
+            cursor = mContentResolver.query(ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,id),
+                    new String[]{ PetContract.PetEntry.COLUMN_PET_BREED },null,null,null);
+            if(cursor==null || !cursor.moveToFirst()){
+                return null;
+            }
+            return cursor.getString(0);
+        }catch (RuntimeException e){
+            Log.e(LOG_TAG,"Failed to read breed of pet " + id,e);
+            return null;
+        }finally {
+            if(cursor!=null){
+                cursor.close();
+            }
+        }
+    }
+
+    private static String key(String breed){
+        return breed.toLowerCase(Locale.ROOT);
+    }
+
+    /** Index of the first key not less than key */
+    private static int lowerBound(String[] keys, String key){
+        int low = 0;
+        int high = keys.length;
+        while(low<high){
+            int mid = (low + high) >>> 1;
+            if(keys[mid].compareTo(key)<0){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String[] insert(String[] array, int at, String value){
+        String[] copy = new String[array.length + 1];
+        System.arraycopy(array,0,copy,0,at);
+        copy[at] = value;
+        System.arraycopy(array,at,copy,at + 1,array.length - at);
+        return copy;
+    }
+}
@@ -1,36 +1,160 @@
 package com.agririze.petproject;
 
+import androidx.activity.result.ActivityResult;
+import androidx.activity.result.ActivityResultCallback;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.agririze.petproject.data.PetContract;
 import com.agririze.petproject.data.PetDbHelper;
+import com.agririze.petproject.data.PetExporter;
+import com.agririze.petproject.data.PetImporter;
+import com.agririze.petproject.data.PetRepository;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 
-public class CatalogActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+public class CatalogActivity extends AppCompatActivity {
 
-    private static final int PET_LOADER = 0;
+    /** Delay after the last keystroke before the search query runs */
+    private static final long SEARCH_DEBOUNCE_MS = 250;
 
-    PetCursorAdapter mCursorAdapter;
+    private static final String STATE_EXPORT_FORMAT = "export_format";
+
+    private static final String[] IMPORT_MIME_TYPES = {
+            "text/csv", "text/comma-separated-values", "text/plain", "application/json"
+    };
+
+    PetPagedAdapter mPetAdapter;
+
+    private final Handler mSearchHandler = new Handler(Looper.getMainLooper());
+
+    private String mPendingSearch = "";
+
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPetAdapter.setSearch(mPendingSearch);
+        }
+    };
+
+    /** Set once the first rows are shown and reported as the end of startup */
+    private boolean mFullyDrawn;
+
+    /**
+     * Show the running import or export, which lives in PetRepository and outlives
+     * this activity; a recreated activity attaches its own in onCreate.
+     */
+    private final PetImporter.ProgressListener mImportListener = new PetImporter.ProgressListener() {
+        @Override
+        public void onProgress(long imported, long rejected) {
+            getSupportActionBar().setSubtitle(getString(R.string.import_progress,imported));
+        }
+    };
+
+    private final PetRepository.TransferCallback<PetImporter.Result> mImportCallback = new PetRepository.TransferCallback<PetImporter.Result>() {
+        @Override
+        public void onSuccess(PetImporter.Result result) {
+            onTransferFinished(getString(R.string.import_finished,result.imported,result.rejected,
+                    result.duplicates));
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            onTransferFinished(getString(R.string.import_failed));
+        }
+
+        @Override
+        public void onCancelled() {
+            onTransferFinished(getString(R.string.import_cancelled));
+        }
+    };
+
+    private final PetExporter.ProgressListener mExportListener = new PetExporter.ProgressListener() {
+        @Override
+        public void onProgress(long exported) {
+            getSupportActionBar().setSubtitle(getString(R.string.export_progress,exported));
+        }
+    };
+
+    private final PetRepository.TransferCallback<Long> mExportCallback = new PetRepository.TransferCallback<Long>() {
+        @Override
+        public void onSuccess(Long exported) {
+            onTransferFinished(getString(R.string.export_finished,exported));
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            onTransferFinished(getString(R.string.export_failed));
+        }
+
+        @Override
+        public void onCancelled() {
+            onTransferFinished(getString(R.string.export_cancelled));
+        }
+    };
+
+    /** Format picked for the export whose document is being created */
+    private PetExporter.Format mExportFormat = PetExporter.Format.CSV;
+
+    private final ActivityResultLauncher<String[]> mImportLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), new ActivityResultCallback<Uri>() {
+                @Override
+                public void onActivityResult(Uri result) {
+                    if(result!=null){
+                        importPets(result);
+                    }
+                }
+            });
+
+    private final ActivityResultLauncher<Intent> mEditorLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(), new ActivityResultCallback<ActivityResult>() {
+                @Override
+                public void onActivityResult(ActivityResult result) {
+                    Intent data = result.getData();
+                    if(result.getResultCode()==RESULT_OK && data!=null
+                            && data.hasExtra(EditorActivity.EXTRA_DELETED_TOMBSTONE)){
+                        showUndo(R.string.editor_delete_pet_successful,
+                                data.getLongExtra(EditorActivity.EXTRA_DELETED_TOMBSTONE,0));
+                    }
+                }
+            });
+
+    private final ActivityResultLauncher<String> mExportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument() {
+                @NonNull
+                @Override
+                public Intent createIntent(@NonNull Context context, @NonNull String input) {
+                    return super.createIntent(context,input).setType(mExportFormat.mimeType);
+                }
+            }, new ActivityResultCallback<Uri>() {
+                @Override
+                public void onActivityResult(Uri result) {
+                    if(result!=null){
+                        exportPets(result,mExportFormat);
+                    }
+                }
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,6 +162,11 @@ public class CatalogActivity extends AppCompatActivity implements
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_catalog);
 
+        if(savedInstanceState!=null){
+            mExportFormat = PetExporter.Format.valueOf(
+                    savedInstanceState.getString(STATE_EXPORT_FORMAT,mExportFormat.name()));
+        }
+
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
         fab.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -47,27 +176,72 @@ public class CatalogActivity extends AppCompatActivity implements
             }
         });
 
-        ListView petListView = (ListView) findViewById(R.id.list);
-
-        View emptyView = findViewById(R.id.empty_view);
-        petListView.setEmptyView(emptyView);
+        RecyclerView petListView = (RecyclerView) findViewById(R.id.list);
+        petListView.setLayoutManager(new LinearLayoutManager(this));
+        petListView.setHasFixedSize(true);
 
-        mCursorAdapter = new PetCursorAdapter(this,null);
-        petListView.setAdapter(mCursorAdapter);
-
-        petListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        mPetAdapter = new PetPagedAdapter(this, new PetPagedAdapter.OnPetClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            public void onPetClick(long id) {
                 Intent intent = new Intent(CatalogActivity.this,EditorActivity.class);
 
                 Uri currentPetUri = ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,id);
 
                 intent.setData(currentPetUri);
-                startActivity(intent);
+                mEditorLauncher.launch(intent);
+            }
+        });
+        petListView.setAdapter(mPetAdapter);
+
+        final View emptyView = findViewById(R.id.empty_view);
+        mPetAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                emptyView.setVisibility(mPetAdapter.getItemCount()==0 ? View.VISIBLE : View.GONE);
+                if(!mFullyDrawn && mPetAdapter.isLoaded()){
+                    // The first page arrives with the count, so the first rows are bound now
+                    mFullyDrawn = true;
+                    reportFullyDrawn();
+                }
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onChanged();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                onChanged();
             }
         });
 
-        getLoaderManager().initLoader(PET_LOADER,null,this);
+        mPetAdapter.start();
+
+        // Picks up an import or export started before a configuration change
+        PetRepository repository = PetRepository.getInstance(this);
+        if(!repository.attachImport(mImportListener,mImportCallback)){
+            repository.attachExport(mExportListener,mExportCallback);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_FORMAT,mExportFormat.name());
+    }
+
+    @Override
+    protected void onDestroy() {
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        PetRepository repository = PetRepository.getInstance(this);
+        if(isFinishing()){
+            // Stops after the current chunk; importing the file again resumes it
+            repository.cancelTransfer();
+        }
+        repository.detachTransfer();
+        mPetAdapter.close();
+        super.onDestroy();
     }
 
 
@@ -82,53 +256,172 @@ public class CatalogActivity extends AppCompatActivity implements
         Uri newUri = getContentResolver().insert(PetContract.PetEntry.CONTENT_URI,values);
     }
 
+    private boolean isTransferRunning(){
+        return PetRepository.getInstance(this).isTransferRunning();
+    }
+
+    private void importPets(Uri source){
+        if(isTransferRunning()){
+            return;
+        }
+        PetRepository.getInstance(this).importPets(source,mImportListener,mImportCallback);
+        invalidateOptionsMenu();
+    }
+
+    private void exportPets(Uri destination, PetExporter.Format format){
+        if(isTransferRunning()){
+            return;
+        }
+        PetRepository.getInstance(this).exportPets(destination,format,mExportListener,mExportCallback);
+        invalidateOptionsMenu();
+    }
+
+    private void onTransferFinished(String message){
+        if(isDestroyed()){
+            return;
+        }
+        getSupportActionBar().setSubtitle(null);
+        Toast.makeText(this,message,Toast.LENGTH_LONG).show();
+        invalidateOptionsMenu();
+    }
+
     private void deleteAllPets(){
-        int rowsDeleted = getContentResolver().delete(PetContract.PetEntry.CONTENT_URI,null,null);
-        Log.v("CatalogActivity",rowsDeleted + " rows deleted from pet database");
+        final long[] tombstone = new long[1];
+        tombstone[0] = PetRepository.getInstance(this).delete(PetContract.PetEntry.CONTENT_URI, new PetRepository.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer rowsDeleted) {
+                Log.v("CatalogActivity",rowsDeleted + " rows deleted from pet database");
+                if(rowsDeleted!=0 && !isDestroyed()){
+                    showUndo(R.string.pets_deleted,tombstone[0]);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // Logged by the repository; the list simply stays as it was
+            }
+        });
+    }
+
+    /**
+     * Offers to restore the pets just deleted with tombstone.
+     */
+    private void showUndo(int messageId, final long tombstone){
+        Snackbar.make(findViewById(R.id.list),messageId,Snackbar.LENGTH_LONG)
+                .setAction(R.string.action_undo, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        PetRepository.getInstance(CatalogActivity.this).restore(tombstone, new PetRepository.Callback<Integer>() {
+                            @Override
+                            public void onSuccess(Integer rowsRestored) {
+                                // The list reloads from the provider's change notification
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                Toast.makeText(CatalogActivity.this,R.string.restore_failed,Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                    }
+                })
+                .show();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_catalog,menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query,0);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText,SEARCH_DEBOUNCE_MS);
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        boolean running = isTransferRunning();
+        menu.findItem(R.id.action_import).setEnabled(!running);
+        menu.findItem(R.id.action_export).setEnabled(!running);
+        menu.findItem(R.id.action_cancel_transfer).setVisible(running);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    private void search(String query, long delayMillis){
+        mPendingSearch = query;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mSearchHandler.postDelayed(mSearchRunnable,delayMillis);
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         switch (item.getItemId()){
+            case R.id.action_stats:
+                startActivity(new Intent(this,StatsActivity.class));
+                return true;
+            case R.id.action_import:
+                mImportLauncher.launch(IMPORT_MIME_TYPES);
+                return true;
+            case R.id.action_export_csv:
+                return launchExport(PetExporter.Format.CSV,".csv");
+            case R.id.action_export_json:
+                return launchExport(PetExporter.Format.JSON,".json");
+            case R.id.action_cancel_transfer:
+                PetRepository.getInstance(this).cancelTransfer();
+                invalidateOptionsMenu();
+                return true;
             case R.id.action_insert_dummy_data:
                 insertPet();
                 return true;
             case R.id.action_delete_all_entries:
                 deleteAllPets();
                 return true;
+            case R.id.action_sort_added:
+                return applySort(item,PetSort.ADDED);
+            case R.id.action_sort_name:
+                return applySort(item,PetSort.NAME);
+            case R.id.action_sort_breed:
+                return applySort(item,PetSort.BREED);
+            case R.id.action_sort_weight:
+                return applySort(item,PetSort.WEIGHT);
+            case R.id.action_filter_all:
+                return applyGenderFilter(item,PetPager.GENDER_ALL);
+            case R.id.action_filter_male:
+                return applyGenderFilter(item,PetContract.PetEntry.GENDER_MALE);
+            case R.id.action_filter_female:
+                return applyGenderFilter(item,PetContract.PetEntry.GENDER_FEMALE);
+            case R.id.action_filter_unknown:
+                return applyGenderFilter(item,PetContract.PetEntry.GENDER_UNKNOWN);
         }
         return super.onOptionsItemSelected(item);
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String[] projection = {
-                PetContract.PetEntry._ID,
-                PetContract.PetEntry.COLUMN_PET_NAME,
-                PetContract.PetEntry.COLUMN_PET_BREED
-        };
-
-        return new CursorLoader(this,
-                PetContract.PetEntry.CONTENT_URI,
-                projection,
-                null,
-                null,
-                null);
+    private boolean launchExport(PetExporter.Format format, String extension){
+        mExportFormat = format;
+        mExportLauncher.launch(getString(R.string.export_file_name) + extension);
+        return true;
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mCursorAdapter.swapCursor(data);
+    private boolean applySort(MenuItem item, PetSort sort){
+        item.setChecked(true);
+        mPetAdapter.setQuery(sort,mPetAdapter.getGenderFilter());
+        return true;
     }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mCursorAdapter.swapCursor(null);
+    private boolean applyGenderFilter(MenuItem item, int gender){
+        item.setChecked(true);
+        mPetAdapter.setQuery(mPetAdapter.getSort(),gender);
+        return true;
     }
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package com.agririze.petproject;
 
+import androidx.activity.result.ActivityResultCallback;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.NavUtils;
@@ -22,27 +25,64 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
+import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ImageView;
 import android.widget.Spinner;
 import android.widget.Toast;
 
 import com.agririze.petproject.data.PetContract;
 import com.agririze.petproject.data.PetDbHelper;
+import com.agririze.petproject.data.PetRepository;
 
 public class EditorActivity extends AppCompatActivity implements
         LoaderManager.LoaderCallbacks<Cursor> {
 
+    /**
+     * Long extra of the result when the pet was deleted: the tombstone that restores it
+     */
+    public static final String EXTRA_DELETED_TOMBSTONE = "deleted_tombstone";
+
     private static final int EXISTING_PET_LOADER = 0;
+
+    private static final String STATE_PHOTO = "photo";
+    private static final String STATE_PHOTO_CHANGED = "photo_changed";
+
     private Uri mCurrentPetUri;
 
     private EditText mNameEditText;
-    private EditText mBreedEditText;
+    private AutoCompleteTextView mBreedEditText;
     private EditText mWeightEditText;
     private Spinner mGenderSpinner;
+    private ImageView mPhotoImageView;
+    private Button mChoosePhotoButton;
     private int mGender= PetContract.PetEntry.GENDER_UNKNOWN;
 
     private boolean mPetHasChanged = false;
 
+    /** Name of the pet's photo, see {@link PetContract.PetEntry#COLUMN_PET_PHOTO} */
+    private String mPhoto;
+
+    /** True once a photo was picked, so reloading the pet does not bring back the old one */
+    private boolean mPhotoChanged = false;
+
+    /** True while a save or delete is running, so it is not started twice */
+    private boolean mWriting = false;
+
+    /** Tombstone of the running delete; the callback runs after delete() has returned it */
+    private long mDeleteTombstone;
+
+    private final ActivityResultLauncher<String> mPhotoLauncher = registerForActivityResult(
+            new ActivityResultContracts.GetContent(), new ActivityResultCallback<Uri>() {
+                @Override
+                public void onActivityResult(Uri result) {
+                    if(result!=null){
+                        importPhoto(result);
+                    }
+                }
+            });
+
     private View.OnTouchListener mTouchListener = new View.OnTouchListener(){
 
         @Override
@@ -71,16 +111,66 @@ public class EditorActivity extends AppCompatActivity implements
         }
 
         mNameEditText = (EditText) findViewById(R.id.edit_pet_name);
-        mBreedEditText = (EditText) findViewById(R.id.edit_pet_breed);
+        mBreedEditText = (AutoCompleteTextView) findViewById(R.id.edit_pet_breed);
         mWeightEditText = (EditText) findViewById(R.id.edit_pet_weight);
         mGenderSpinner = (Spinner) findViewById(R.id.spinner_gender);
+        mPhotoImageView = (ImageView) findViewById(R.id.pet_photo);
+        mChoosePhotoButton = (Button) findViewById(R.id.button_choose_photo);
 
         mNameEditText.setOnTouchListener(mTouchListener);
         mBreedEditText.setOnTouchListener(mTouchListener);
         mWeightEditText.setOnTouchListener(mTouchListener);
         mGenderSpinner.setOnTouchListener(mTouchListener);
 
+        mBreedEditText.setAdapter(new BreedAdapter(this,BreedIndex.getInstance(this)));
         setupSpinner();
+
+        mChoosePhotoButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mPhotoLauncher.launch("image/*");
+            }
+        });
+        if(savedInstanceState!=null){
+            mPhoto = savedInstanceState.getString(STATE_PHOTO);
+            mPhotoChanged = savedInstanceState.getBoolean(STATE_PHOTO_CHANGED);
+        }
+        showPhoto();
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PHOTO,mPhoto);
+        outState.putBoolean(STATE_PHOTO_CHANGED,mPhotoChanged);
+    }
+
+    private void showPhoto(){
+        PetPhotoLoader.getInstance(this).load(mPhotoImageView,mPhoto,false,R.drawable.pet_photo_placeholder);
+    }
+
+    /**
+     * Copies the picked image into the app's photos in the background; the pet only
+     * refers to it once saved.
+     */
+    private void importPhoto(Uri source){
+        mChoosePhotoButton.setEnabled(false);
+        PetRepository.getInstance(this).importPhoto(source, new PetRepository.Callback<String>() {
+            @Override
+            public void onSuccess(String photo) {
+                mChoosePhotoButton.setEnabled(true);
+                mPhoto = photo;
+                mPhotoChanged = true;
+                mPetHasChanged = true;
+                showPhoto();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                mChoosePhotoButton.setEnabled(true);
+                Toast.makeText(EditorActivity.this,R.string.editor_photo_failed,Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void setupSpinner(){
@@ -117,7 +207,9 @@ public class EditorActivity extends AppCompatActivity implements
         String breedString = mBreedEditText.getText().toString().trim();
         String weightString = mWeightEditText.getText().toString().trim();
 
-        if(mCurrentPetUri == null && TextUtils.isEmpty(weightString) && mGender== PetContract.PetEntry.GENDER_UNKNOWN){
+        if(mCurrentPetUri == null && TextUtils.isEmpty(weightString) && mGender== PetContract.PetEntry.GENDER_UNKNOWN
+                && mPhoto==null){
+            finish();
             return;
         }
 
@@ -131,30 +223,61 @@ public class EditorActivity extends AppCompatActivity implements
             weight = Integer.parseInt(weightString);
         }
         values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,weight);
+        values.put(PetContract.PetEntry.COLUMN_PET_PHOTO,mPhoto);
 
+        setWriting(true);
         if(mCurrentPetUri==null){
-            Uri newUri = getContentResolver().insert(PetContract.PetEntry.CONTENT_URI,values);
+            PetRepository.getInstance(this).insert(values, new PetRepository.Callback<Uri>() {
+                @Override
+                public void onSuccess(Uri result) {
+                    onWriteFinished(R.string.editor_insert_pet_successful,true);
+                }
 
-            if(newUri == null){
-                Toast.makeText(this,getString(R.string.editor_insert_pet_failed),
-                        Toast.LENGTH_SHORT).show();
-            }else{
-                Toast.makeText(this,getString(R.string.editor_insert_pet_successful),Toast.LENGTH_SHORT).show();
-            }
+                @Override
+                public void onFailure(Exception e) {
+                    onWriteFinished(R.string.editor_insert_pet_failed,false);
+                }
+            });
         }else{
-            int rowsAffected = getContentResolver().update(mCurrentPetUri,values,null,null);
-
-            if(rowsAffected==0){
-                Toast.makeText(this,getString(R.string.editor_update_pet_failed),
-                        Toast.LENGTH_SHORT).show();
-            }else{
-                Toast.makeText(this,getString(R.string.editor_update_pet_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            PetRepository.getInstance(this).update(mCurrentPetUri,values, new PetRepository.Callback<Integer>() {
+                @Override
+                public void onSuccess(Integer rowsAffected) {
+                    if(rowsAffected==0){
+                        onWriteFinished(R.string.editor_update_pet_failed,false);
+                    }else{
+                        onWriteFinished(R.string.editor_update_pet_successful,true);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    onWriteFinished(R.string.editor_update_pet_failed,false);
+                }
+            });
         }
 
     }
 
+    private void setWriting(boolean writing){
+        mWriting = writing;
+        invalidateOptionsMenu();
+    }
+
+    /**
+     * Called on the main thread once a write completes. The activity closes on success
+     * and stays open on failure so the user's input is not lost.
+     */
+    private void onWriteFinished(int messageId, boolean succeeded){
+        Toast.makeText(getApplicationContext(),getString(messageId),Toast.LENGTH_SHORT).show();
+        if(isFinishing() || isDestroyed()){
+            return;
+        }
+        setWriting(false);
+        if(succeeded){
+            finish();
+        }
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu){
         getMenuInflater().inflate(R.menu.menu_editor,menu);
@@ -168,6 +291,8 @@ public class EditorActivity extends AppCompatActivity implements
             MenuItem menuItem = menu.findItem(R.id.action_delete);
             menuItem.setVisible(false);
         }
+        menu.findItem(R.id.action_save).setEnabled(!mWriting);
+        menu.findItem(R.id.action_delete).setEnabled(!mWriting);
         return true;
     }
 
@@ -176,7 +301,6 @@ public class EditorActivity extends AppCompatActivity implements
         switch (item.getItemId()){
             case R.id.action_save:
                 savePet();
-                finish();
                 return true;
             case R.id.action_delete:
                 showDeleteConfirmationDialog();
@@ -227,7 +351,8 @@ public class EditorActivity extends AppCompatActivity implements
                 PetContract.PetEntry.COLUMN_PET_NAME,
                 PetContract.PetEntry.COLUMN_PET_BREED,
                 PetContract.PetEntry.COLUMN_PET_GENDER,
-                PetContract.PetEntry.COLUMN_PET_WEIGHT
+                PetContract.PetEntry.COLUMN_PET_WEIGHT,
+                PetContract.PetEntry.COLUMN_PET_PHOTO
         };
 
         return new CursorLoader(this,mCurrentPetUri,
@@ -254,8 +379,13 @@ public class EditorActivity extends AppCompatActivity implements
             int weight = data.getInt(weightColumnIndex);
 
             mNameEditText.setText(name);
-            mBreedEditText.setText(breed);
+            // Without filtering, so loading a pet does not open the suggestions
+            mBreedEditText.setText(breed,false);
             mWeightEditText.setText(Integer.toString(weight));
+            if(!mPhotoChanged){
+                mPhoto = data.getString(data.getColumnIndex(PetContract.PetEntry.COLUMN_PET_PHOTO));
+                showPhoto();
+            }
 
             switch (gender){
                 case PetContract.PetEntry.GENDER_MALE:
@@ -275,9 +405,13 @@ public class EditorActivity extends AppCompatActivity implements
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         mNameEditText.setText("");
-        mBreedEditText.setText("");
+        mBreedEditText.setText("",false);
         mWeightEditText.setText("");
         mGenderSpinner.setSelection(0);
+        if(!mPhotoChanged){
+            mPhoto = null;
+            showPhoto();
+        }
     }
 
     private void showUnsavedChangesDialog(
@@ -322,16 +456,27 @@ public class EditorActivity extends AppCompatActivity implements
     }
 
     private void deletePet(){
-        if(mCurrentPetUri != null){
-            int rowsDeleted = getContentResolver().delete(mCurrentPetUri,null,null);
-            if(rowsDeleted == 0){
-                Toast.makeText(this,getString(R.string.editor_delete_pet_failed),
-                        Toast.LENGTH_SHORT).show();
-            }else{
-                Toast.makeText(this,getString(R.string.editor_delete_pet_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+        if(mCurrentPetUri == null){
+            finish();
+            return;
         }
-        finish();
+        setWriting(true);
+        mDeleteTombstone = PetRepository.getInstance(this).delete(mCurrentPetUri, new PetRepository.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer rowsDeleted) {
+                if(rowsDeleted == 0){
+                    onWriteFinished(R.string.editor_delete_pet_failed,false);
+                }else{
+                    // The catalog offers to undo the delete
+                    setResult(RESULT_OK,new Intent().putExtra(EXTRA_DELETED_TOMBSTONE,mDeleteTombstone));
+                    onWriteFinished(R.string.editor_delete_pet_successful,true);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                onWriteFinished(R.string.editor_delete_pet_failed,false);
+            }
+        });
     }
 }
\ No newline at end of file
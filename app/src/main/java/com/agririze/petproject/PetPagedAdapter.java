@@ -0,0 +1,162 @@
+package com.agririze.petproject;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.agririze.petproject.data.Pet;
+
+public class PetPagedAdapter extends RecyclerView.Adapter<PetPagedAdapter.PetViewHolder>
+        implements PetPager.Listener {
+
+    public interface OnPetClickListener {
+        void onPetClick(long id);
+    }
+
+    private final PetPager mPager;
+    private final OnPetClickListener mClickListener;
+    private final PetPhotoLoader mPhotoLoader;
+
+    public PetPagedAdapter(Context context, OnPetClickListener clickListener) {
+        mPager = new PetPager(context.getContentResolver(),this);
+        mClickListener = clickListener;
+        mPhotoLoader = PetPhotoLoader.getInstance(context);
+    }
+
+    public void start(){
+        mPager.start();
+    }
+
+    public void close(){
+        mPager.close();
+    }
+
+    public boolean isLoaded(){
+        return mPager.isLoaded();
+    }
+
+    public PetSort getSort(){
+        return mPager.getSort();
+    }
+
+    public int getGenderFilter(){
+        return mPager.getGenderFilter();
+    }
+
+    public void setQuery(PetSort sort, int genderFilter){
+        mPager.setQuery(sort,genderFilter);
+    }
+
+    public void setSearch(String search){
+        mPager.setSearch(search);
+    }
+
+    @NonNull
+    @Override
+    public PetViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item,parent,false);
+        return new PetViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PetViewHolder holder, int position) {
+        holder.bind(mPager.getPet(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PetViewHolder holder) {
+        mPhotoLoader.cancel(holder.mPhotoImageView);
+        holder.mPhotoBound = false;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mPager.getCount();
+    }
+
+    @Override
+    public void onPagesChanged() {
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        notifyItemRangeInserted(position,count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(position,count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition,toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, @Nullable Object payload) {
+        notifyItemRangeChanged(position,count,payload);
+    }
+
+    class PetViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        private final TextView mNameTextView;
+        private final TextView mSummaryTextView;
+        private final ImageView mPhotoImageView;
+        private Pet mPet;
+
+        /** Photo shown or loading in mPhotoImageView, valid while mPhotoBound */
+        private String mPhoto;
+        private boolean mPhotoBound;
+
+        PetViewHolder(View itemView) {
+            super(itemView);
+            mPhotoImageView = (ImageView) itemView.findViewById(R.id.photo);
+            mNameTextView = (TextView) itemView.findViewById(R.id.name);
+            mSummaryTextView = (TextView) itemView.findViewById(R.id.summary);
+            itemView.setOnClickListener(this);
+        }
+
+        /**
+         * Binds a pet, or clears the row while its page is still loading. The pet's text
+         * is display-ready and its photo is only reloaded when it changes, so binding
+         * allocates nothing during a fling.
+         */
+        void bind(Pet pet){
+            mPet = pet;
+            bindPhoto(pet==null ? null : pet.photo);
+            if(pet==null){
+                mNameTextView.setText(null);
+                mSummaryTextView.setText(null);
+                return;
+            }
+            mNameTextView.setText(pet.name);
+            mSummaryTextView.setText(pet.summary);
+        }
+
+        private void bindPhoto(String photo){
+            if(mPhotoBound && TextUtils.equals(photo,mPhoto)){
+                return;
+            }
+            mPhotoLoader.load(mPhotoImageView,photo,true,R.drawable.pet_photo_placeholder);
+            mPhoto = photo;
+            mPhotoBound = true;
+        }
+
+        @Override
+        public void onClick(View v) {
+            if(mPet!=null){
+                mClickListener.onPetClick(mPet.id);
+            }
+        }
+    }
+}
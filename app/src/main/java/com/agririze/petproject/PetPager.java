@@ -0,0 +1,658 @@
+package com.agririze.petproject;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.agririze.petproject.data.Pet;
+import com.agririze.petproject.data.PetContract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the pets table a page at a time on a background thread and keeps only the
+ * most recently used pages in memory. Single-pet change notifications are applied
+ * to the resident pages in place; anything else reloads them, and a reloaded page
+ * is diffed against the one on screen off the main thread so the listener only
+ * hears about rows that really changed. All public methods must be called on the
+ * main thread.
+ */
+public class PetPager {
+
+    /**
+     * Receives position-level updates, plus onPagesChanged when the whole list must be rebound.
+     */
+    public interface Listener extends ListUpdateCallback {
+        void onPagesChanged();
+    }
+
+    /** Gender filter value that matches every pet. */
+    public static final int GENDER_ALL = -1;
+
+    static final int PAGE_SIZE = 50;
+
+    /** Generation of pages that must be reloaded before they can be trusted again */
+    private static final int STALE = 0;
+
+    private static final int MAX_RESIDENT_PAGES = 6;
+
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private static final String[] COUNT_PROJECTION = {
+            "COUNT(*) AS " + PetContract.PetEntry._COUNT
+    };
+
+    private final ContentResolver mContentResolver;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final LinkedHashMap<Integer, Page> mPages =
+            new LinkedHashMap<Integer, Page>(MAX_RESIDENT_PAGES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                    return size() > MAX_RESIDENT_PAGES;
+                }
+            };
+
+    /** Pages currently being loaded, keyed by page index, valued by the version requested. */
+    private final SparseArray<Integer> mLoading = new SparseArray<>();
+
+    /** Last pet of every page seen in this generation, so the next page can be read by keyset. */
+    private final SparseArray<Pet> mPageEnds = new SparseArray<>();
+
+    private PetSort mSort = PetSort.ADDED;
+    private int mGenderFilter = GENDER_ALL;
+    private String mSearch = "";
+
+    private int mCount;
+    private int mGeneration;
+    private boolean mClosed;
+
+    /** Set once the first count, and the first page with it, has arrived */
+    private boolean mLoaded;
+
+    /**
+     * Bumped by every change to the resident pages, so a page load that was started
+     * before the change cannot overwrite it.
+     */
+    private int mVersion;
+
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            onPetsChanged(uri);
+        }
+    };
+
+    public PetPager(ContentResolver contentResolver, Listener listener) {
+        mContentResolver = contentResolver;
+        mListener = listener;
+    }
+
+    public void start(){
+        mContentResolver.registerContentObserver(PetContract.PetEntry.CONTENT_URI,true,mObserver);
+        invalidate();
+    }
+
+    public void close(){
+        mClosed = true;
+        mContentResolver.unregisterContentObserver(mObserver);
+        mExecutor.shutdownNow();
+        mPages.clear();
+    }
+
+    public int getCount(){
+        return mCount;
+    }
+
+    /**
+     * True once the list's first rows, or the fact that it is empty, are known.
+     */
+    public boolean isLoaded(){
+        return mLoaded;
+    }
+
+    public PetSort getSort(){
+        return mSort;
+    }
+
+    public int getGenderFilter(){
+        return mGenderFilter;
+    }
+
+    /**
+     * Switches the sort order and gender filter. Positions change meaning, so resident
+     * pages are dropped rather than served stale.
+     */
+    public void setQuery(PetSort sort, int genderFilter){
+        if(sort==mSort && genderFilter==mGenderFilter){
+            return;
+        }
+        mSort = sort;
+        mGenderFilter = genderFilter;
+        reset();
+    }
+
+    /**
+     * Restricts the list to pets matching search, or shows every pet when it is empty.
+     */
+    public void setSearch(String search){
+        search = search==null ? "" : search.trim();
+        if(search.equals(mSearch)){
+            return;
+        }
+        mSearch = search;
+        reset();
+    }
+
+    private void reset(){
+        mPages.clear();
+        mCount = 0;
+        mListener.onPagesChanged();
+        invalidate();
+    }
+
+    /**
+     * Returns the pet at position, or null if its page is not resident yet. A missing
+     * page is requested, and so is the following page once position gets close to it.
+     */
+    public Pet getPet(int position){
+        int pageIndex = position / PAGE_SIZE;
+        if(position % PAGE_SIZE >= PAGE_SIZE - PREFETCH_DISTANCE
+                && (pageIndex + 1) * PAGE_SIZE < mCount){
+            requestPage(pageIndex + 1);
+        }
+
+        Page page = mPages.get(pageIndex);
+        if(page==null || page.generation!=mGeneration){
+            requestPage(pageIndex);
+        }
+        if(page==null){
+            return null;
+        }
+        int index = position - pageIndex * PAGE_SIZE;
+        return index < page.pets.size() ? page.pets.get(index) : null;
+    }
+
+    /**
+     * Marks every resident page stale and reloads the count. Stale pages keep being
+     * served until their replacement arrives so the list does not flicker. When no page
+     * is resident, as on start, the first page is read right after the count in the same
+     * task, so the first rows do not wait for the count to reach the main thread first.
+     */
+    public void invalidate(){
+        mGeneration++;
+        mVersion++;
+        mPageEnds.clear();
+        final int generation = mGeneration;
+        final int version = mVersion;
+        final Uri uri = baseUri();
+        final String selection = filterSelection();
+        final String[] selectionArgs = filterArgs();
+        final PageQuery firstPage = mPages.isEmpty() ? pageQuery(0) : null;
+        if(firstPage!=null){
+            mLoading.put(0,version);
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count = queryCount(uri,selection,selectionArgs);
+                final List<Pet> pets = firstPage!=null && count>0 ? queryPage(firstPage) : null;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(mClosed || generation!=mGeneration){
+                            return;
+                        }
+                        boolean countChanged = count!=mCount;
+                        mCount = count;
+
+                        boolean prefetched = false;
+                        if(firstPage!=null){
+                            Integer loading = mLoading.get(0);
+                            if(loading!=null && loading==version){
+                                mLoading.remove(0);
+                            }
+                            // A single-pet change since the read may be missing from it
+                            prefetched = pets!=null && version==mVersion;
+                            if(prefetched){
+                                installPage(0,generation,pets);
+                            }
+                        }
+                        if(mPages.isEmpty() && count>0){
+                            requestPage(0);
+                        }
+                        for(Map.Entry<Integer, Page> entry : new ArrayList<>(mPages.entrySet())){
+                            if(entry.getValue().generation!=generation){
+                                requestPage(entry.getKey());
+                            }
+                        }
+                        boolean firstLoad = !mLoaded;
+                        mLoaded = true;
+                        if(countChanged || firstLoad){
+                            trimToCount();
+                            mListener.onPagesChanged();
+                        }else if(prefetched){
+                            mListener.onChanged(0,Math.min(PAGE_SIZE,mCount),null);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void requestPage(final int pageIndex){
+        Integer loading = mLoading.get(pageIndex);
+        if(mClosed || (loading!=null && loading==mVersion)){
+            return;
+        }
+        final int generation = mGeneration;
+        final int version = mVersion;
+        mLoading.put(pageIndex,version);
+
+        final PageQuery query = pageQuery(pageIndex);
+        // Stale pages were already shifted on screen by removePet, so diffing them would mislead
+        Page resident = mPages.get(pageIndex);
+        final List<Pet> oldPets = resident==null || resident.generation==STALE ? null : resident.pets;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Pet> pets = queryPage(query);
+                final DiffUtil.DiffResult diff = oldPets!=null && oldPets.size()==pets.size()
+                        ? DiffUtil.calculateDiff(new PageDiff(oldPets,pets),false)
+                        : null;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(pageIndex,generation,version,oldPets,pets,diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Installs a loaded page. The diff is only dispatched if it was computed against
+     * the rows still on screen; it never changes the row count, so it cannot disagree
+     * with getCount().
+     */
+    private void onPageLoaded(int pageIndex, int generation, int version,
+                              List<Pet> oldPets, List<Pet> pets, DiffUtil.DiffResult diff){
+        Integer loading = mLoading.get(pageIndex);
+        if(loading!=null && loading==version){
+            mLoading.remove(pageIndex);
+        }
+        if(mClosed || version!=mVersion){
+            return;
+        }
+        Page resident = mPages.get(pageIndex);
+        installPage(pageIndex,generation,pets);
+
+        final int start = pageIndex * PAGE_SIZE;
+        if(start>=mCount){
+            return;
+        }
+        if(diff!=null && resident!=null && resident.pets==oldPets){
+            diff.dispatchUpdatesTo(new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    mListener.onInserted(start + position,count);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    mListener.onRemoved(start + position,count);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    mListener.onMoved(start + fromPosition,start + toPosition);
+                }
+
+                @Override
+                public void onChanged(int position, int count, Object payload) {
+                    mListener.onChanged(start + position,count,payload);
+                }
+            });
+        }else{
+            mListener.onChanged(start,Math.min(PAGE_SIZE,mCount - start),null);
+        }
+    }
+
+    private void installPage(int pageIndex, int generation, List<Pet> pets){
+        mPages.put(pageIndex,new Page(generation,pets));
+        if(!pets.isEmpty()){
+            mPageEnds.put(pageIndex,pets.get(pets.size() - 1));
+        }
+        trimToCount();
+    }
+
+    private void onPetsChanged(Uri uri){
+        String change = uri==null ? null : uri.getQueryParameter(PetContract.QUERY_PARAMETER_CHANGE);
+        if(change==null){
+            invalidate();
+            return;
+        }
+        long id = ContentUris.parseId(uri);
+        if(PetContract.CHANGE_DELETE.equals(change)){
+            removePet(id);
+        }else{
+            fetchPet(id,PetContract.CHANGE_INSERT.equals(change));
+        }
+    }
+
+    private void fetchPet(final long id, final boolean inserted){
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Pet pet = queryPet(id);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(mClosed || generation!=mGeneration){
+                            return;
+                        }
+                        if(inserted){
+                            addPet(pet);
+                        }else{
+                            replacePet(id,pet);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Appends a new pet when it lands at the end of the list, which is always the case
+     * when sorting by date added without a filter. Otherwise its position is unknown.
+     */
+    private void addPet(Pet pet){
+        if(pet==null || locate(pet.id)!=null){
+            return;
+        }
+        if(!isPlainList()){
+            invalidate();
+            return;
+        }
+        int position = mCount++;
+        int pageIndex = position / PAGE_SIZE;
+        Page page = mPages.get(pageIndex);
+        if(page!=null && page.pets.size()==position - pageIndex * PAGE_SIZE){
+            List<Pet> pets = new ArrayList<>(page.pets);
+            pets.add(pet);
+            mPages.put(pageIndex,new Page(page.generation,pets));
+            mPageEnds.put(pageIndex,pet);
+        }
+        commitChange();
+        mListener.onInserted(position,1);
+    }
+
+    private void replacePet(long id, Pet pet){
+        int[] location = locate(id);
+        if(location==null){
+            // Only a sorted or filtered list can have an unseen row move into view
+            if(pet==null || !isPlainList()){
+                invalidate();
+            }
+            return;
+        }
+        Page page = mPages.get(location[0]);
+        Pet old = page.pets.get(location[1]);
+        if(pet==null || !keepsPlace(old,pet)){
+            invalidate();
+            return;
+        }
+        List<Pet> pets = new ArrayList<>(page.pets);
+        pets.set(location[1],pet);
+        mPages.put(location[0],new Page(page.generation,pets));
+        commitChange();
+        mListener.onChanged(location[0] * PAGE_SIZE + location[1],1,null);
+    }
+
+    /**
+     * Takes the pet out of its page. Every later row moves up by one, so the pages
+     * after it are kept on screen but reloaded, and its own page is topped up.
+     */
+    private void removePet(long id){
+        int[] location = locate(id);
+        if(location==null){
+            invalidate();
+            return;
+        }
+        int pageIndex = location[0];
+        Page page = mPages.get(pageIndex);
+        List<Pet> pets = new ArrayList<>(page.pets);
+        pets.remove(location[1]);
+        mPages.put(pageIndex,new Page(page.generation,pets));
+
+        for(Map.Entry<Integer, Page> entry : mPages.entrySet()){
+            if(entry.getKey()>pageIndex){
+                entry.setValue(new Page(STALE,entry.getValue().pets));
+            }
+        }
+        for(int i = mPageEnds.size() - 1; i >= 0; i--){
+            if(mPageEnds.keyAt(i)>=pageIndex){
+                mPageEnds.removeAt(i);
+            }
+        }
+        mCount--;
+        commitChange();
+        mListener.onRemoved(pageIndex * PAGE_SIZE + location[1],1);
+        requestPage(pageIndex);
+    }
+
+    private void commitChange(){
+        mVersion++;
+        trimToCount();
+    }
+
+    /**
+     * Finds a resident pet as {page index, index in page}. This scans at most
+     * MAX_RESIDENT_PAGES * PAGE_SIZE rows, independent of the table size.
+     */
+    private int[] locate(long id){
+        for(Map.Entry<Integer, Page> entry : mPages.entrySet()){
+            List<Pet> pets = entry.getValue().pets;
+            for(int i = 0; i < pets.size(); i++){
+                if(pets.get(i).id==id){
+                    return new int[]{ entry.getKey(), i };
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True when every row sits at its _id order position, so single-row changes
+     * cannot move rows that are not resident.
+     */
+    private boolean isPlainList(){
+        return mSort.isById() && mGenderFilter==GENDER_ALL && mSearch.isEmpty();
+    }
+
+    private boolean keepsPlace(Pet old, Pet updated){
+        if(!mSort.sameKey(old,updated)){
+            return false;
+        }
+        if(mGenderFilter!=GENDER_ALL && updated.gender!=mGenderFilter){
+            return false;
+        }
+        return mSearch.isEmpty()
+                || (TextUtils.equals(old.name,updated.name) && TextUtils.equals(old.breed,updated.breed));
+    }
+
+    /**
+     * Reads the page by keyset when the end of the previous page is known, which lets
+     * SQLite seek straight to it through the sort order's index; otherwise falls back
+     * to an offset.
+     */
+    private PageQuery pageQuery(int pageIndex){
+        Uri.Builder builder = baseUri().buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE));
+        String selection = filterSelection();
+        String[] selectionArgs = filterArgs();
+
+        if(pageIndex>0){
+            Pet previous = mPageEnds.get(pageIndex - 1);
+            String[] keysetArgs = previous==null ? null : mSort.keysetArgs(previous);
+            if(keysetArgs==null){
+                builder.appendQueryParameter(PetContract.QUERY_PARAMETER_OFFSET,
+                        String.valueOf(pageIndex * PAGE_SIZE));
+            }else if(mSort.isById()){
+                builder.appendQueryParameter(PetContract.QUERY_PARAMETER_AFTER_ID,
+                        String.valueOf(previous.id));
+            }else{
+                selection = DatabaseUtils.concatenateWhere(selection,mSort.keysetSelection());
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,keysetArgs);
+            }
+        }
+        return new PageQuery(builder.build(),selection,selectionArgs,mSort.orderBy());
+    }
+
+    private Uri baseUri(){
+        if(mSearch.isEmpty()){
+            return PetContract.PetEntry.CONTENT_URI;
+        }
+        return PetContract.PetEntry.buildSearchUri(mSearch);
+    }
+
+    private String filterSelection(){
+        if(mGenderFilter==GENDER_ALL){
+            return null;
+        }
+        return PetContract.PetEntry.COLUMN_PET_GENDER + "=?";
+    }
+
+    private String[] filterArgs(){
+        if(mGenderFilter==GENDER_ALL){
+            return null;
+        }
+        return new String[]{ String.valueOf(mGenderFilter) };
+    }
+
+    private void trimToCount(){
+        Iterator<Map.Entry<Integer, Page>> iterator = mPages.entrySet().iterator();
+        while(iterator.hasNext()){
+            if(iterator.next().getKey() * PAGE_SIZE >= mCount){
+                iterator.remove();
+            }
+        }
+    }
+
+    private int queryCount(Uri uri, String selection, String[] selectionArgs){
+        Cursor cursor = mContentResolver.query(uri,COUNT_PROJECTION,
+                selection,selectionArgs,null);
+        if(cursor==null){
+            return 0;
+        }
+        try{
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }finally {
+            cursor.close();
+        }
+    }
+
+    private Pet queryPet(long id){
+        Cursor cursor = mContentResolver.query(ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,id),
+                Pet.PROJECTION,null,null,null);
+        if(cursor==null){
+            return null;
+        }
+        try{
+            return cursor.moveToFirst() ? Pet.fromCursor(cursor) : null;
+        }finally {
+            cursor.close();
+        }
+    }
+
+    private List<Pet> queryPage(PageQuery query){
+        Cursor cursor = mContentResolver.query(query.uri,Pet.PROJECTION,query.selection,
+                query.selectionArgs,query.sortOrder);
+        if(cursor==null){
+            return Collections.emptyList();
+        }
+        try{
+            List<Pet> pets = new ArrayList<>(cursor.getCount());
+            while(cursor.moveToNext()){
+                pets.add(Pet.fromCursor(cursor));
+            }
+            return pets;
+        }finally {
+            cursor.close();
+        }
+    }
+
+    private static final class PageDiff extends DiffUtil.Callback {
+        private final List<Pet> mOld;
+        private final List<Pet> mNew;
+
+        PageDiff(List<Pet> oldPets, List<Pet> newPets) {
+            mOld = oldPets;
+            mNew = newPets;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.get(oldItemPosition).id==mNew.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.get(oldItemPosition).equals(mNew.get(newItemPosition));
+        }
+    }
+
+    private static final class PageQuery {
+        final Uri uri;
+        final String selection;
+        final String[] selectionArgs;
+        final String sortOrder;
+
+        PageQuery(Uri uri, String selection, String[] selectionArgs, String sortOrder) {
+            this.uri = uri;
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
+        }
+    }
+
+    private static final class Page {
+        final int generation;
+        final List<Pet> pets;
+
+        Page(int generation, List<Pet> pets) {
+            this.generation = generation;
+            this.pets = pets;
+        }
+    }
+}
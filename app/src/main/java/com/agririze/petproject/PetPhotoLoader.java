@@ -0,0 +1,157 @@
+package com.agririze.petproject;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.agririze.petproject.data.PetPhotos;
+
+import java.io.File;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes pet photos off the main thread into a cache bounded by the bytes of its
+ * bitmaps, so binding a catalog row only ever touches memory. Photos are decoded with
+ * an inSampleSize close to the size of their ImageView, and a view that is rebound
+ * before its photo arrives drops the stale result. All methods must be called on the
+ * main thread.
+ */
+public class PetPhotoLoader {
+
+    private static final int DECODE_THREADS = 2;
+
+    /** Share of the app's memory class given to the cache */
+    private static final int CACHE_FRACTION = 8;
+
+    private static PetPhotoLoader sInstance;
+
+    private final PetPhotos mPhotos;
+    private final LruCache<String, Bitmap> mCache;
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Decode running for each view */
+    private final Map<ImageView, Future<?>> mRequests = new WeakHashMap<>();
+
+    public static PetPhotoLoader getInstance(Context context){
+        if(sInstance==null){
+            Context appContext = context.getApplicationContext();
+            ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / CACHE_FRACTION;
+            sInstance = new PetPhotoLoader(new PetPhotos(appContext),maxBytes);
+            appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    sInstance.trimMemory(level);
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    sInstance.trimMemory(TRIM_MEMORY_COMPLETE);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    PetPhotoLoader(PetPhotos photos, int maxBytes) {
+        mPhotos = photos;
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Shows the named photo, or its thumbnail, in view. The placeholder is shown until it
+     * is decoded, and for good if photo is null.
+     */
+    public void load(final ImageView view, String photo, boolean thumbnail, int placeholder){
+        cancel(view);
+        if(photo==null){
+            view.setImageResource(placeholder);
+            return;
+        }
+
+        final File file = thumbnail ? mPhotos.thumbnailFile(photo) : mPhotos.photoFile(photo);
+        // Every view showing one kind of file has the same size, so the file names the bitmap
+        final String key = file.getName();
+        Bitmap cached = mCache.get(key);
+        if(cached!=null){
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageResource(placeholder);
+
+        final int size = targetSize(view);
+        final Future<?>[] request = new Future<?>[1];
+        request[0] = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = PetPhotos.decode(file,size,size);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(bitmap!=null){
+                            mCache.put(key,bitmap);
+                        }
+                        if(mRequests.get(view)==request[0]){
+                            mRequests.remove(view);
+                            if(bitmap!=null){
+                                view.setImageBitmap(bitmap);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+        mRequests.put(view,request[0]);
+    }
+
+    /**
+     * Stops loading a photo into view, for a row that is recycled or cleared.
+     */
+    public void cancel(ImageView view){
+        Future<?> request = mRequests.remove(view);
+        if(request!=null){
+            request.cancel(false);
+        }
+    }
+
+    void trimMemory(int level){
+        if(level>=ComponentCallbacks2.TRIM_MEMORY_MODERATE){
+            mCache.evictAll();
+        }else if(level>=ComponentCallbacks2.TRIM_MEMORY_BACKGROUND){
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Size to decode for view: its fixed layout size, or the screen width when it has none.
+     */
+    private static int targetSize(ImageView view){
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        int size = 0;
+        if(params!=null){
+            size = Math.max(params.width,params.height);
+        }
+        return size>0 ? size : view.getResources().getDisplayMetrics().widthPixels;
+    }
+}
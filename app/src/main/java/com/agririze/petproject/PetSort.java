@@ -0,0 +1,75 @@
+package com.agririze.petproject;
+
+import android.text.TextUtils;
+
+import com.agririze.petproject.data.Pet;
+import com.agririze.petproject.data.PetContract;
+
+/**
+ * Catalog sort orders. Each one orders by a column covered by an index in
+ * PetDbHelper and breaks ties on _id, so pages can be read by keyset.
+ */
+public enum PetSort {
+
+    ADDED(null, ""),
+    NAME(PetContract.PetEntry.COLUMN_PET_NAME, " COLLATE NOCASE"),
+    BREED(PetContract.PetEntry.COLUMN_PET_BREED, ""),
+    WEIGHT(PetContract.PetEntry.COLUMN_PET_WEIGHT, "");
+
+    private final String mColumn;
+    private final String mCollation;
+
+    PetSort(String column, String collation) {
+        mColumn = column;
+        mCollation = collation;
+    }
+
+    public String orderBy(){
+        if(mColumn==null){
+            return PetContract.PetEntry._ID + " ASC";
+        }
+        return mColumn + mCollation + " ASC, " + PetContract.PetEntry._ID + " ASC";
+    }
+
+    /**
+     * Selection for the rows after last in this order. It is written as a range on the
+     * sort column so SQLite can seek the index instead of scanning it.
+     */
+    String keysetSelection(){
+        String key = mColumn + mCollation;
+        return key + ">=? AND (" + key + ">? OR " + PetContract.PetEntry._ID + ">?)";
+    }
+
+    /**
+     * Selection arguments for {@link #keysetSelection()}, or null when last has no sort
+     * key (a NULL breed) and the page has to be read by offset instead.
+     */
+    String[] keysetArgs(Pet last){
+        String key = keyOf(last);
+        if(key==null){
+            return null;
+        }
+        return new String[]{ key, key, String.valueOf(last.id) };
+    }
+
+    boolean sameKey(Pet a, Pet b){
+        return TextUtils.equals(keyOf(a),keyOf(b));
+    }
+
+    boolean isById(){
+        return mColumn==null;
+    }
+
+    private String keyOf(Pet pet){
+        switch (this){
+            case NAME:
+                return pet.name;
+            case BREED:
+                return pet.breed;
+            case WEIGHT:
+                return String.valueOf(pet.weight);
+            default:
+                return String.valueOf(pet.id);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.agririze.petproject;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import android.app.LoaderManager;
+import android.content.CursorLoader;
+import android.content.Loader;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.widget.TextView;
+
+import com.agririze.petproject.data.PetContract;
+
+/**
+ * Pet counts by gender, breed and weight range, read from the provider's stats uris.
+ */
+public class StatsActivity extends AppCompatActivity implements
+        LoaderManager.LoaderCallbacks<Cursor> {
+
+    private static final int GENDER_LOADER = 0;
+    private static final int BREED_LOADER = 1;
+    private static final int WEIGHT_LOADER = 2;
+
+    private static final int TOP_BREEDS = 20;
+
+    private TextView mGenderTextView;
+    private TextView mBreedTextView;
+    private TextView mWeightTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        mGenderTextView = (TextView) findViewById(R.id.stats_gender);
+        mBreedTextView = (TextView) findViewById(R.id.stats_breed);
+        mWeightTextView = (TextView) findViewById(R.id.stats_weight);
+
+        getLoaderManager().initLoader(GENDER_LOADER,null,this);
+        getLoaderManager().initLoader(BREED_LOADER,null,this);
+        getLoaderManager().initLoader(WEIGHT_LOADER,null,this);
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        switch (id){
+            case GENDER_LOADER:
+                return new CursorLoader(this,
+                        PetContract.StatsEntry.buildStatsUri(PetContract.StatsEntry.KIND_GENDER),
+                        null,null,null,null);
+            case BREED_LOADER:
+                Uri uri = PetContract.StatsEntry.buildStatsUri(PetContract.StatsEntry.KIND_BREED).buildUpon()
+                        .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(TOP_BREEDS))
+                        .build();
+                return new CursorLoader(this,uri,null,null,null,
+                        PetContract.StatsEntry.COLUMN_TOTAL + " DESC, " + PetContract.StatsEntry.COLUMN_BUCKET);
+            case WEIGHT_LOADER:
+                return new CursorLoader(this,
+                        PetContract.StatsEntry.buildStatsUri(PetContract.StatsEntry.KIND_WEIGHT),
+                        null,null,null,null);
+            default:
+                throw new IllegalArgumentException("Unknown loader " + id);
+        }
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        int bucketColumnIndex = data.getColumnIndex(PetContract.StatsEntry.COLUMN_BUCKET);
+        int totalColumnIndex = data.getColumnIndex(PetContract.StatsEntry.COLUMN_TOTAL);
+
+        StringBuilder text = new StringBuilder();
+        data.moveToPosition(-1);
+        while(data.moveToNext()){
+            if(text.length()>0){
+                text.append('\n');
+            }
+            String label;
+            switch (loader.getId()){
+                case GENDER_LOADER:
+                    label = genderLabel(data.getInt(bucketColumnIndex));
+                    break;
+                case BREED_LOADER:
+                    label = data.getString(bucketColumnIndex);
+                    if(TextUtils.isEmpty(label)){
+                        label = getString(R.string.unknown_breed);
+                    }
+                    break;
+                default:
+                    int lowest = data.getInt(bucketColumnIndex);
+                    label = getString(R.string.stats_weight_range,lowest,
+                            lowest + PetContract.StatsEntry.WEIGHT_BUCKET_SIZE - 1);
+                    break;
+            }
+            text.append(getString(R.string.stats_row,label,data.getInt(totalColumnIndex)));
+        }
+        textViewFor(loader.getId()).setText(text);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        textViewFor(loader.getId()).setText(null);
+    }
+
+    private TextView textViewFor(int loaderId){
+        switch (loaderId){
+            case GENDER_LOADER:
+                return mGenderTextView;
+            case BREED_LOADER:
+                return mBreedTextView;
+            default:
+                return mWeightTextView;
+        }
+    }
+
+    private String genderLabel(int gender){
+        switch (gender){
+            case PetContract.PetEntry.GENDER_MALE:
+                return getString(R.string.gender_male);
+            case PetContract.PetEntry.GENDER_FEMALE:
+                return getString(R.string.gender_female);
+            default:
+                return getString(R.string.gender_unknown);
+        }
+    }
+}
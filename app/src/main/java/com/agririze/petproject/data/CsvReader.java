@@ -0,0 +1,80 @@
+package com.agririze.petproject.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 records one at a time: fields separated by commas, optionally quoted
+ * with doubled quotes as escapes, so quoted fields may hold commas and line breaks.
+ * Carriage returns outside quotes are ignored, and so is a byte order mark at the start,
+ * which spreadsheets put in front of UTF-8 exports.
+ */
+class CsvReader implements Closeable {
+
+    private final Reader mReader;
+    private final StringBuilder mField = new StringBuilder();
+    private boolean mStarted;
+
+    CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     */
+    List<String> readRecord() throws IOException {
+        int c = mReader.read();
+        if(!mStarted){
+            mStarted = true;
+            if(c=='\uFEFF'){
+                c = mReader.read();
+            }
+        }
+        if(c==-1){
+            return null;
+        }
+
+        List<String> record = new ArrayList<>();
+        mField.setLength(0);
+        boolean fieldStart = true;
+        boolean quoted = false;
+        while(true){
+            if(quoted){
+                if(c==-1){
+                    throw new IOException("Unterminated quoted field");
+                }
+                if(c=='"'){
+                    c = mReader.read();
+                    if(c!='"'){
+                        quoted = false;
+                        continue;
+                    }
+                }
+                mField.append((char) c);
+            }else if(c=='"' && fieldStart){
+                quoted = true;
+            }else if(c==','){
+                record.add(mField.toString());
+                mField.setLength(0);
+                fieldStart = true;
+                c = mReader.read();
+                continue;
+            }else if(c=='\n' || c==-1){
+                record.add(mField.toString());
+                return record;
+            }else if(c!='\r'){
+                mField.append((char) c);
+            }
+            fieldStart = false;
+            c = mReader.read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
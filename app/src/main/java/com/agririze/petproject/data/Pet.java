@@ -0,0 +1,128 @@
+package com.agririze.petproject.data;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+/**
+ * Immutable snapshot of one row of the pets table.
+ */
+public final class Pet {
+
+    public static final String[] PROJECTION = {
+            PetContract.PetEntry._ID,
+            PetContract.PetEntry.COLUMN_PET_NAME,
+            PetContract.PetEntry.COLUMN_PET_BREED,
+            PetContract.PetEntry.COLUMN_PET_GENDER,
+            PetContract.PetEntry.COLUMN_PET_WEIGHT,
+            PetContract.PetEntry.COLUMN_PET_PHOTO,
+            PetContract.PetEntry.COLUMN_PET_SUMMARY
+    };
+
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_NAME = 1;
+    private static final int INDEX_BREED = 2;
+    private static final int INDEX_GENDER = 3;
+    private static final int INDEX_WEIGHT = 4;
+    private static final int INDEX_PHOTO = 5;
+    private static final int INDEX_SUMMARY = 6;
+
+    public final long id;
+    public final String name;
+    public final String breed;
+    public final int gender;
+    public final int weight;
+    /** Name of the photo in {@link PetPhotos}, or null */
+    public final String photo;
+    /**
+     * Display text derived from breed by the provider; see
+     * {@link PetContract.PetEntry#COLUMN_PET_SUMMARY}. Not part of equals.
+     */
+    public final String summary;
+
+    public Pet(long id, String name, String breed, int gender, int weight, String photo, String summary) {
+        this.id = id;
+        this.name = name;
+        this.breed = breed;
+        this.gender = gender;
+        this.weight = weight;
+        this.photo = photo;
+        this.summary = summary;
+    }
+
+    /**
+     * Reads the row the cursor is positioned on. The cursor must have been queried
+     * with {@link #PROJECTION}.
+     */
+    public static Pet fromCursor(Cursor cursor){
+        return new Pet(cursor.getLong(INDEX_ID),
+                cursor.getString(INDEX_NAME),
+                cursor.getString(INDEX_BREED),
+                cursor.getInt(INDEX_GENDER),
+                cursor.getInt(INDEX_WEIGHT),
+                cursor.getString(INDEX_PHOTO),
+                cursor.getString(INDEX_SUMMARY));
+    }
+
+    /**
+     * Values of this pet for the given columns, which must all be in {@link #PROJECTION}.
+     */
+    Object[] toRow(String[] columns){
+        Object[] row = new Object[columns.length];
+        for(int i = 0; i < columns.length; i++){
+            switch (columns[i]){
+                case PetContract.PetEntry._ID:
+                    row[i] = id;
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_NAME:
+                    row[i] = name;
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_BREED:
+                    row[i] = breed;
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_GENDER:
+                    row[i] = gender;
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_WEIGHT:
+                    row[i] = weight;
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_PHOTO:
+                    row[i] = photo;
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_SUMMARY:
+                    row[i] = summary;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown column " + columns[i]);
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this==o){
+            return true;
+        }
+        if(!(o instanceof Pet)){
+            return false;
+        }
+        Pet other = (Pet) o;
+        return id==other.id
+                && gender==other.gender
+                && weight==other.weight
+                && TextUtils.equals(name,other.name)
+                && TextUtils.equals(breed,other.breed)
+                && TextUtils.equals(photo,other.photo);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (name==null ? 0 : name.hashCode());
+        result = 31 * result + (breed==null ? 0 : breed.hashCode());
+        result = 31 * result + gender;
+        result = 31 * result + weight;
+        result = 31 * result + (photo==null ? 0 : photo.hashCode());
+        return result;
+    }
+}
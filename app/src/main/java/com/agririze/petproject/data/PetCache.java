@@ -0,0 +1,60 @@
+package com.agririze.petproject.data;
+
+import android.util.LruCache;
+
+/**
+ * Bounded cache of decoded pet rows keyed by _id. PetProvider evicts entries from its
+ * own write paths, and a row read from the database is only cached if no eviction
+ * happened while it was being read, so a concurrent write can never leave it stale.
+ */
+class PetCache {
+
+    private final LruCache<Long, Pet> mPets;
+
+    /** Bumped by every eviction. Guarded by this. */
+    private long mVersion;
+
+    PetCache(int maxSize) {
+        mPets = new LruCache<>(maxSize);
+    }
+
+    Pet get(long id){
+        return mPets.get(id);
+    }
+
+    synchronized long version(){
+        return mVersion;
+    }
+
+    /**
+     * Caches a row read from the database, unless something was evicted since version
+     * was taken before the read.
+     */
+    synchronized void putIfUnchanged(Pet pet, long version){
+        if(version==mVersion){
+            mPets.put(pet.id,pet);
+        }
+    }
+
+    synchronized void remove(long id){
+        mVersion++;
+        mPets.remove(id);
+    }
+
+    synchronized void clear(){
+        mVersion++;
+        mPets.evictAll();
+    }
+
+    int hitCount(){
+        return mPets.hitCount();
+    }
+
+    int missCount(){
+        return mPets.missCount();
+    }
+
+    int size(){
+        return mPets.size();
+    }
+}
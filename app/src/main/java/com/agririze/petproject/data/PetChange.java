@@ -0,0 +1,40 @@
+package com.agririze.petproject.data;
+
+/**
+ * The state of one pet as exchanged with the sync server: its latest values, or only
+ * the fact that it is deleted, stamped with the time of the change.
+ */
+final class PetChange {
+
+    /** Position in the local change log, or 0 for a change pulled from the server */
+    final long seq;
+    final String syncId;
+    final long changedAt;
+    final boolean deleted;
+    /** The values below are only set when the pet is not deleted */
+    final String name;
+    final String breed;
+    final int gender;
+    final int weight;
+
+    PetChange(long seq, String syncId, long changedAt, boolean deleted,
+              String name, String breed, int gender, int weight) {
+        this.seq = seq;
+        this.syncId = syncId;
+        this.changedAt = changedAt;
+        this.deleted = deleted;
+        this.name = name;
+        this.breed = breed;
+        this.gender = gender;
+        this.weight = weight;
+    }
+
+    /**
+     * True if the values can be stored as a pet, so a bad row from the server is
+     * skipped instead of failing the whole batch.
+     */
+    boolean isValid(){
+        return syncId!=null && (deleted
+                || (name!=null && PetContract.PetEntry.isValidGender(gender) && weight>=0));
+    }
+}
@@ -1,6 +1,7 @@
 package com.agririze.petproject.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -14,10 +15,230 @@ public final class PetContract {
 
     public static final String PATH_PETS = "pets";
 
+    public static final String PATH_SEARCH = "search";
+
+    public static final String PATH_METRICS = "metrics";
+
+    public static final String PATH_STATS = "stats";
+
+    public static final String PATH_SHELTERS = "shelters";
+
+    /**
+     * Optional query parameters on {@link PetEntry#CONTENT_URI} for reading the table a page
+     * at a time. {@link #QUERY_PARAMETER_OFFSET} needs {@link #QUERY_PARAMETER_LIMIT}, and
+     * {@link #QUERY_PARAMETER_AFTER_ID} restricts the result to rows with a larger _id.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+    public static final String QUERY_PARAMETER_OFFSET = "offset";
+    public static final String QUERY_PARAMETER_AFTER_ID = "after";
+
+    /**
+     * Query parameter on the {@link StatsEntry} uris. When "true" the counts are computed
+     * from the pets table with GROUP BY instead of read from the summary table.
+     */
+    public static final String QUERY_PARAMETER_LIVE = "live";
+
+    /**
+     * Query parameter on delete uris. Deleted pets are only hidden at first, marked with
+     * this value (the current time by default), and the same value can be passed to
+     * {@link #METHOD_RESTORE} to undo the delete. Hidden pets are purged later by
+     * {@link #METHOD_PURGE}.
+     */
+    public static final String QUERY_PARAMETER_TOMBSTONE = "tombstone";
+
+    /**
+     * Query parameter on insert and bulkInsert uris, saying what to do with a pet that
+     * duplicates a live one: same name and breed ignoring case, same gender and weight.
+     * <ul>
+     * <li>{@link #DUPLICATES_ALLOW} (the default): inserts it anyway.
+     * <li>{@link #DUPLICATES_REJECT}: skips it. insert returns null and bulkInsert does
+     * not count it.
+     * <li>{@link #DUPLICATES_MERGE}: updates the existing pet with its values, keeping the
+     * existing photo if it has none. insert returns the existing pet's uri and
+     * bulkInsert counts it.
+     * </ul>
+     */
+    public static final String QUERY_PARAMETER_DUPLICATES = "duplicates";
+    public static final String DUPLICATES_ALLOW = "allow";
+    public static final String DUPLICATES_REJECT = "reject";
+    public static final String DUPLICATES_MERGE = "merge";
+
+    /**
+     * Query parameters on bulkInsert uris of resumable imports. The provider records the
+     * position, how many rows of its document the import named by
+     * {@link #QUERY_PARAMETER_IMPORT} has read, in the same transaction as the rows, so
+     * a crash cannot leave them apart. {@link #METHOD_GET_IMPORT_POSITION} reads it back.
+     */
+    public static final String QUERY_PARAMETER_IMPORT = "import";
+    public static final String QUERY_PARAMETER_IMPORT_POSITION = "importPosition";
+
+    /**
+     * Query parameter on the pets/&lt;id&gt; uris passed to observers, saying how that pet
+     * changed. Notifications without it (on the pets uri) mean any number of rows changed.
+     */
+    public static final String QUERY_PARAMETER_CHANGE = "change";
+    public static final String CHANGE_INSERT = "insert";
+    public static final String CHANGE_UPDATE = "update";
+    public static final String CHANGE_DELETE = "delete";
+
+    /**
+     * {@link android.content.ContentResolver#call} method returning the provider's
+     * single-pet cache counters under the EXTRA_CACHE_* keys.
+     */
+    public static final String METHOD_GET_CACHE_STATS = "getCacheStats";
+    public static final String EXTRA_CACHE_HITS = "hits";
+    public static final String EXTRA_CACHE_MISSES = "misses";
+    public static final String EXTRA_CACHE_SIZE = "size";
+
+    /**
+     * {@link android.content.ContentResolver#call} methods for deleted pets. All return
+     * the number of rows they changed under {@link #EXTRA_ROWS}.
+     * <ul>
+     * <li>{@link #METHOD_RESTORE}: brings back the pets deleted with the tombstone in arg.
+     * <li>{@link #METHOD_PURGE}: removes a bounded batch of pets deleted before the time
+     * in arg (milliseconds since the epoch). Call until it returns 0 rows.
+     * <li>{@link #METHOD_COMPACT}: returns a bounded number of free pages to the file
+     * system and the free pages left under {@link #EXTRA_PAGES}. Call until that is 0.
+     * <li>{@link #METHOD_SWEEP_PHOTOS}: deletes the photo files no pet refers to that were
+     * last modified before the time in arg, returning the photos deleted.
+     * </ul>
+     */
+    public static final String METHOD_RESTORE = "restore";
+    public static final String METHOD_PURGE = "purge";
+    public static final String METHOD_COMPACT = "compact";
+    public static final String METHOD_SWEEP_PHOTOS = "sweepPhotos";
+    public static final String EXTRA_ROWS = "rows";
+    public static final String EXTRA_PAGES = "pages";
+
+    /**
+     * {@link android.content.ContentResolver#call} methods for the position of the import
+     * named in arg; see {@link #QUERY_PARAMETER_IMPORT}.
+     * <ul>
+     * <li>{@link #METHOD_GET_IMPORT_POSITION}: returns it under {@link #EXTRA_POSITION},
+     * 0 if none is recorded.
+     * <li>{@link #METHOD_CLEAR_IMPORT_POSITION}: forgets it once the import has finished,
+     * returning the rows removed under {@link #EXTRA_ROWS}.
+     * </ul>
+     */
+    public static final String METHOD_GET_IMPORT_POSITION = "getImportPosition";
+    public static final String METHOD_CLEAR_IMPORT_POSITION = "clearImportPosition";
+    public static final String EXTRA_POSITION = "position";
+
+    /**
+     * Timings of the provider's calls since the process started, one row per operation.
+     * Only served by debug builds.
+     */
+    public static final class MetricsEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI,PATH_METRICS);
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_METRICS;
+
+        public final static String COLUMN_OPERATION = "operation";
+        public final static String COLUMN_COUNT = "count";
+        public final static String COLUMN_P50_MICROS = "p50_us";
+        public final static String COLUMN_P95_MICROS = "p95_us";
+        public final static String COLUMN_P99_MICROS = "p99_us";
+        public final static String COLUMN_MAX_MICROS = "max_us";
+        /**
+         * Rows returned by queries of one pet, of all shelters or with a limit, or rows written
+         * by the other operations. Rows of other queries are not counted.
+         */
+        public final static String COLUMN_ROWS = "rows";
+
+        public static final String[] PROJECTION = {
+                COLUMN_OPERATION, COLUMN_COUNT, COLUMN_P50_MICROS, COLUMN_P95_MICROS,
+                COLUMN_P99_MICROS, COLUMN_MAX_MICROS, COLUMN_ROWS
+        };
+
+        private MetricsEntry() {}
+    }
+
+    /**
+     * Pets of other shelters, each kept in a database of its own so that one shelter's
+     * rows and writes do not slow down another's. The device's own pets stay on
+     * {@link PetEntry#CONTENT_URI}. {@link #buildPetsUri} and pet uris under it accept
+     * what the pets uris accept, except search and sync, and notify their own uris.
+     *
+     * <p>{@link #ALL_PETS_URI} reads every shelter at once, or those listed in
+     * {@link #QUERY_PARAMETER_SHELTERS}. The shelters are queried in parallel and their
+     * rows merged in the sort order, whose columns must be in the projection, with rows
+     * that sort equal, or all rows without a sort order, in the order the shelters are
+     * listed. The limit and offset parameters apply to the merged rows; after_id is not
+     * accepted, since shelters share _ids. Its cursors are notified on {@link #CONTENT_URI}.
+     */
+    public static final class ShelterEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI,PATH_SHELTERS);
+
+        public static final Uri ALL_PETS_URI = Uri.withAppendedPath(CONTENT_URI,PATH_PETS);
+
+        /** Comma-separated shelter ids read by {@link #ALL_PETS_URI} */
+        public static final String QUERY_PARAMETER_SHELTERS = "shelters";
+
+        /**
+         * The shelter a row of {@link #ALL_PETS_URI} comes from. Computed by the provider,
+         * so it may only be projected.
+         */
+        public final static String COLUMN_SHELTER_ID = "shelter_id";
+
+        /**
+         * Uri of the pets of shelter, which must be at least 1.
+         */
+        public static Uri buildPetsUri(long shelterId){
+            return CONTENT_URI.buildUpon().appendPath(String.valueOf(shelterId)).appendPath(PATH_PETS).build();
+        }
+
+        private ShelterEntry() {}
+    }
+
+    /**
+     * Pet counts by gender, breed or weight range, one row per value. The counts are kept
+     * up to date by triggers on the pets table, so reading them does not scan it. The uris
+     * accept the same limit and offset parameters as {@link PetEntry#CONTENT_URI}, and the
+     * sort order may name {@link #COLUMN_BUCKET} and {@link #COLUMN_TOTAL}.
+     */
+    public static final class StatsEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI,PATH_STATS);
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
+        public final static String TABLE_NAME = "pet_stats";
+        public final static String COLUMN_KIND = "kind";
+        /** The gender, the breed ("" for none), or the lowest weight of the range. */
+        public final static String COLUMN_BUCKET = "bucket";
+        public final static String COLUMN_TOTAL = "total";
+
+        public final static String KIND_GENDER = "gender";
+        public final static String KIND_BREED = "breed";
+        public final static String KIND_WEIGHT = "weight";
+
+        /** Width in kg of the weight ranges. */
+        public static final int WEIGHT_BUCKET_SIZE = 5;
+
+        public static Uri buildStatsUri(String kind){
+            return Uri.withAppendedPath(CONTENT_URI,kind);
+        }
+
+        public static boolean isValidKind(String kind){
+            return KIND_GENDER.equals(kind) || KIND_BREED.equals(kind) || KIND_WEIGHT.equals(kind);
+        }
+
+        private StatsEntry() {}
+    }
+
     public static final class PetEntry implements BaseColumns{
 
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI,PATH_PETS);
 
+        /**
+         * Base of the search uris; see {@link #buildSearchUri(String)}.
+         */
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI,PATH_SEARCH);
+
         public static final String CONTENT_LIST_TYPE =
                 ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PETS;
 
@@ -29,10 +250,54 @@ public final class PetContract {
         public final static String COLUMN_PET_BREED = "breed";
         public final static String COLUMN_PET_GENDER = "gender";
         public final static String COLUMN_PET_WEIGHT = "weight";
+        /** Name of the pet's photo in {@link PetPhotos}, or null. */
+        public final static String COLUMN_PET_PHOTO = "photo";
+        /**
+         * Second line of the pet in the catalog: its breed, or "Unknown breed" in the
+         * device's language. Computed by the provider, so it may only be projected.
+         */
+        public final static String COLUMN_PET_SUMMARY = "summary";
+        /** When the pet was deleted, or null. Only used inside the provider. */
+        public final static String COLUMN_PET_DELETED_AT = "deleted_at";
+        /** Id of the pet shared by every shelter it syncs to. Only used inside the provider. */
+        public final static String COLUMN_PET_SYNC_ID = "sync_id";
+        /** When a synced column last changed, here or elsewhere. Only used inside the provider. */
+        public final static String COLUMN_PET_CHANGED_AT = "changed_at";
+        /**
+         * The pet's row in {@link #BREEDS_TABLE_NAME}, or null for no breed. Only used inside
+         * the provider, which reads and writes {@link #COLUMN_PET_BREED} through it.
+         */
+        public final static String COLUMN_PET_BREED_ID = "breed_id";
+        /** Every distinct breed once, with its {@link #COLUMN_PET_BREED_ID} and {@link #COLUMN_PET_BREED} */
+        public final static String BREEDS_TABLE_NAME = "breeds";
+        public final static String SEARCH_TABLE_NAME = "pets_fts";
+        public final static String INDEX_NAME = "pets_name_index";
+        public final static String INDEX_BREED = "pets_breed_index";
+        public final static String INDEX_GENDER_WEIGHT = "pets_gender_weight_index";
+        public final static String INDEX_WEIGHT = "pets_weight_index";
+        public final static String INDEX_DELETED_AT = "pets_deleted_at_index";
+        public final static String INDEX_SYNC_ID = "pets_sync_id_index";
         public static final int GENDER_UNKNOWN = 0;
         public static final int GENDER_MALE = 1;
         public static final int GENDER_FEMALE = 2;
 
+        /**
+         * Uri of the pets whose name or breed has a word starting with each word of query.
+         * Accepts the same paging query parameters as {@link #CONTENT_URI}.
+         */
+        public static Uri buildSearchUri(String query){
+            return CONTENT_SEARCH_URI.buildUpon().appendPath(query).build();
+        }
+
+        /**
+         * Uri notified when a single pet changes; see {@link PetContract#QUERY_PARAMETER_CHANGE}.
+         */
+        public static Uri buildChangeUri(long id, String change){
+            return ContentUris.withAppendedId(CONTENT_URI,id).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_CHANGE,change)
+                    .build();
+        }
+
         public static boolean isValidGender(int gender){
             if(gender==GENDER_UNKNOWN || gender==GENDER_FEMALE || gender==GENDER_MALE){
                 return true;
@@ -3,6 +3,7 @@ package com.agririze.petproject.data;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
 
 public class PetDbHelper extends SQLiteOpenHelper {
 
@@ -10,25 +11,524 @@ public class PetDbHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "shelter.db";
 
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 10;
+
+    /** Page cache per connection, in KiB (negative values are KiB for PRAGMA cache_size) */
+    private static final int CACHE_SIZE_KIB = 4096;
+
+    /**
+     * The pets with their breeds, for reads. Selections, sort orders and projections
+     * name the breed as if it were still a column of pets.
+     */
+    static final String PETS_WITH_BREEDS = PetContract.PetEntry.TABLE_NAME + " LEFT JOIN "
+            + PetContract.PetEntry.BREEDS_TABLE_NAME + " USING (" + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")";
+
+    /**
+     * A where clause for updates of pets matching selection, which may name the breed
+     * like the reads of {@link #PETS_WITH_BREEDS} do.
+     */
+    static String petsMatching(String selection){
+        if(TextUtils.isEmpty(selection)){
+            return selection;
+        }
+        return PetContract.PetEntry._ID + " IN (SELECT " + PetContract.PetEntry.TABLE_NAME + "."
+                + PetContract.PetEntry._ID + " FROM " + PETS_WITH_BREEDS + " WHERE " + selection + ")";
+    }
+
+    /** How far each import has read its document; see {@link PetImporter} */
+    static final String IMPORT_STATE_TABLE = "import_state";
+    static final String COLUMN_SOURCE = "source";
+    static final String COLUMN_POSITION = "position";
+
+    /** View the full-text index reads names and breeds from, by the pet's _id */
+    private static final String SEARCH_SOURCE_VIEW = "pets_fts_source";
+
+    /** Rows per statement when the pets table is rebuilt */
+    private static final int COPY_BATCH_SIZE = 10_000;
+
+    /**
+     * Where a pets row keeps its breed: in a text column of its own up to version 7, as
+     * an id into the breeds table since. The schema helpers take it so the earlier
+     * migration steps still build what they built when they shipped.
+     */
+    private enum BreedColumn {
+        TEXT(PetContract.PetEntry.COLUMN_PET_BREED) {
+            @Override
+            String breedOf(String row) {
+                return row + PetContract.PetEntry.COLUMN_PET_BREED;
+            }
+        },
+        ID(PetContract.PetEntry.COLUMN_PET_BREED_ID) {
+            @Override
+            String breedOf(String row) {
+                return "(SELECT " + PetContract.PetEntry.COLUMN_PET_BREED + " FROM "
+                        + PetContract.PetEntry.BREEDS_TABLE_NAME + " WHERE "
+                        + PetContract.PetEntry.BREEDS_TABLE_NAME + "." + PetContract.PetEntry.COLUMN_PET_BREED_ID
+                        + "=" + row + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")";
+            }
+        };
+
+        final String column;
+
+        BreedColumn(String column) {
+            this.column = column;
+        }
+
+        /** SQL for the breed of a pets row in a trigger, where row is "new." or "old." */
+        abstract String breedOf(String row);
+    }
 
     public PetDbHelper(Context context){
-        super(context,DATABASE_NAME,null,DATABASE_VERSION);
+        this(context,DATABASE_NAME);
+    }
+
+    /**
+     * Helper for the pets database in the named file, such as another shelter's; see
+     * {@link PetShelters}.
+     */
+    PetDbHelper(Context context, String name){
+        super(context,name,null,DATABASE_VERSION);
+    }
+
+    /**
+     * Runs on every open, before onCreate/onUpgrade. Write-ahead logging lets the catalog's
+     * reads proceed on their own connections while the editor writes, and in WAL mode
+     * synchronous=NORMAL only syncs at checkpoints without risking corruption. Incremental
+     * auto-vacuum only takes effect on a new database; the provider's compact call converts
+     * older ones.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.enableWriteAheadLogging();
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KIB);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String SQL_CREATE_PETS_TABLE = "CREATE TABLE " + PetContract.PetEntry.TABLE_NAME
+        createPetsTable(db,PetContract.PetEntry.TABLE_NAME);
+        createBreedsTable(db);
+        createIndexes(db,BreedColumn.ID);
+        createWeightIndex(db);
+        createDeletedIndex(db);
+        createSearchTable(db,BreedColumn.ID);
+        createStatsTable(db);
+        createStatsTriggers(db,BreedColumn.ID);
+        createSyncTables(db);
+        createSyncIdIndex(db);
+        createSyncTriggers(db,BreedColumn.ID);
+        createImportStateTable(db);
+    }
+
+    private static void createPetsTable(SQLiteDatabase db, String name){
+        db.execSQL("CREATE TABLE " + name
                 + " (" + PetContract.PetEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + PetContract.PetEntry.COLUMN_PET_NAME + " TEXT NOT NULL, " +
-                PetContract.PetEntry.COLUMN_PET_BREED + " TEXT, " +
+                PetContract.PetEntry.COLUMN_PET_BREED_ID + " INTEGER, " +
                 PetContract.PetEntry.COLUMN_PET_GENDER + " INTEGER NOT NULL, " +
-                PetContract.PetEntry.COLUMN_PET_WEIGHT + " INTEGER NOT NULL DEFAULT 0)";
-        db.execSQL(SQL_CREATE_PETS_TABLE);
+                PetContract.PetEntry.COLUMN_PET_WEIGHT + " INTEGER NOT NULL DEFAULT 0, " +
+                PetContract.PetEntry.COLUMN_PET_DELETED_AT + " INTEGER, " +
+                PetContract.PetEntry.COLUMN_PET_PHOTO + " TEXT, " +
+                PetContract.PetEntry.COLUMN_PET_SYNC_ID + " TEXT, " +
+                PetContract.PetEntry.COLUMN_PET_CHANGED_AT + " INTEGER)");
+    }
+
+    /**
+     * Each breed once, so pets store a small integer instead of repeating its name. Rows
+     * are added as pets name new breeds and dropped by purge once no pet names them.
+     */
+    private static void createBreedsTable(SQLiteDatabase db){
+        db.execSQL("CREATE TABLE " + PetContract.PetEntry.BREEDS_TABLE_NAME + " ("
+                + PetContract.PetEntry.COLUMN_PET_BREED_ID + " INTEGER PRIMARY KEY, "
+                + PetContract.PetEntry.COLUMN_PET_BREED + " TEXT NOT NULL UNIQUE)");
     }
 
+    /**
+     * Every schema change since version 1, in order. onCreate builds the latest schema
+     * directly, so a new step must be mirrored there.
+     */
+    static final PetMigration[] MIGRATIONS = {
+            new PetMigration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createIndexes(db,BreedColumn.TEXT);
+                }
+            },
+            new PetMigration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createSearchTable(db,BreedColumn.TEXT);
+                    rebuildSearchTable(db);
+                }
+            },
+            new PetMigration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // Its triggers are created by the next step, once pets has deleted_at
+                    createStatsTable(db);
+                    for(String kind : STATS_KINDS){
+                        db.execSQL("INSERT INTO " + PetContract.StatsEntry.TABLE_NAME + " SELECT '" + kind + "', "
+                                + statsBucket(kind) + ", COUNT(*) FROM " + PetContract.PetEntry.TABLE_NAME
+                                + " GROUP BY 2");
+                    }
+                }
+            },
+            new PetMigration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + PetContract.PetEntry.TABLE_NAME + " ADD COLUMN "
+                            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " INTEGER");
+                    createDeletedIndex(db);
+                    createSearchUpdateTriggers(db,BreedColumn.TEXT);
+                    createStatsTriggers(db,BreedColumn.TEXT);
+                }
+            },
+            new PetMigration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + PetContract.PetEntry.TABLE_NAME + " ADD COLUMN "
+                            + PetContract.PetEntry.COLUMN_PET_PHOTO + " TEXT");
+                }
+            },
+            new PetMigration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + PetContract.PetEntry.TABLE_NAME + " ADD COLUMN "
+                            + PetContract.PetEntry.COLUMN_PET_SYNC_ID + " TEXT");
+                    db.execSQL("ALTER TABLE " + PetContract.PetEntry.TABLE_NAME + " ADD COLUMN "
+                            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + " INTEGER");
+                    db.execSQL("UPDATE " + PetContract.PetEntry.TABLE_NAME + " SET "
+                            + PetContract.PetEntry.COLUMN_PET_SYNC_ID + "=" + NEW_SYNC_ID + ", "
+                            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + "=" + NOW_MILLIS);
+                    createSyncTables(db);
+                    createSyncIdIndex(db);
+                    // Every pet is new to the server
+                    db.execSQL("INSERT INTO " + PetSyncStore.CHANGE_LOG_TABLE + " ("
+                            + PetSyncStore.COLUMN_PET_ID + ", " + PetSyncStore.COLUMN_SYNC_ID + ", "
+                            + PetSyncStore.COLUMN_CHANGED_AT + ") SELECT " + PetContract.PetEntry._ID + ", "
+                            + PetContract.PetEntry.COLUMN_PET_SYNC_ID + ", " + PetContract.PetEntry.COLUMN_PET_CHANGED_AT
+                            + " FROM " + PetContract.PetEntry.TABLE_NAME + " ORDER BY " + PetContract.PetEntry._ID);
+                    createSyncTriggers(db,BreedColumn.TEXT);
+                }
+            },
+            new PetMigration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    String pets = PetContract.PetEntry.TABLE_NAME;
+                    String rebuilt = pets + "_rebuilt";
+                    createBreedsTable(db);
+                    // No breed and an empty breed were counted alike; both become a null id
+                    db.execSQL("INSERT INTO " + PetContract.PetEntry.BREEDS_TABLE_NAME + " ("
+                            + PetContract.PetEntry.COLUMN_PET_BREED + ") SELECT DISTINCT "
+                            + PetContract.PetEntry.COLUMN_PET_BREED + " FROM " + pets + " WHERE "
+                            + PetContract.PetEntry.COLUMN_PET_BREED + "<>'' ORDER BY " + PetContract.PetEntry.COLUMN_PET_BREED);
+
+                    // SQLite on older devices cannot drop a column, so pets is copied without it
+                    db.execSQL("DROP TABLE " + PetContract.PetEntry.SEARCH_TABLE_NAME);
+                    createPetsTable(db,rebuilt);
+                    String otherColumns = PetContract.PetEntry.COLUMN_PET_GENDER + ", "
+                            + PetContract.PetEntry.COLUMN_PET_WEIGHT + ", " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + ", "
+                            + PetContract.PetEntry.COLUMN_PET_PHOTO + ", " + PetContract.PetEntry.COLUMN_PET_SYNC_ID + ", "
+                            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT;
+                    PetMigration.copyInBatches(db,pets,rebuilt,
+                            PetContract.PetEntry._ID + ", " + PetContract.PetEntry.COLUMN_PET_NAME + ", "
+                                    + PetContract.PetEntry.COLUMN_PET_BREED_ID + ", " + otherColumns,
+                            PetContract.PetEntry._ID + ", " + PetContract.PetEntry.COLUMN_PET_NAME + ", (SELECT "
+                                    + PetContract.PetEntry.COLUMN_PET_BREED_ID + " FROM " + PetContract.PetEntry.BREEDS_TABLE_NAME
+                                    + " WHERE " + PetContract.PetEntry.BREEDS_TABLE_NAME + "." + PetContract.PetEntry.COLUMN_PET_BREED
+                                    + "=" + pets + "." + PetContract.PetEntry.COLUMN_PET_BREED + "), " + otherColumns,
+                            COPY_BATCH_SIZE);
+                    // Keep the ids of purged pets from being handed out again, as the change log has them
+                    db.execSQL("DELETE FROM sqlite_sequence WHERE name='" + rebuilt + "'");
+                    db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT '" + rebuilt + "', seq"
+                            + " FROM sqlite_sequence WHERE name='" + pets + "'");
+                    db.execSQL("DROP TABLE " + pets);
+                    db.execSQL("ALTER TABLE " + rebuilt + " RENAME TO " + pets);
+
+                    createIndexes(db,BreedColumn.ID);
+                    createDeletedIndex(db);
+                    createSyncIdIndex(db);
+                    createSearchTable(db,BreedColumn.ID);
+                    rebuildSearchTable(db);
+                    createStatsTriggers(db,BreedColumn.ID);
+                    createSyncTriggers(db,BreedColumn.ID);
+                }
+            },
+            new PetMigration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createWeightIndex(db);
+                }
+            },
+            new PetMigration(10) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createImportStateTable(db);
+                }
+            }
+    };
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        PetMigration.migrate(db,MIGRATIONS,oldVersion,newVersion,null);
+    }
+
+    /**
+     * Secondary indexes backing the catalog's sort and filter options. Every index
+     * implicitly ends in _id, which the catalog uses to break ties when paging.
+     */
+    private static void createIndexes(SQLiteDatabase db, BreedColumn breedColumn){
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetContract.PetEntry.INDEX_NAME
+                + " ON " + PetContract.PetEntry.TABLE_NAME
+                + " (" + PetContract.PetEntry.COLUMN_PET_NAME + " COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetContract.PetEntry.INDEX_BREED
+                + " ON " + PetContract.PetEntry.TABLE_NAME
+                + " (" + breedColumn.column + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetContract.PetEntry.INDEX_GENDER_WEIGHT
+                + " ON " + PetContract.PetEntry.TABLE_NAME
+                + " (" + PetContract.PetEntry.COLUMN_PET_GENDER + ", "
+                + PetContract.PetEntry.COLUMN_PET_WEIGHT + ")");
+    }
+
+    /**
+     * Index for the catalog's weight sort over all genders, which the (gender, weight)
+     * index cannot serve without a gender to seek.
+     */
+    private static void createWeightIndex(SQLiteDatabase db){
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetContract.PetEntry.INDEX_WEIGHT
+                + " ON " + PetContract.PetEntry.TABLE_NAME
+                + " (" + PetContract.PetEntry.COLUMN_PET_WEIGHT + ")");
+    }
+
+    /**
+     * Partial index over deleted pets only, so restoring and purging them does not scan
+     * the table and the live rows pay nothing for it.
+     */
+    private static void createDeletedIndex(SQLiteDatabase db){
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetContract.PetEntry.INDEX_DELETED_AT
+                + " ON " + PetContract.PetEntry.TABLE_NAME
+                + " (" + PetContract.PetEntry.COLUMN_PET_DELETED_AT + ") WHERE "
+                + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NOT NULL");
+    }
+
+    /**
+     * Full-text index over name and breed. It is an external content table reading from
+     * pets, kept in sync by triggers so the provider never has to maintain it itself.
+     * Once breeds moved to their own table it reads from a view joining them back in,
+     * whose rowid column is the pet's _id.
+     */
+    private static void createSearchTable(SQLiteDatabase db, BreedColumn breedColumn){
+        String pets = PetContract.PetEntry.TABLE_NAME;
+        String search = PetContract.PetEntry.SEARCH_TABLE_NAME;
+        String columns = PetContract.PetEntry.COLUMN_PET_NAME + ", " + PetContract.PetEntry.COLUMN_PET_BREED;
+
+        String content = pets;
+        if(breedColumn==BreedColumn.ID){
+            content = SEARCH_SOURCE_VIEW;
+            db.execSQL("DROP VIEW IF EXISTS " + SEARCH_SOURCE_VIEW);
+            db.execSQL("CREATE VIEW " + SEARCH_SOURCE_VIEW + " AS SELECT " + pets + "." + PetContract.PetEntry._ID
+                    + " AS rowid, " + columns + " FROM " + PETS_WITH_BREEDS);
+        }
+        db.execSQL("CREATE VIRTUAL TABLE " + search + " USING fts4(content=\"" + content + "\", " + columns + ")");
+        db.execSQL("CREATE TRIGGER " + search + "_before_delete BEFORE DELETE ON " + pets + " BEGIN " + searchDeleteOld());
+        db.execSQL("CREATE TRIGGER " + search + "_after_insert AFTER INSERT ON " + pets + " BEGIN "
+                + searchInsertNew(breedColumn));
+        createSearchUpdateTriggers(db,breedColumn);
+    }
+
+    /**
+     * Indexes every pet already in the content table of the full-text index.
+     */
+    private static void rebuildSearchTable(SQLiteDatabase db){
+        db.execSQL("INSERT INTO " + PetContract.PetEntry.SEARCH_TABLE_NAME
+                + "(" + PetContract.PetEntry.SEARCH_TABLE_NAME + ") VALUES('rebuild')");
+    }
+
+    /**
+     * Reindexes a pet when its name or breed changes. Other updates, such as marking a
+     * pet deleted, leave the index alone.
+     */
+    private static void createSearchUpdateTriggers(SQLiteDatabase db, BreedColumn breedColumn){
+        String search = PetContract.PetEntry.SEARCH_TABLE_NAME;
+        String updateOf = " UPDATE OF " + PetContract.PetEntry.COLUMN_PET_NAME + ", "
+                + breedColumn.column + " ON " + PetContract.PetEntry.TABLE_NAME;
+        db.execSQL("DROP TRIGGER IF EXISTS " + search + "_before_update");
+        db.execSQL("DROP TRIGGER IF EXISTS " + search + "_after_update");
+        db.execSQL("CREATE TRIGGER " + search + "_before_update BEFORE" + updateOf + " BEGIN " + searchDeleteOld());
+        db.execSQL("CREATE TRIGGER " + search + "_after_update AFTER" + updateOf + " BEGIN "
+                + searchInsertNew(breedColumn));
+    }
+
+    private static String searchDeleteOld(){
+        return "DELETE FROM " + PetContract.PetEntry.SEARCH_TABLE_NAME
+                + " WHERE docid=old." + PetContract.PetEntry._ID + "; END";
+    }
+
+    private static String searchInsertNew(BreedColumn breedColumn){
+        return "INSERT INTO " + PetContract.PetEntry.SEARCH_TABLE_NAME + "(docid, "
+                + PetContract.PetEntry.COLUMN_PET_NAME + ", " + PetContract.PetEntry.COLUMN_PET_BREED + ") VALUES("
+                + "new." + PetContract.PetEntry._ID
+                + ", new." + PetContract.PetEntry.COLUMN_PET_NAME
+                + ", " + breedColumn.breedOf("new.") + "); END";
+    }
+
+    /** SQL for a new random sync id: 128 bits as 32 hex digits */
+    private static final String NEW_SYNC_ID = "lower(hex(randomblob(16)))";
+
+    /** SQL for the current time in milliseconds since the epoch */
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    private static void createSyncIdIndex(SQLiteDatabase db){
+        db.execSQL("CREATE UNIQUE INDEX " + PetContract.PetEntry.INDEX_SYNC_ID + " ON "
+                + PetContract.PetEntry.TABLE_NAME + " (" + PetContract.PetEntry.COLUMN_PET_SYNC_ID + ")");
+    }
+
+    /**
+     * The change log, holding the latest change of every pet not yet acknowledged by
+     * the sync server, and the sync engine's own state. Purging a pet leaves its log row,
+     * which is then pushed as a delete.
+     */
+    private static void createSyncTables(SQLiteDatabase db){
+        // AUTOINCREMENT so a sequence number is never reused after acknowledged rows are removed
+        db.execSQL("CREATE TABLE " + PetSyncStore.CHANGE_LOG_TABLE + " ("
+                + PetSyncStore.COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + PetSyncStore.COLUMN_PET_ID + " INTEGER NOT NULL UNIQUE, "
+                + PetSyncStore.COLUMN_SYNC_ID + " TEXT NOT NULL, "
+                + PetSyncStore.COLUMN_CHANGED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + PetSyncStore.SYNC_STATE_TABLE + " ("
+                + PetSyncStore.COLUMN_KEY + " TEXT PRIMARY KEY, "
+                + PetSyncStore.COLUMN_VALUE + " TEXT) WITHOUT ROWID");
+    }
+
+    /**
+     * Import positions live with the pets so a chunk and the position after it are
+     * committed together.
+     */
+    private static void createImportStateTable(SQLiteDatabase db){
+        db.execSQL("CREATE TABLE " + IMPORT_STATE_TABLE + " ("
+                + COLUMN_SOURCE + " TEXT PRIMARY KEY, "
+                + COLUMN_POSITION + " INTEGER NOT NULL) WITHOUT ROWID");
+    }
+
+    /**
+     * Stamps every change to a synced column with its time, gives every new pet a sync id,
+     * and logs the pet for the next push. Replacing a pet's log row moves it to a new,
+     * higher sequence number, so the log holds one row per changed pet however often it
+     * changes. Changes applied by the sync engine carry their own time and are not logged,
+     * which it signals with a row in sync_state. Photos stay on the device, so a new photo
+     * is not a change.
+     */
+    private static void createSyncTriggers(SQLiteDatabase db, BreedColumn breedColumn){
+        String pets = PetContract.PetEntry.TABLE_NAME;
+        String log = PetSyncStore.CHANGE_LOG_TABLE;
+        String notApplying = " WHEN NOT EXISTS (SELECT 1 FROM " + PetSyncStore.SYNC_STATE_TABLE + " WHERE "
+                + PetSyncStore.COLUMN_KEY + "='" + PetSyncStore.KEY_APPLYING + "')";
+        // Neither column is in an UPDATE OF list, so this fires no further triggers
+        String body = " BEGIN UPDATE " + pets + " SET "
+                + PetContract.PetEntry.COLUMN_PET_SYNC_ID + "=COALESCE(" + PetContract.PetEntry.COLUMN_PET_SYNC_ID
+                + ", " + NEW_SYNC_ID + "), " + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + "=" + NOW_MILLIS
+                + " WHERE " + PetContract.PetEntry._ID + "=new." + PetContract.PetEntry._ID + "; "
+                + "INSERT OR REPLACE INTO " + log + " (" + PetSyncStore.COLUMN_PET_ID + ", "
+                + PetSyncStore.COLUMN_SYNC_ID + ", " + PetSyncStore.COLUMN_CHANGED_AT + ") SELECT "
+                + PetContract.PetEntry._ID + ", " + PetContract.PetEntry.COLUMN_PET_SYNC_ID + ", "
+                + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + " FROM " + pets + " WHERE "
+                + PetContract.PetEntry._ID + "=new." + PetContract.PetEntry._ID + "; END";
+
+        db.execSQL("CREATE TRIGGER " + log + "_after_insert AFTER INSERT ON " + pets + notApplying + body);
+        db.execSQL("CREATE TRIGGER " + log + "_after_update AFTER UPDATE OF "
+                + PetContract.PetEntry.COLUMN_PET_NAME + ", " + breedColumn.column + ", "
+                + PetContract.PetEntry.COLUMN_PET_GENDER + ", " + PetContract.PetEntry.COLUMN_PET_WEIGHT + ", "
+                + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " ON " + pets + notApplying + body);
+    }
+
+    private static final String[] STATS_KINDS = {
+            PetContract.StatsEntry.KIND_GENDER, PetContract.StatsEntry.KIND_BREED, PetContract.StatsEntry.KIND_WEIGHT
+    };
+
+    /**
+     * SQL for the stats bucket of kind that a row of pets, or of {@link #PETS_WITH_BREEDS},
+     * falls in, in a plain query.
+     */
+    static String statsBucket(String kind){
+        return statsBucket(kind,"",BreedColumn.TEXT);
+    }
+
+    /**
+     * SQL for the stats bucket of kind that a pets row falls in. row is the row's prefix
+     * in a trigger ("new." or "old."), or "" in a plain query.
+     */
+    private static String statsBucket(String kind, String row, BreedColumn breedColumn){
+        switch (kind){
+            case PetContract.StatsEntry.KIND_GENDER:
+                return row + PetContract.PetEntry.COLUMN_PET_GENDER;
+            case PetContract.StatsEntry.KIND_BREED:
+                return "COALESCE(" + breedColumn.breedOf(row) + ", '')";
+            case PetContract.StatsEntry.KIND_WEIGHT:
+                return "(" + row + PetContract.PetEntry.COLUMN_PET_WEIGHT + " / "
+                        + PetContract.StatsEntry.WEIGHT_BUCKET_SIZE + ") * " + PetContract.StatsEntry.WEIGHT_BUCKET_SIZE;
+            default:
+                throw new IllegalArgumentException("Unknown stats kind " + kind);
+        }
+    }
+
+    /**
+     * Per-bucket pet counts, maintained by triggers so the stats uris read a few rows
+     * instead of grouping the whole pets table. Rows are dropped when their count
+     * reaches zero.
+     */
+    private static void createStatsTable(SQLiteDatabase db){
+        db.execSQL("CREATE TABLE " + PetContract.StatsEntry.TABLE_NAME + " ("
+                + PetContract.StatsEntry.COLUMN_KIND + " TEXT NOT NULL, "
+                + PetContract.StatsEntry.COLUMN_BUCKET + " NOT NULL, "
+                + PetContract.StatsEntry.COLUMN_TOTAL + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + PetContract.StatsEntry.COLUMN_KIND + ", "
+                + PetContract.StatsEntry.COLUMN_BUCKET + ")) WITHOUT ROWID");
+    }
+
+    /**
+     * Triggers keeping pet_stats in step with the pets that are not deleted. Deleting
+     * a pet counts it out, restoring it counts it back in, and purging an already
+     * deleted pet changes nothing.
+     */
+    private static void createStatsTriggers(SQLiteDatabase db, BreedColumn breedColumn){
+        String pets = PetContract.PetEntry.TABLE_NAME;
+        String stats = PetContract.StatsEntry.TABLE_NAME;
+        String newIsLive = " WHEN new." + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+        String oldIsLive = " WHEN old." + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+        String updateOf = " AFTER UPDATE OF " + breedColumn.column + ", "
+                + PetContract.PetEntry.COLUMN_PET_GENDER + ", " + PetContract.PetEntry.COLUMN_PET_WEIGHT + ", "
+                + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " ON " + pets;
+
+        StringBuilder countNew = new StringBuilder();
+        StringBuilder countOld = new StringBuilder();
+        for(String kind : STATS_KINDS){
+            String whereNew = " WHERE " + PetContract.StatsEntry.COLUMN_KIND + "='" + kind + "' AND "
+                    + PetContract.StatsEntry.COLUMN_BUCKET + "=" + statsBucket(kind,"new.",breedColumn) + ";";
+            String whereOld = " WHERE " + PetContract.StatsEntry.COLUMN_KIND + "='" + kind + "' AND "
+                    + PetContract.StatsEntry.COLUMN_BUCKET + "=" + statsBucket(kind,"old.",breedColumn);
+            countNew.append("INSERT OR IGNORE INTO ").append(stats)
+                    .append(" VALUES('").append(kind).append("', ").append(statsBucket(kind,"new.",breedColumn)).append(", 0);")
+                    .append("UPDATE ").append(stats).append(" SET ").append(PetContract.StatsEntry.COLUMN_TOTAL)
+                    .append("=").append(PetContract.StatsEntry.COLUMN_TOTAL).append("+1").append(whereNew);
+            countOld.append("UPDATE ").append(stats).append(" SET ").append(PetContract.StatsEntry.COLUMN_TOTAL)
+                    .append("=").append(PetContract.StatsEntry.COLUMN_TOTAL).append("-1").append(whereOld).append(";")
+                    .append("DELETE FROM ").append(stats).append(whereOld).append(" AND ")
+                    .append(PetContract.StatsEntry.COLUMN_TOTAL).append("=0;");
+        }
 
+        for(String trigger : new String[]{ "_after_insert", "_after_delete", "_after_update",
+                "_after_update_old", "_after_update_new" }){
+            db.execSQL("DROP TRIGGER IF EXISTS " + stats + trigger);
+        }
+        db.execSQL("CREATE TRIGGER " + stats + "_after_insert AFTER INSERT ON " + pets + newIsLive
+                + " BEGIN " + countNew + " END");
+        db.execSQL("CREATE TRIGGER " + stats + "_after_delete AFTER DELETE ON " + pets + oldIsLive
+                + " BEGIN " + countOld + " END");
+        db.execSQL("CREATE TRIGGER " + stats + "_after_update_old" + updateOf + oldIsLive
+                + " BEGIN " + countOld + " END");
+        db.execSQL("CREATE TRIGGER " + stats + "_after_update_new" + updateOf + newIsLive
+                + " BEGIN " + countNew + " END");
     }
-}
+}
\ No newline at end of file
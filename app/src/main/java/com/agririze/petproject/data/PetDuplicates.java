@@ -0,0 +1,288 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Finds the live pet a new one duplicates: same name and breed, ignoring ASCII case as
+ * SQLite's NOCASE does, same gender and same weight. A Bloom filter over the keys of
+ * every pet in the shelter's database answers "certainly new" for most pets without
+ * touching it, so only filter hits pay for the indexed lookup in {@link PetStatements}.
+ *
+ * <p>The filter is built on a background thread, the first time it is needed and
+ * again when writes it cannot follow invalidate it; until then every pet is looked
+ * up. Inserts and full-row updates add their keys. Deleted pets keep theirs, which
+ * only costs lookups, so deletes, restores and purges leave the filter alone.
+ */
+class PetDuplicates {
+
+    private static final String LOG_TAG = PetDuplicates.class.getSimpleName();
+
+    /** Filter bits per key, which with {@link #HASHES} gives about 1% false positives */
+    private static final int BITS_PER_KEY = 10;
+
+    private static final int HASHES = 7;
+
+    /** Keys the smallest filter is sized for */
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final String SQL_COUNT = "SELECT COUNT(*) FROM " + PetContract.PetEntry.TABLE_NAME;
+
+    private static final String SQL_SELECT_KEYS = "SELECT "
+            + PetContract.PetEntry.COLUMN_PET_NAME + ", "
+            + PetContract.PetEntry.COLUMN_PET_BREED + ", "
+            + PetContract.PetEntry.COLUMN_PET_GENDER + ", "
+            + PetContract.PetEntry.COLUMN_PET_WEIGHT + " FROM " + PetDbHelper.PETS_WITH_BREEDS;
+
+    /** Builds the filters of every shelter, one at a time */
+    private static final ExecutorService sRebuilds = Executors.newSingleThreadExecutor();
+
+    /**
+     * A Bloom filter of fixed size. Adding and probing are lock free and may run on any
+     * thread, including while the filter is being built.
+     */
+    static final class Filter {
+
+        private final AtomicLongArray mWords;
+        private final int mBits;
+        private final int mCapacity;
+
+        Filter(int capacity) {
+            mCapacity = Math.max(capacity,MIN_CAPACITY);
+            long bits = (long) mCapacity * BITS_PER_KEY;
+            mWords = new AtomicLongArray((int) Math.min((bits + 63) / 64,Integer.MAX_VALUE / 64));
+            mBits = mWords.length() * 64;
+        }
+
+        int capacity(){
+            return mCapacity;
+        }
+
+        void add(String key){
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for(int i = 1; i <= HASHES; i++){
+                int bit = bit(h1 + i * h2);
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long old;
+                do{
+                    old = mWords.get(word);
+                }while((old & mask)==0 && !mWords.compareAndSet(word,old,old | mask));
+            }
+        }
+
+        boolean mightContain(String key){
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for(int i = 1; i <= HASHES; i++){
+                int bit = bit(h1 + i * h2);
+                if((mWords.get(bit >>> 6) & (1L << bit))==0){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int bit(int combined){
+            return (combined < 0 ? ~combined : combined) % mBits;
+        }
+
+        /** 64-bit FNV-1a over the key's chars, finished with MurmurHash3's mix */
+        private static long hash(String key){
+            long hash = 0xcbf29ce484222325L;
+            for(int i = 0; i < key.length(); i++){
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+
+    private final PetDbHelper mHelper;
+
+    /** The published filter, or null until one is built. Guarded by this. */
+    private Filter mFilter;
+
+    /** Keys added to mFilter since it was built. Guarded by this. */
+    private int mAdded;
+
+    /** The filter being built, which adds go to as well. Guarded by this. */
+    private Filter mBuilding;
+
+    /** Bumped by every invalidation, so a build that started before one is dropped. Guarded by this. */
+    private int mGeneration;
+
+    private boolean mRebuildPending;
+    private boolean mClosed;
+
+    PetDuplicates(PetDbHelper helper) {
+        mHelper = helper;
+    }
+
+    /**
+     * Returns the _id of a live pet that values duplicates, or -1. Must run in the
+     * transaction that goes on to insert values, so no other write comes in between.
+     */
+    long find(PetStatements statements, ContentValues values){
+        Filter filter;
+        synchronized (this){
+            filter = mFilter;
+            if(filter==null){
+                scheduleRebuild();
+            }
+        }
+        if(filter!=null && !filter.mightContain(keyOf(values))){
+            return -1;
+        }
+        return statements.findDuplicate(values);
+    }
+
+    /**
+     * Adds the key of a pet inserted or updated with values.
+     */
+    synchronized void add(ContentValues values){
+        String key = keyOf(values);
+        if(mBuilding!=null){
+            mBuilding.add(key);
+        }
+        if(mFilter!=null){
+            mFilter.add(key);
+            // Past its capacity the filter lets more and more new pets through to the lookup
+            if(++mAdded>mFilter.capacity()){
+                scheduleRebuild();
+            }
+        }
+    }
+
+    /**
+     * Drops the filter after a write that may have changed keys without adding them,
+     * so every pet is looked up until it is built again.
+     */
+    synchronized void invalidate(){
+        mFilter = null;
+        mGeneration++;
+    }
+
+    /**
+     * Stops building filters. Called before the shelter's database is closed, so a
+     * build never reopens it.
+     */
+    synchronized void close(){
+        mClosed = true;
+        mFilter = null;
+    }
+
+    /** Called with the lock held */
+    private void scheduleRebuild(){
+        if(mRebuildPending || mClosed){
+            return;
+        }
+        mRebuildPending = true;
+        sRebuilds.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    rebuild();
+                }catch (RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to build the duplicates filter",e);
+                }finally {
+                    synchronized (PetDuplicates.this){
+                        mRebuildPending = false;
+                        mBuilding = null;
+                    }
+                }
+            }
+        });
+    }
+
+    private void rebuild(){
+        SQLiteDatabase database;
+        synchronized (this){
+            if(mClosed){
+                return;
+            }
+            database = mHelper.getWritableDatabase();
+        }
+        Filter filter = new Filter((int) Math.min(2 * DatabaseUtils.longForQuery(database,SQL_COUNT,null),
+                Integer.MAX_VALUE));
+
+        // Waits out the write transaction in progress, whose key may have been added before
+        // mBuilding was set; writes after this one add theirs to the new filter as well
+        int generation;
+        database.beginTransactionNonExclusive();
+        try{
+            synchronized (this){
+                mBuilding = filter;
+                generation = mGeneration;
+            }
+        }finally {
+            database.endTransaction();
+        }
+
+        int rows = 0;
+        Cursor cursor = database.rawQuery(SQL_SELECT_KEYS,null);
+        try{
+            while(cursor.moveToNext()){
+                filter.add(key(cursor.getString(0),cursor.getString(1),cursor.getInt(2),cursor.getInt(3)));
+                rows++;
+            }
+        }finally {
+            cursor.close();
+        }
+
+        synchronized (this){
+            if(generation==mGeneration && !mClosed){
+                mFilter = filter;
+                mAdded = 0;
+                Log.d(LOG_TAG,"Built the duplicates filter from " + rows + " pets");
+            }
+        }
+    }
+
+    static String keyOf(ContentValues values){
+        Integer gender = values.getAsInteger(PetContract.PetEntry.COLUMN_PET_GENDER);
+        Integer weight = values.getAsInteger(PetContract.PetEntry.COLUMN_PET_WEIGHT);
+        return key(values.getAsString(PetContract.PetEntry.COLUMN_PET_NAME),PetStatements.breedOf(values),
+                gender==null ? 0 : gender,weight==null ? 0 : weight);
+    }
+
+    /**
+     * The duplicate key of a pet. No breed and an empty breed are the same.
+     */
+    static String key(String name, String breed, int gender, int weight){
+        return foldCase(name) + '\u0000' + foldCase(breed) + '\u0000' + gender + '\u0000' + weight;
+    }
+
+    /** Lower cases ASCII letters only, matching SQLite's NOCASE */
+    private static String foldCase(String text){
+        if(text==null){
+            return "";
+        }
+        char[] chars = null;
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(c>='A' && c<='Z'){
+                if(chars==null){
+                    chars = text.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars==null ? text : new String(chars);
+    }
+}
@@ -0,0 +1,224 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the pets table out of PetProvider as CSV or JSON. The table is read in pages
+ * of {@link #CHUNK_SIZE} rows keyed by _id, so no cursor ever holds more than one page
+ * and memory use does not grow with the table. Both formats can be read back by
+ * {@link PetImporter}.
+ *
+ * <p>Every page is its own query, so rows written while the export runs may or may not
+ * be included.
+ */
+public class PetExporter {
+
+    public static final int CHUNK_SIZE = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        CSV("text/csv"),
+        JSON("application/json");
+
+        public final String mimeType;
+
+        Format(String mimeType) {
+            this.mimeType = mimeType;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(long exported);
+    }
+
+    private final ContentResolver mContentResolver;
+
+    public PetExporter(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Writes every pet to destination, replacing its contents, and returns the number of
+     * pets written. Must not run on the main thread. Stops with an InterruptedIOException
+     * between pages if the thread is interrupted, leaving a partial document behind.
+     */
+    public long exportPets(Uri destination, Format format, ProgressListener listener) throws IOException {
+        OutputStream out = mContentResolver.openOutputStream(destination,"wt");
+        if(out==null){
+            throw new FileNotFoundException("Cannot open " + destination);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out,StandardCharsets.UTF_8),BUFFER_SIZE);
+        PetWriter petWriter = format==Format.JSON ? new JsonPetWriter(writer) : new CsvPetWriter(writer);
+
+        long exported = 0;
+        try{
+            petWriter.begin();
+            long lastId = 0;
+            int rows;
+            do{
+                if(Thread.interrupted()){
+                    throw new InterruptedIOException("Export to " + destination + " interrupted");
+                }
+
+                Uri page = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                        .appendQueryParameter(PetContract.QUERY_PARAMETER_AFTER_ID,String.valueOf(lastId))
+                        .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(CHUNK_SIZE))
+                        .build();
+                Cursor cursor = mContentResolver.query(page,Pet.PROJECTION,null,null,null);
+                if(cursor==null){
+                    throw new IOException("Query failed for " + page);
+                }
+                rows = 0;
+                try{
+                    while(cursor.moveToNext()){
+                        Pet pet = Pet.fromCursor(cursor);
+                        petWriter.write(pet);
+                        lastId = pet.id;
+                        rows++;
+                    }
+                }finally {
+                    cursor.close();
+                }
+
+                exported += rows;
+                if(listener!=null){
+                    listener.onProgress(exported);
+                }
+            }while(rows==CHUNK_SIZE);
+            petWriter.end();
+        }finally {
+            petWriter.close();
+        }
+        return exported;
+    }
+
+    private interface PetWriter extends Closeable {
+        void begin() throws IOException;
+
+        void write(Pet pet) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private static final class CsvPetWriter implements PetWriter {
+
+        private final Writer mWriter;
+
+        CsvPetWriter(Writer writer) {
+            mWriter = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            mWriter.write(PetContract.PetEntry._ID + ","
+                    + PetContract.PetEntry.COLUMN_PET_NAME + ","
+                    + PetContract.PetEntry.COLUMN_PET_BREED + ","
+                    + PetContract.PetEntry.COLUMN_PET_GENDER + ","
+                    + PetContract.PetEntry.COLUMN_PET_WEIGHT + "\r\n");
+        }
+
+        @Override
+        public void write(Pet pet) throws IOException {
+            mWriter.write(Long.toString(pet.id));
+            mWriter.write(',');
+            writeField(pet.name);
+            mWriter.write(',');
+            writeField(pet.breed);
+            mWriter.write(',');
+            mWriter.write(Integer.toString(pet.gender));
+            mWriter.write(',');
+            mWriter.write(Integer.toString(pet.weight));
+            mWriter.write("\r\n");
+        }
+
+        /**
+         * Writes text as a CSV field, quoting it if it holds a separator, quote or line break.
+         */
+        private void writeField(String text) throws IOException {
+            if(text==null){
+                return;
+            }
+            boolean quote = false;
+            for(int i = 0; i < text.length() && !quote; i++){
+                char c = text.charAt(i);
+                quote = c==',' || c=='"' || c=='\n' || c=='\r';
+            }
+            if(!quote){
+                mWriter.write(text);
+                return;
+            }
+            mWriter.write('"');
+            for(int i = 0; i < text.length(); i++){
+                char c = text.charAt(i);
+                if(c=='"'){
+                    mWriter.write('"');
+                }
+                mWriter.write(c);
+            }
+            mWriter.write('"');
+        }
+
+        @Override
+        public void end() throws IOException {
+            mWriter.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mWriter.close();
+        }
+    }
+
+    private static final class JsonPetWriter implements PetWriter {
+
+        private final Writer mWriter;
+        private final JsonWriter mJson;
+
+        JsonPetWriter(Writer writer) {
+            mWriter = writer;
+            mJson = new JsonWriter(writer);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            mJson.beginArray();
+        }
+
+        @Override
+        public void write(Pet pet) throws IOException {
+            mJson.beginObject();
+            mJson.name(PetContract.PetEntry._ID).value(pet.id);
+            mJson.name(PetContract.PetEntry.COLUMN_PET_NAME).value(pet.name);
+            mJson.name(PetContract.PetEntry.COLUMN_PET_BREED).value(pet.breed);
+            mJson.name(PetContract.PetEntry.COLUMN_PET_GENDER).value(pet.gender);
+            mJson.name(PetContract.PetEntry.COLUMN_PET_WEIGHT).value(pet.weight);
+            mJson.endObject();
+        }
+
+        @Override
+        public void end() throws IOException {
+            mJson.endArray();
+            mJson.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // JsonWriter.close() throws on an unfinished array, hiding why the export stopped
+            mWriter.close();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams pets from a CSV or JSON document into PetProvider. Rows are read one at a
+ * time and inserted in chunks of {@link #CHUNK_SIZE}, each chunk in one bulkInsert
+ * transaction, so memory use does not grow with the size of the document.
+ *
+ * <p>CSV needs a header row naming the name, breed, gender and weight columns, in any
+ * order. JSON must be an array of objects with those keys. Gender is 0/1/2 or
+ * unknown/male/female. Rows failing {@link PetContract.PetEntry#isValidGender} or with
+ * a negative weight are counted as rejected and skipped. Rows duplicating a pet already
+ * there, by name, breed, gender and weight, are counted as duplicates and skipped, so
+ * importing the same document twice adds nothing the second time.
+ *
+ * <p>Every chunk saves the number of rows read from the document in its own transaction,
+ * so importing the same uri again after an interruption or a crash resumes after the
+ * last committed chunk.
+ */
+public class PetImporter {
+
+    public static final int CHUNK_SIZE = 1000;
+
+    private static final Uri INSERT_URI = PetContract.PetEntry.CONTENT_URI.buildUpon()
+            .appendQueryParameter(PetContract.QUERY_PARAMETER_DUPLICATES,PetContract.DUPLICATES_REJECT)
+            .build();
+
+    private static final int NAME = 0;
+    private static final int BREED = 1;
+    private static final int GENDER = 2;
+    private static final int WEIGHT = 3;
+
+    private static final String[] COLUMNS = {
+            PetContract.PetEntry.COLUMN_PET_NAME,
+            PetContract.PetEntry.COLUMN_PET_BREED,
+            PetContract.PetEntry.COLUMN_PET_GENDER,
+            PetContract.PetEntry.COLUMN_PET_WEIGHT
+    };
+
+    public interface ProgressListener {
+        void onProgress(long imported, long rejected);
+    }
+
+    public static final class Result {
+        /** Rows inserted by this run. */
+        public final long imported;
+        /** Invalid rows skipped by this run. */
+        public final long rejected;
+        /** Rows skipped by this run as duplicates of pets already there. */
+        public final long duplicates;
+        /** Rows of the document already committed by an earlier, interrupted run. */
+        public final long resumedFrom;
+
+        Result(long imported, long rejected, long duplicates, long resumedFrom) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.duplicates = duplicates;
+            this.resumedFrom = resumedFrom;
+        }
+    }
+
+    private final ContentResolver mContentResolver;
+
+    public PetImporter(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Imports source, blocking until done. Must not run on the main thread. Stops with
+     * an InterruptedIOException between chunks if the thread is interrupted.
+     */
+    public Result importPets(Uri source, ProgressListener listener) throws IOException {
+        String key = source.toString();
+        Bundle saved = mContentResolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_GET_IMPORT_POSITION,key,null);
+        long position = saved.getLong(PetContract.EXTRA_POSITION);
+        long resumedFrom = position;
+        long imported = 0;
+        long rejected = 0;
+        long duplicates = 0;
+
+        RowReader reader = openReader(source);
+        try{
+            String[] row = new String[COLUMNS.length];
+            for(long skipped = 0; skipped < resumedFrom && reader.next(row); skipped++){
+                // Already committed by the interrupted run
+            }
+
+            List<ContentValues> chunk = new ArrayList<>(CHUNK_SIZE);
+            int rowsInChunk = 0;
+            boolean more = true;
+            while(more){
+                more = reader.next(row);
+                if(more){
+                    rowsInChunk++;
+                    ContentValues pet = toPet(row);
+                    if(pet==null){
+                        rejected++;
+                    }else{
+                        chunk.add(pet);
+                    }
+                }
+
+                if(rowsInChunk==CHUNK_SIZE || (!more && rowsInChunk>0)){
+                    if(Thread.interrupted()){
+                        throw new InterruptedIOException("Import of " + source + " interrupted");
+                    }
+                    position += rowsInChunk;
+                    // Commits the position with the rows, even when every row was rejected
+                    Uri uri = INSERT_URI.buildUpon()
+                            .appendQueryParameter(PetContract.QUERY_PARAMETER_IMPORT,key)
+                            .appendQueryParameter(PetContract.QUERY_PARAMETER_IMPORT_POSITION,String.valueOf(position))
+                            .build();
+                    int inserted = mContentResolver.bulkInsert(uri,chunk.toArray(new ContentValues[0]));
+                    imported += inserted;
+                    duplicates += chunk.size() - inserted;
+                    chunk.clear();
+                    rowsInChunk = 0;
+                    if(listener!=null){
+                        listener.onProgress(imported,rejected);
+                    }
+                }
+            }
+        }finally {
+            reader.close();
+        }
+
+        mContentResolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_CLEAR_IMPORT_POSITION,key,null);
+        return new Result(imported,rejected,duplicates,resumedFrom);
+    }
+
+    private RowReader openReader(Uri source) throws IOException {
+        InputStream in = mContentResolver.openInputStream(source);
+        if(in==null){
+            throw new FileNotFoundException("Cannot open " + source);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in,StandardCharsets.UTF_8));
+        try{
+            return isJson(source) ? new JsonRows(reader) : new CsvRows(reader);
+        }catch (IOException | RuntimeException e){
+            reader.close();
+            throw e;
+        }
+    }
+
+    private boolean isJson(Uri source){
+        String type = mContentResolver.getType(source);
+        if(type!=null){
+            return type.contains("json");
+        }
+        String path = source.getPath();
+        return path!=null && path.toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    /**
+     * Converts a row read from the document into pet values, or returns null if the row
+     * is not a valid pet.
+     */
+    private static ContentValues toPet(String[] row){
+        String name = trim(row[NAME]);
+        if(name==null){
+            return null;
+        }
+
+        Integer gender = parseGender(trim(row[GENDER]));
+        if(gender==null || !PetContract.PetEntry.isValidGender(gender)){
+            return null;
+        }
+
+        int weight = 0;
+        String weightText = trim(row[WEIGHT]);
+        if(weightText!=null){
+            try{
+                weight = Integer.parseInt(weightText);
+            }catch (NumberFormatException e){
+                return null;
+            }
+            if(weight<0){
+                return null;
+            }
+        }
+
+        ContentValues values = new ContentValues(COLUMNS.length);
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,name);
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,trim(row[BREED]));
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,gender);
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,weight);
+        return values;
+    }
+
+    private static Integer parseGender(String text){
+        if(text==null){
+            return PetContract.PetEntry.GENDER_UNKNOWN;
+        }
+        switch (text.toLowerCase(Locale.ROOT)){
+            case "unknown":
+                return PetContract.PetEntry.GENDER_UNKNOWN;
+            case "male":
+                return PetContract.PetEntry.GENDER_MALE;
+            case "female":
+                return PetContract.PetEntry.GENDER_FEMALE;
+        }
+        try{
+            return Integer.valueOf(text);
+        }catch (NumberFormatException e){
+            return null;
+        }
+    }
+
+    private static String trim(String text){
+        if(text==null){
+            return null;
+        }
+        text = text.trim();
+        return TextUtils.isEmpty(text) ? null : text;
+    }
+
+    private static int columnOf(String name){
+        for(int i = 0; i < COLUMNS.length; i++){
+            if(COLUMNS[i].equalsIgnoreCase(name.trim())){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Source of document rows, each read into a name/breed/gender/weight array.
+     */
+    private interface RowReader extends Closeable {
+        /**
+         * Reads the next row into row, returning false at the end of the document.
+         */
+        boolean next(String[] row) throws IOException;
+    }
+
+    private static final class CsvRows implements RowReader {
+
+        private final CsvReader mCsv;
+
+        /** Column of each field of a record, or -1 for fields that are ignored */
+        private final int[] mColumns;
+
+        CsvRows(BufferedReader reader) throws IOException {
+            mCsv = new CsvReader(reader);
+            List<String> header = mCsv.readRecord();
+            if(header==null){
+                throw new IOException("CSV has no header row");
+            }
+            mColumns = new int[header.size()];
+            boolean hasName = false;
+            for(int i = 0; i < mColumns.length; i++){
+                mColumns[i] = columnOf(header.get(i));
+                hasName |= mColumns[i]==NAME;
+            }
+            if(!hasName){
+                throw new IOException("CSV has no " + PetContract.PetEntry.COLUMN_PET_NAME + " column");
+            }
+        }
+
+        @Override
+        public boolean next(String[] row) throws IOException {
+            List<String> record;
+            do{
+                record = mCsv.readRecord();
+                if(record==null){
+                    return false;
+                }
+            }while(record.size()==1 && record.get(0).trim().isEmpty());
+
+            Arrays.fill(row,null);
+            for(int i = 0; i < record.size() && i < mColumns.length; i++){
+                if(mColumns[i]!=-1){
+                    row[mColumns[i]] = record.get(i);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mCsv.close();
+        }
+    }
+
+    private static final class JsonRows implements RowReader {
+
+        private final JsonReader mJson;
+        private boolean mDone;
+
+        JsonRows(BufferedReader reader) throws IOException {
+            mJson = new JsonReader(reader);
+            mJson.beginArray();
+        }
+
+        @Override
+        public boolean next(String[] row) throws IOException {
+            if(mDone){
+                return false;
+            }
+            if(!mJson.hasNext()){
+                mJson.endArray();
+                mDone = true;
+                return false;
+            }
+
+            Arrays.fill(row,null);
+            mJson.beginObject();
+            while(mJson.hasNext()){
+                int column = columnOf(mJson.nextName());
+                JsonToken token = mJson.peek();
+                if(column!=-1 && (token==JsonToken.STRING || token==JsonToken.NUMBER)){
+                    row[column] = mJson.nextString();
+                }else{
+                    mJson.skipValue();
+                }
+            }
+            mJson.endObject();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mJson.close();
+        }
+    }
+}
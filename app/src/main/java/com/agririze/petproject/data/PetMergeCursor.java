@@ -0,0 +1,291 @@
+package com.agririze.petproject.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Merges cursors that are each sorted by the same ORDER BY into one cursor in that order,
+ * as SQLite would sort their rows together, and keeps the rows from an offset up to a
+ * limit. Rows that sort equal come in the order of the cursors, so without a sort order
+ * the cursors follow one another.
+ *
+ * <p>The merge runs when the cursor is made, reading only the sort columns of each row
+ * it passes, and stores which cursor and position every merged row comes from. The
+ * other columns are read from the merged cursors as this one moves. Closing it closes
+ * them.
+ */
+class PetMergeCursor extends AbstractCursor {
+
+    /** One column of the ORDER BY */
+    private static final class Term {
+        final int column;
+        final boolean noCase;
+        final boolean descending;
+
+        Term(int column, boolean noCase, boolean descending) {
+            this.column = column;
+            this.noCase = noCase;
+            this.descending = descending;
+        }
+    }
+
+    private final Cursor[] mCursors;
+    private final String[] mColumnNames;
+    private final int[] mCursorOf;
+    private final int[] mPositionOf;
+    private Cursor mCurrent;
+
+    /**
+     * @param sortOrder an ORDER BY of columns of the cursors, each optionally followed by
+     *                  COLLATE NOCASE or BINARY and by ASC or DESC, or null
+     * @param limit the most rows to keep, or -1 for all of them
+     */
+    PetMergeCursor(final Cursor[] cursors, String sortOrder, long offset, long limit) {
+        mCursors = cursors;
+        mColumnNames = cursors.length==0 ? new String[0] : cursors[0].getColumnNames();
+        final Term[] terms = parseSortOrder(sortOrder,mColumnNames);
+
+        long total = 0;
+        for(Cursor cursor : cursors){
+            total += cursor.getCount();
+        }
+        long kept = Math.max(total - offset,0);
+        if(limit>=0){
+            kept = Math.min(kept,limit);
+        }
+        mCursorOf = new int[(int) kept];
+        mPositionOf = new int[(int) kept];
+
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(cursors.length,1), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                for(Term term : terms){
+                    int order = compareValues(cursors[a],cursors[b],term.column,term.noCase);
+                    if(order!=0){
+                        return term.descending ? -order : order;
+                    }
+                }
+                return Integer.compare(a,b);
+            }
+        });
+        for(int i = 0; i < cursors.length; i++){
+            if(cursors[i].moveToFirst()){
+                heads.add(i);
+            }
+        }
+        long skipped = 0;
+        int merged = 0;
+        while(merged < kept){
+            int next = heads.poll();
+            if(skipped < offset){
+                skipped++;
+            }else{
+                mCursorOf[merged] = next;
+                mPositionOf[merged] = cursors[next].getPosition();
+                merged++;
+            }
+            if(cursors[next].moveToNext()){
+                heads.add(next);
+            }
+        }
+    }
+
+    private static Term[] parseSortOrder(String sortOrder, String[] columnNames){
+        if(sortOrder==null || sortOrder.trim().isEmpty()){
+            return new Term[0];
+        }
+        List<Term> terms = new ArrayList<>();
+        for(String part : sortOrder.split(",")){
+            String[] words = part.trim().split("\\s+");
+            int column = indexOf(columnNames,words[0]);
+            boolean noCase = false;
+            boolean descending = false;
+            int i = 1;
+            if(i + 1 < words.length && words[i].equalsIgnoreCase("COLLATE")){
+                String collation = words[i + 1].toUpperCase(Locale.ROOT);
+                if(!collation.equals("NOCASE") && !collation.equals("BINARY")){
+                    throw new IllegalArgumentException("Cannot merge rows by collation " + words[i + 1]);
+                }
+                noCase = collation.equals("NOCASE");
+                i += 2;
+            }
+            if(i < words.length && (words[i].equalsIgnoreCase("ASC") || words[i].equalsIgnoreCase("DESC"))){
+                descending = words[i].equalsIgnoreCase("DESC");
+                i++;
+            }
+            if(column<0 || i!=words.length){
+                throw new IllegalArgumentException("Cannot merge rows by " + part.trim()
+                        + "; sort by columns of the projection");
+            }
+            terms.add(new Term(column,noCase,descending));
+        }
+        return terms.toArray(new Term[0]);
+    }
+
+    private static int indexOf(String[] columnNames, String column){
+        for(int i = 0; i < columnNames.length; i++){
+            if(columnNames[i].equalsIgnoreCase(column)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the values in column of the rows a and b are on, in SQLite's order:
+     * NULLs, then numbers, then text, then blobs.
+     */
+    private static int compareValues(Cursor a, Cursor b, int column, boolean noCase){
+        int typeA = a.getType(column);
+        int typeB = b.getType(column);
+        int rankA = rank(typeA);
+        int rankB = rank(typeB);
+        if(rankA!=rankB){
+            return rankA < rankB ? -1 : 1;
+        }
+        switch (typeA){
+            case FIELD_TYPE_NULL:
+                return 0;
+            case FIELD_TYPE_INTEGER:
+                if(typeB==FIELD_TYPE_INTEGER){
+                    return Long.compare(a.getLong(column),b.getLong(column));
+                }
+                return Double.compare(a.getDouble(column),b.getDouble(column));
+            case FIELD_TYPE_FLOAT:
+                return Double.compare(a.getDouble(column),b.getDouble(column));
+            case FIELD_TYPE_STRING:
+                return compareText(a.getString(column),b.getString(column),noCase);
+            default:
+                return compareBlobs(a.getBlob(column),b.getBlob(column));
+        }
+    }
+
+    private static int rank(int type){
+        switch (type){
+            case FIELD_TYPE_NULL:
+                return 0;
+            case FIELD_TYPE_INTEGER:
+            case FIELD_TYPE_FLOAT:
+                return 1;
+            case FIELD_TYPE_STRING:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    /**
+     * Compares by code point, which is the order of SQLite's BINARY collation on UTF-8,
+     * lower casing ASCII letters first for NOCASE.
+     */
+    private static int compareText(String a, String b, boolean noCase){
+        int i = 0;
+        int j = 0;
+        while(i < a.length() && j < b.length()){
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+            if(noCase){
+                ca = foldCase(ca);
+                cb = foldCase(cb);
+            }
+            if(ca!=cb){
+                return ca < cb ? -1 : 1;
+            }
+        }
+        if(i < a.length()){
+            return 1;
+        }
+        return j < b.length() ? -1 : 0;
+    }
+
+    private static int foldCase(int c){
+        return c>='A' && c<='Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int compareBlobs(byte[] a, byte[] b){
+        for(int i = 0; i < a.length && i < b.length; i++){
+            int order = Integer.compare(a[i] & 0xff,b[i] & 0xff);
+            if(order!=0){
+                return order;
+            }
+        }
+        return Integer.compare(a.length,b.length);
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        mCurrent = mCursors[mCursorOf[newPosition]];
+        return mCurrent.moveToPosition(mPositionOf[newPosition]);
+    }
+
+    @Override
+    public int getCount() {
+        return mCursorOf.length;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public int getType(int column) {
+        return mCurrent.getType(column);
+    }
+
+    @Override
+    public String getString(int column) {
+        return mCurrent.getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return mCurrent.getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mCurrent.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mCurrent.getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return mCurrent.getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mCurrent.getDouble(column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return mCurrent.getBlob(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mCurrent.isNull(column);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for(Cursor cursor : mCursors){
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.agririze.petproject.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency and row counts of PetProvider's calls, one histogram per operation. Recording
+ * is a handful of atomic increments, so it is cheap enough to leave on in release builds.
+ */
+class PetMetrics {
+
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int BULK_INSERT = 2;
+    static final int UPDATE = 3;
+    static final int DELETE = 4;
+    static final int APPLY_BATCH = 5;
+
+    private static final String[] OPERATIONS = {
+            "query", "insert", "bulkInsert", "update", "delete", "applyBatch"
+    };
+
+    private final Histogram[] mHistograms = new Histogram[OPERATIONS.length];
+
+    PetMetrics() {
+        for(int i = 0; i < mHistograms.length; i++){
+            mHistograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records one call of operation that started at startNanos (from System.nanoTime())
+     * and returned or touched the given number of rows.
+     */
+    void record(int operation, long startNanos, long rows){
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        mHistograms[operation].record(micros,rows);
+    }
+
+    /**
+     * Snapshot of every operation as a cursor with the {@link PetContract.MetricsEntry}
+     * columns. Calls recorded while it is taken may be only partly counted.
+     */
+    Cursor toCursor(){
+        MatrixCursor cursor = new MatrixCursor(PetContract.MetricsEntry.PROJECTION,OPERATIONS.length);
+        for(int i = 0; i < OPERATIONS.length; i++){
+            Histogram histogram = mHistograms[i];
+            long[] buckets = histogram.snapshot();
+            cursor.addRow(new Object[]{
+                    OPERATIONS[i],
+                    histogram.mCount.get(),
+                    Histogram.percentile(buckets,0.50),
+                    Histogram.percentile(buckets,0.95),
+                    Histogram.percentile(buckets,0.99),
+                    histogram.mMaxMicros.get(),
+                    histogram.mRows.get()
+            });
+        }
+        return cursor;
+    }
+
+    /**
+     * Log-linear histogram of microsecond values: each power of two is split into eight
+     * buckets, so a percentile is reported within 12.5% of the recorded value.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mRows = new AtomicLong();
+        private final AtomicLong mMaxMicros = new AtomicLong();
+
+        void record(long micros, long rows){
+            if(micros<0){
+                micros = 0;
+            }
+            mBuckets.incrementAndGet(bucketOf(micros));
+            mCount.incrementAndGet();
+            mRows.addAndGet(rows);
+
+            long max = mMaxMicros.get();
+            while(micros>max && !mMaxMicros.compareAndSet(max,micros)){
+                max = mMaxMicros.get();
+            }
+        }
+
+        long[] snapshot(){
+            long[] buckets = new long[BUCKETS];
+            for(int i = 0; i < BUCKETS; i++){
+                buckets[i] = mBuckets.get(i);
+            }
+            return buckets;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given fraction of the recorded values,
+         * or 0 if nothing was recorded.
+         */
+        static long percentile(long[] buckets, double fraction){
+            long total = 0;
+            for(long count : buckets){
+                total += count;
+            }
+            if(total==0){
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for(int i = 0; i < buckets.length; i++){
+                seen += buckets[i];
+                if(seen>=rank){
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(buckets.length - 1);
+        }
+
+        static int bucketOf(long value){
+            if(value<SUB_BUCKETS){
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return ((shift + 1) << SUB_BUCKET_BITS) | (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        static long upperBoundOf(int bucket){
+            if(bucket<SUB_BUCKETS){
+                return bucket;
+            }
+            int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+            long lower = (long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+}
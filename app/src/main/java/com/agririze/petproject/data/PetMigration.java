@@ -0,0 +1,99 @@
+package com.agririze.petproject.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * One step of the schema's history, taking the database from {@link #version} - 1 to
+ * {@link #version}. Steps only ever run in order, so each one may rely on the schema
+ * left by the previous step, never on the current onCreate.
+ */
+abstract class PetMigration {
+
+    private static final String LOG_TAG = PetMigration.class.getSimpleName();
+
+    interface Listener {
+        void onMigrated(int version, long elapsedMillis);
+    }
+
+    final int version;
+
+    PetMigration(int version) {
+        this.version = version;
+    }
+
+    abstract void migrate(SQLiteDatabase db);
+
+    /**
+     * Runs the steps from fromVersion up to toVersion, each in its own nested transaction.
+     * A failing step rolls back the whole upgrade with the caller's transaction, leaving
+     * the database at fromVersion rather than part way.
+     *
+     * @param steps every step of the schema, ordered by version
+     */
+    static void migrate(SQLiteDatabase db, PetMigration[] steps, int fromVersion, int toVersion,
+                        Listener listener){
+        int version = fromVersion;
+        for(PetMigration step : steps){
+            if(step.version<=fromVersion || step.version>toVersion){
+                continue;
+            }
+            if(step.version!=version + 1){
+                throw new IllegalStateException("No migration to version " + (version + 1));
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            db.beginTransaction();
+            try{
+                step.migrate(db);
+                db.setTransactionSuccessful();
+            }finally {
+                db.endTransaction();
+            }
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            Log.i(LOG_TAG,"Migrated to version " + step.version + " in " + elapsed + " ms");
+            if(listener!=null){
+                listener.onMigrated(step.version,elapsed);
+            }
+            version = step.version;
+        }
+        if(version!=toVersion){
+            throw new IllegalStateException("No migration to version " + toVersion);
+        }
+    }
+
+    /**
+     * Copies the given columns, which must include _id, from source to target in _id
+     * order, batchSize rows per statement. Each statement only reads one _id range, so a
+     * copy of a large table never builds one huge result or sort, and the rows can be
+     * transformed by passing expressions for sourceColumns. target must start empty and
+     * keep source's _id values, since each batch starts after the largest _id copied.
+     * Returns the rows copied.
+     */
+    static long copyInBatches(SQLiteDatabase db, String source, String target, String targetColumns,
+                              String sourceColumns, int batchSize){
+        SQLiteStatement copy = db.compileStatement("INSERT INTO " + target + " (" + targetColumns + ") SELECT "
+                + sourceColumns + " FROM " + source + " WHERE " + source + "._id>? ORDER BY "
+                + source + "._id LIMIT " + batchSize);
+        SQLiteStatement lastCopied = db.compileStatement("SELECT MAX(_id) FROM " + target);
+        try{
+            long copied = 0;
+            long lastId = -1;
+            int rows;
+            do{
+                copy.bindLong(1,lastId);
+                rows = copy.executeUpdateDelete();
+                copied += rows;
+                if(rows>0){
+                    lastId = lastCopied.simpleQueryForLong();
+                }
+            }while(rows==batchSize);
+            return copied;
+        }finally {
+            copy.close();
+            lastCopied.close();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Pet photos in the app's private storage. A picked image is decoded and scaled once,
+ * when it is imported, into a photo of at most {@link #PHOTO_SIZE} pixels and a
+ * thumbnail of at most {@link #THUMBNAIL_SIZE} pixels, so showing a pet never decodes
+ * the full-size original. Both files share a name, which is what the pets table stores
+ * in {@link PetContract.PetEntry#COLUMN_PET_PHOTO}.
+ */
+public class PetPhotos {
+
+    /** Longest edge of a stored photo, in pixels */
+    public static final int PHOTO_SIZE = 1280;
+
+    /** Longest edge of a thumbnail, in pixels; enough for a catalog row at any density */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    private static final int JPEG_QUALITY = 85;
+
+    private static final String DIRECTORY = "photos";
+    private static final String PHOTO_SUFFIX = ".jpg";
+    private static final String THUMBNAIL_SUFFIX = "_thumb.jpg";
+
+    private final ContentResolver mContentResolver;
+    private final File mDirectory;
+
+    public PetPhotos(Context context) {
+        mContentResolver = context.getContentResolver();
+        mDirectory = new File(context.getFilesDir(),DIRECTORY);
+    }
+
+    /**
+     * True if name can be a photo name, so a stored value can never point outside the
+     * photos directory.
+     */
+    public static boolean isValidName(String name){
+        return name.matches("[0-9a-f-]+");
+    }
+
+    public File photoFile(String name){
+        return new File(mDirectory,name + PHOTO_SUFFIX);
+    }
+
+    public File thumbnailFile(String name){
+        return new File(mDirectory,name + THUMBNAIL_SUFFIX);
+    }
+
+    /**
+     * Stores the image at source as a new photo and thumbnail and returns the photo's
+     * name. Must not run on the main thread.
+     */
+    public String importPhoto(Uri source) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(source,options);
+        if(options.outWidth<=0 || options.outHeight<=0){
+            throw new IOException("Cannot decode " + source);
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth,options.outHeight,PHOTO_SIZE,PHOTO_SIZE);
+        Bitmap decoded = decodeStream(source,options);
+        if(decoded==null){
+            throw new IOException("Cannot decode " + source);
+        }
+        Bitmap photo = scaleToFit(decoded,PHOTO_SIZE);
+        Bitmap thumbnail = scaleToFit(photo,THUMBNAIL_SIZE);
+
+        if(!mDirectory.isDirectory() && !mDirectory.mkdirs()){
+            throw new IOException("Cannot create " + mDirectory);
+        }
+        String name = UUID.randomUUID().toString();
+        try{
+            write(photo,photoFile(name));
+            write(thumbnail,thumbnailFile(name));
+        }catch (IOException e){
+            delete(name);
+            throw e;
+        }
+        return name;
+    }
+
+    /**
+     * Deletes the photos not in referenced whose files were last modified before the
+     * given time, which spares photos imported for a pet that is still being edited.
+     * Returns the number of photos deleted.
+     */
+    public int deleteUnreferenced(Set<String> referenced, long modifiedBefore){
+        File[] files = mDirectory.listFiles();
+        if(files==null){
+            return 0;
+        }
+        int deleted = 0;
+        for(File file : files){
+            String fileName = file.getName();
+            if(!fileName.endsWith(PHOTO_SUFFIX) || fileName.endsWith(THUMBNAIL_SUFFIX)){
+                continue;
+            }
+            String name = fileName.substring(0,fileName.length() - PHOTO_SUFFIX.length());
+            if(!referenced.contains(name) && file.lastModified()<modifiedBefore){
+                delete(name);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void delete(String name){
+        photoFile(name).delete();
+        thumbnailFile(name).delete();
+    }
+
+    /**
+     * Decodes file sampled down to about the requested size, or returns null if it cannot
+     * be decoded. Photos never have transparency, so they are decoded at 16 bits a pixel.
+     */
+    public static Bitmap decode(File file, int reqWidth, int reqHeight){
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(),options);
+        if(options.outWidth<=0 || options.outHeight<=0){
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth,options.outHeight,reqWidth,reqHeight);
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeFile(file.getPath(),options);
+    }
+
+    /**
+     * Largest power of two that keeps both edges of the decoded image at or above the
+     * requested size.
+     */
+    static int sampleSize(int width, int height, int reqWidth, int reqHeight){
+        int sampleSize = 1;
+        while(width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight){
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleToFit(Bitmap bitmap, int size){
+        int longest = Math.max(bitmap.getWidth(),bitmap.getHeight());
+        if(longest<=size){
+            return bitmap;
+        }
+        float scale = (float) size / longest;
+        return Bitmap.createScaledBitmap(bitmap,Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale),true);
+    }
+
+    private Bitmap decodeStream(Uri source, BitmapFactory.Options options) throws IOException {
+        InputStream in = mContentResolver.openInputStream(source);
+        if(in==null){
+            throw new FileNotFoundException("Cannot open " + source);
+        }
+        try{
+            return BitmapFactory.decodeStream(in,null,options);
+        }finally {
+            in.close();
+        }
+    }
+
+    private static void write(Bitmap bitmap, File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try{
+            if(!bitmap.compress(Bitmap.CompressFormat.JPEG,JPEG_QUALITY,out)){
+                throw new IOException("Cannot write " + file);
+            }
+        }finally {
+            out.close();
+        }
+    }
+}
@@ -1,17 +1,45 @@
 package com.agririze.petproject.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.Configuration;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Trace;
+import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.agririze.petproject.BuildConfig;
+import com.agririze.petproject.R;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class PetProvider extends ContentProvider {
 
     /**
@@ -19,47 +47,264 @@ public class PetProvider extends ContentProvider {
      */
     private PetDbHelper mDbHelper;
 
+    /**
+     * The device's own pets as a shelter, for the write paths shared with other shelters
+     */
+    private PetShelters.Shelter mOwnShelter;
+
+    /**
+     * Other shelters' databases, opened as their uris are used
+     */
+    private PetShelters mShelters;
+
+    /**
+     * Runs the per-shelter queries of {@link PetContract.ShelterEntry#ALL_PETS_URI}. Its
+     * daemon threads exit when idle, since the provider is never shut down.
+     */
+    private final ExecutorService mFanOut = newFanOut();
+
+    private static final int FAN_OUT_THREADS = 4;
+
+    private static final long FAN_OUT_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Decoded rows for single-pet queries, evicted by this provider's own writes
+     */
+    private final PetCache mCache = new PetCache(CACHE_SIZE);
+
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * Timings of this provider's calls, served on {@link PetContract.MetricsEntry#CONTENT_URI}
+     */
+    private final PetMetrics mMetrics = new PetMetrics();
+
+    private static final List<String> PET_COLUMNS = Arrays.asList(Pet.PROJECTION);
+
+    /**
+     * Expression for {@link PetContract.PetEntry#COLUMN_PET_SUMMARY} in the current
+     * language, so the catalog binds display-ready text without a per-row fallback.
+     */
+    private volatile String mSummaryColumn;
+
+    /** {@link PetStatements#selectById} with the current summary expression */
+    private volatile String mSelectByIdSql;
+
+    /**
+     * Selection of the pets that are not deleted. Every read and write except restore
+     * and purge is limited to them.
+     */
+    private static final String LIVE_SELECTION = PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+
+    /** Deleted pets removed by one purge call, bounding how long it holds the write lock */
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    /** Free pages released by one compact call */
+    private static final int COMPACT_PAGES = 256;
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
     private static final int PETS = 100;
 
     private static final int PET_ID = 101;
 
+    private static final int PET_SEARCH = 102;
+
+    private static final int METRICS = 200;
+
+    private static final int STATS = 300;
+
+    private static final int ALL_SHELTER_PETS = 400;
+
+    private static final int SHELTER_PETS = 401;
+
+    private static final int SHELTER_PET_ID = 402;
+
     private static final String LOG_TAG = PetProvider.class.getSimpleName();
 
+    /**
+     * Set while applyBatch runs on the calling thread, so the individual operations
+     * defer their notifications to a single notifyChange once the batch commits.
+     */
+    private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<>();
+
+    private final ThreadLocal<Boolean> mBatchChanged = new ThreadLocal<>();
+
     private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
     static {
         sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,PetContract.PATH_PETS,PETS);
 
         sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,PetContract.PATH_PETS + "/#",PET_ID);
+
+        sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,
+                PetContract.PATH_PETS + "/" + PetContract.PATH_SEARCH + "/*",PET_SEARCH);
+
+        sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,PetContract.PATH_STATS + "/*",STATS);
+
+        sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,
+                PetContract.PATH_SHELTERS + "/" + PetContract.PATH_PETS,ALL_SHELTER_PETS);
+
+        sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,
+                PetContract.PATH_SHELTERS + "/#/" + PetContract.PATH_PETS,SHELTER_PETS);
+
+        sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,
+                PetContract.PATH_SHELTERS + "/#/" + PetContract.PATH_PETS + "/#",SHELTER_PET_ID);
+
+        if(BuildConfig.DEBUG){
+            sUriMatcher.addURI(PetContract.CONTENT_AUTHORITY,PetContract.PATH_METRICS,METRICS);
+        }
     }
 
 
+    /**
+     * Runs on the main thread as the process starts, so the database is opened, created
+     * or upgraded on a thread of its own. The catalog's first query then finds it ready,
+     * or waits on the helper's lock only for what is left of the open.
+     */
     @Override
     public boolean onCreate() {
         mDbHelper = new PetDbHelper(getContext());
+        mOwnShelter = new PetShelters.Shelter(0,mDbHelper,mCache);
+        mShelters = new PetShelters(getContext());
+        loadSummaryColumn();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmUp();
+            }
+        },LOG_TAG + "-warmup").start();
         return true;
     }
 
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        loadSummaryColumn();
+        // Cached pets carry summaries in the previous language
+        mCache.clear();
+        mShelters.clearCaches();
+    }
+
+    private void loadSummaryColumn(){
+        String unknownBreed = getContext().getString(R.string.unknown_breed);
+        String column = "COALESCE(NULLIF(" + PetContract.PetEntry.COLUMN_PET_BREED + ",''), "
+                + DatabaseUtils.sqlEscapeString(unknownBreed) + ") AS " + PetContract.PetEntry.COLUMN_PET_SUMMARY;
+        mSelectByIdSql = PetStatements.selectById(column);
+        mSummaryColumn = column;
+    }
+
+    /**
+     * Replaces the summary column of projection with the expression that computes it.
+     */
+    private String[] resolveProjection(String[] projection){
+        if(projection==null){
+            return null;
+        }
+        String[] resolved = projection;
+        for(int i = 0; i < projection.length; i++){
+            if(PetContract.PetEntry.COLUMN_PET_SUMMARY.equals(projection[i])){
+                if(resolved==projection){
+                    resolved = projection.clone();
+                }
+                resolved[i] = mSummaryColumn;
+            }
+        }
+        return resolved;
+    }
+
+    private void warmUp(){
+        Trace.beginSection("PetProvider.warmUp");
+        try{
+            statements();
+            PetPurgeJobService.schedule(getContext());
+            PetSyncJobService.schedule(getContext());
+        }catch (RuntimeException e){
+            // The first real call opens the database again and reports the failure
+            Log.e(LOG_TAG,"Failed to open the database in the background",e);
+        }finally {
+            Trace.endSection();
+        }
+    }
+
     @Nullable
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        int match = sUriMatcher.match(uri);
+        if(match==METRICS){
+            return mMetrics.toCursor();
+        }
+
+        long start = beginCall("PetProvider.query");
+        int rows = 0;
+        try{
+            Cursor cursor = queryUri(match,uri,projection,selection,selectionArgs,sortOrder);
+            if(isBounded(match,uri)){
+                try{
+                    // Counting runs the query now, so its cost is timed with the call
+                    rows = cursor.getCount();
+                }catch (RuntimeException e){
+                    cursor.close();
+                    throw e;
+                }
+            }
+            return cursor;
+        }finally {
+            endCall(PetMetrics.QUERY,start,rows);
+        }
+    }
+
+    /**
+     * Whether a query of uri returns few enough rows to count them for the metrics.
+     * Counting reads the whole result, so unbounded queries are timed up to their cursor
+     * and leave their rows uncounted, to be read as the caller moves through them.
+     */
+    private static boolean isBounded(int match, Uri uri){
+        // Shelter fan-out queries have already been read, to merge them
+        return match==PET_ID || match==SHELTER_PET_ID || match==ALL_SHELTER_PETS
+                || uri.getQueryParameter(PetContract.QUERY_PARAMETER_LIMIT)!=null;
+    }
+
+    private Cursor queryUri(int match, Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        if(match==ALL_SHELTER_PETS){
+            return queryAllShelters(uri,projection,selection,selectionArgs,sortOrder);
+        }
+        if(match==SHELTER_PETS || match==SHELTER_PET_ID){
+            Cursor cursor = queryShelter(parseShelterId(uri),match==SHELTER_PET_ID ? PET_ID : PETS,
+                    uri,projection,selection,selectionArgs,sortOrder);
+            cursor.setNotificationUri(getContext().getContentResolver(),uri);
+            return cursor;
+        }
 
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
         Cursor cursor;
 
-        int match = sUriMatcher.match(uri);
         switch (match){
             case PETS:
-                cursor = database.query(PetContract.PetEntry.TABLE_NAME,projection,selection,selectionArgs,null,null,sortOrder);
+                cursor = queryPets(database,uri,projection,selection,selectionArgs,sortOrder);
+                break;
+            case PET_SEARCH:
+                String matchQuery = toMatchQuery(uri.getLastPathSegment());
+                if(matchQuery==null){
+                    selection = DatabaseUtils.concatenateWhere(selection,"0");
+                }else{
+                    // The rowid lookups from the FTS match replace a scan of the pets table
+                    selection = DatabaseUtils.concatenateWhere(selection,PetContract.PetEntry._ID
+                            + " IN (SELECT docid FROM " + PetContract.PetEntry.SEARCH_TABLE_NAME
+                            + " WHERE " + PetContract.PetEntry.SEARCH_TABLE_NAME + " MATCH ?)");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,new String[]{ matchQuery });
+                }
+                cursor = queryPets(database,uri,projection,selection,selectionArgs,sortOrder);
                 break;
             case PET_ID:
-
-                selection = PetContract.PetEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri))};
-
-                cursor = database.query(PetContract.PetEntry.TABLE_NAME,projection,selection,selectionArgs,null,null,sortOrder);
+                cursor = queryPet(mOwnShelter,ContentUris.parseId(uri),projection,selection,sortOrder);
                 break;
+            case STATS:
+                cursor = queryStats(database,uri,sortOrder);
+                // Every pet change is notified on a descendant of the pets uri
+                cursor.setNotificationUri(getContext().getContentResolver(),PetContract.PetEntry.CONTENT_URI);
+                return cursor;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
@@ -67,6 +312,513 @@ public class PetProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Queries one pet of shelter. A selection only decides whether the pet is served
+     * from the cache.
+     */
+    private Cursor queryPet(PetShelters.Shelter shelter, long id, String[] projection, String selection, String sortOrder){
+        if(selection==null && isPetProjection(projection)){
+            return queryCachedPet(shelter,id,projection);
+        }
+
+        selection = PetContract.PetEntry._ID + "=? AND " + LIVE_SELECTION;
+        String[] selectionArgs = new String[] { String.valueOf(id)};
+
+        return shelter.helper.getReadableDatabase().query(PetDbHelper.PETS_WITH_BREEDS,resolveProjection(projection),
+                selection,selectionArgs,null,null,sortOrder);
+    }
+
+    /**
+     * Serves a single pet from the shelter's cache, reading and caching the full row on a miss.
+     */
+    private Cursor queryCachedPet(PetShelters.Shelter shelter, long id, String[] projection){
+        Pet pet = shelter.cache.get(id);
+        if(pet==null){
+            long version = shelter.cache.version();
+            Cursor cursor = shelter.helper.getReadableDatabase().rawQuery(mSelectByIdSql,new String[]{ String.valueOf(id) });
+            try{
+                if(cursor.moveToFirst()){
+                    pet = Pet.fromCursor(cursor);
+                    shelter.cache.putIfUnchanged(pet,version);
+                }
+            }finally {
+                cursor.close();
+            }
+        }
+
+        if(projection==null){
+            projection = Pet.PROJECTION;
+        }
+        MatrixCursor result = new MatrixCursor(projection,1);
+        if(pet!=null){
+            result.addRow(pet.toRow(projection));
+        }
+        return result;
+    }
+
+    private static boolean isPetProjection(String[] projection){
+        return projection==null || PET_COLUMNS.containsAll(Arrays.asList(projection));
+    }
+
+    /**
+     * Queries the pets, or the pet, of another shelter. The returned cursor keeps the
+     * shelter's database open until it is closed.
+     */
+    private Cursor queryShelter(long shelterId, int match, Uri uri, String[] projection,
+                                String selection, String[] selectionArgs, String sortOrder){
+        PetShelters.Shelter shelter = mShelters.acquire(shelterId);
+        try{
+            projection = resolveShelterId(projection,shelterId);
+            Cursor cursor = match==PET_ID
+                    ? queryPet(shelter,ContentUris.parseId(uri),projection,selection,sortOrder)
+                    : queryPets(shelter.helper.getReadableDatabase(),uri,projection,selection,selectionArgs,sortOrder);
+            return mShelters.releaseOnClose(shelter,cursor);
+        }catch (RuntimeException e){
+            mShelters.release(shelter);
+            throw e;
+        }
+    }
+
+    private static ExecutorService newFanOut(){
+        ThreadPoolExecutor fanOut = new ThreadPoolExecutor(FAN_OUT_THREADS,FAN_OUT_THREADS,
+                FAN_OUT_KEEP_ALIVE_SECONDS,TimeUnit.SECONDS,new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final ThreadFactory mDefault = Executors.defaultThreadFactory();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = mDefault.newThread(runnable);
+                        thread.setName("PetProvider-fan-out-" + thread.getName());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        fanOut.allowCoreThreadTimeOut(true);
+        return fanOut;
+    }
+
+    /**
+     * Queries the pets of every requested shelter, each on a thread of the fan-out pool,
+     * and merges their rows in sortOrder, applying the limit and offset to the merged
+     * rows. Each shelter is asked for no more than the first offset + limit rows.
+     */
+    private Cursor queryAllShelters(Uri uri, final String[] projection, final String selection,
+                                    final String[] selectionArgs, final String sortOrder){
+        if(uri.getQueryParameter(PetContract.QUERY_PARAMETER_AFTER_ID)!=null){
+            throw new IllegalArgumentException("Shelters share _ids, so they cannot be paged by _id " + uri);
+        }
+        long[] shelterIds = parseShelterIds(uri);
+        long offset = 0;
+        long limit = -1;
+        Uri.Builder shelterUri = uri.buildUpon().clearQuery();
+        // Checks the paging parameters as for a single shelter
+        if(buildLimit(uri)!=null){
+            limit = parseNonNegative(uri,PetContract.QUERY_PARAMETER_LIMIT);
+            if(uri.getQueryParameter(PetContract.QUERY_PARAMETER_OFFSET)!=null){
+                offset = parseNonNegative(uri,PetContract.QUERY_PARAMETER_OFFSET);
+            }
+            shelterUri.appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(offset + limit));
+        }
+        final Uri pageUri = shelterUri.build();
+        List<Future<Cursor>> queries = new ArrayList<>(shelterIds.length);
+        for(final long shelterId : shelterIds){
+            queries.add(mFanOut.submit(new Callable<Cursor>() {
+                @Override
+                public Cursor call() {
+                    Cursor cursor = queryShelter(shelterId,PETS,pageUri,projection,selection,selectionArgs,sortOrder);
+                    // Runs the query here, in parallel with the other shelters
+                    cursor.getCount();
+                    return cursor;
+                }
+            }));
+        }
+
+        Cursor[] cursors = new Cursor[queries.size()];
+        try{
+            for(int i = 0; i < cursors.length; i++){
+                cursors[i] = await(queries.get(i));
+            }
+        }catch (RuntimeException e){
+            for(Future<Cursor> query : queries){
+                try{
+                    query.get().close();
+                }catch (InterruptedException | ExecutionException | RuntimeException ignored){
+                    // The query failed or was never going to return a cursor to close
+                }
+            }
+            throw e;
+        }
+        Cursor merged;
+        try{
+            merged = new PetMergeCursor(cursors,sortOrder,offset,limit);
+        }catch (RuntimeException e){
+            for(Cursor cursor : cursors){
+                cursor.close();
+            }
+            throw e;
+        }
+        merged.setNotificationUri(getContext().getContentResolver(),PetContract.ShelterEntry.CONTENT_URI);
+        return merged;
+    }
+
+    private static Cursor await(Future<Cursor> query){
+        try{
+            return query.get();
+        }catch (ExecutionException e){
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Shelter query failed",e.getCause());
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shelters",e);
+        }
+    }
+
+    /**
+     * Replaces the shelter id column of projection with the id itself.
+     */
+    private static String[] resolveShelterId(String[] projection, long shelterId){
+        if(projection==null){
+            return null;
+        }
+        String[] resolved = projection;
+        for(int i = 0; i < projection.length; i++){
+            if(PetContract.ShelterEntry.COLUMN_SHELTER_ID.equals(projection[i])){
+                if(resolved==projection){
+                    resolved = projection.clone();
+                }
+                resolved[i] = shelterId + " AS " + PetContract.ShelterEntry.COLUMN_SHELTER_ID;
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * The shelter of a shelters/&lt;id&gt;/pets uri. Shelter 0 is the device's own, which
+     * is only reached through the pets uris.
+     */
+    private static long parseShelterId(Uri uri){
+        long shelterId = Long.parseLong(uri.getPathSegments().get(1));
+        if(shelterId<1){
+            throw new IllegalArgumentException("Invalid shelter for " + uri);
+        }
+        return shelterId;
+    }
+
+    private long[] parseShelterIds(Uri uri){
+        String list = uri.getQueryParameter(PetContract.ShelterEntry.QUERY_PARAMETER_SHELTERS);
+        if(list==null){
+            return mShelters.ids();
+        }
+        String[] parts = list.split(",");
+        long[] shelterIds = new long[parts.length];
+        for(int i = 0; i < parts.length; i++){
+            try{
+                shelterIds[i] = Long.parseLong(parts[i].trim());
+            }catch (NumberFormatException e){
+                shelterIds[i] = 0;
+            }
+            if(shelterIds[i]<1){
+                throw new IllegalArgumentException("Invalid " + PetContract.ShelterEntry.QUERY_PARAMETER_SHELTERS
+                        + " for " + uri);
+            }
+        }
+        return shelterIds;
+    }
+
+    /**
+     * The shelter a pets uri writes to, acquired for the call; see {@link #releaseShelter}.
+     */
+    private PetShelters.Shelter acquireShelter(int match, Uri uri){
+        if(match==SHELTER_PETS || match==SHELTER_PET_ID){
+            return mShelters.acquire(parseShelterId(uri));
+        }
+        return mOwnShelter;
+    }
+
+    private void releaseShelter(PetShelters.Shelter shelter){
+        if(shelter!=mOwnShelter){
+            mShelters.release(shelter);
+        }
+    }
+
+    /**
+     * Uri notified when a single pet of shelter changes; see
+     * {@link PetContract#QUERY_PARAMETER_CHANGE}.
+     */
+    private Uri changeUri(PetShelters.Shelter shelter, long id, String change){
+        if(shelter==mOwnShelter){
+            return PetContract.PetEntry.buildChangeUri(id,change);
+        }
+        return ContentUris.withAppendedId(PetContract.ShelterEntry.buildPetsUri(shelter.id),id).buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_CHANGE,change)
+                .build();
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if(PetContract.METHOD_GET_CACHE_STATS.equals(method)){
+            Bundle stats = new Bundle();
+            stats.putInt(PetContract.EXTRA_CACHE_HITS,mCache.hitCount());
+            stats.putInt(PetContract.EXTRA_CACHE_MISSES,mCache.missCount());
+            stats.putInt(PetContract.EXTRA_CACHE_SIZE,mCache.size());
+            return stats;
+        }
+
+        Bundle result = new Bundle();
+        switch (method){
+            case PetContract.METHOD_RESTORE:
+                result.putInt(PetContract.EXTRA_ROWS,restore(parseArgument(method,arg)));
+                return result;
+            case PetContract.METHOD_PURGE:
+                result.putInt(PetContract.EXTRA_ROWS,purge(parseArgument(method,arg)));
+                return result;
+            case PetContract.METHOD_COMPACT:
+                result.putLong(PetContract.EXTRA_PAGES,compact());
+                return result;
+            case PetContract.METHOD_SWEEP_PHOTOS:
+                result.putInt(PetContract.EXTRA_ROWS,sweepPhotos(parseArgument(method,arg)));
+                return result;
+            case PetContract.METHOD_GET_IMPORT_POSITION:
+                result.putLong(PetContract.EXTRA_POSITION,importPosition(requireArgument(method,arg)));
+                return result;
+            case PetContract.METHOD_CLEAR_IMPORT_POSITION:
+                result.putInt(PetContract.EXTRA_ROWS,mDbHelper.getWritableDatabase().delete(PetDbHelper.IMPORT_STATE_TABLE,
+                        PetDbHelper.COLUMN_SOURCE + "=?",new String[]{ requireArgument(method,arg) }));
+                return result;
+            default:
+                return super.call(method,arg,extras);
+        }
+    }
+
+    private static long parseArgument(String method, String arg){
+        try{
+            return Long.parseLong(arg);
+        }catch (NumberFormatException e){
+            throw new IllegalArgumentException("Invalid argument for " + method + ": " + arg);
+        }
+    }
+
+    private static String requireArgument(String method, String arg){
+        if(TextUtils.isEmpty(arg)){
+            throw new IllegalArgumentException("Missing argument for " + method);
+        }
+        return arg;
+    }
+
+    private long importPosition(String source){
+        return DatabaseUtils.longForQuery(mDbHelper.getReadableDatabase(),"SELECT IFNULL(MAX("
+                + PetDbHelper.COLUMN_POSITION + "), 0) FROM " + PetDbHelper.IMPORT_STATE_TABLE + " WHERE "
+                + PetDbHelper.COLUMN_SOURCE + "=?",new String[]{ source });
+    }
+
+    /**
+     * Brings back the pets deleted with tombstone.
+     */
+    private int restore(long tombstone){
+        ContentValues values = new ContentValues();
+        values.putNull(PetContract.PetEntry.COLUMN_PET_DELETED_AT);
+        int rowsRestored;
+        try{
+            rowsRestored = mDbHelper.getWritableDatabase().update(PetContract.PetEntry.TABLE_NAME,values,
+                    PetContract.PetEntry.COLUMN_PET_DELETED_AT + "=?",new String[]{ String.valueOf(tombstone) });
+        }finally {
+            mCache.clear();
+        }
+        if(rowsRestored!=0){
+            notifyChange(PetContract.PetEntry.CONTENT_URI);
+        }
+        return rowsRestored;
+    }
+
+    /**
+     * Removes up to {@link #PURGE_BATCH_SIZE} pets deleted before the given time, and
+     * the breeds no pet names any more. Each call is made of short transactions so
+     * writes from the app can run in between.
+     */
+    private int purge(long deletedBefore){
+        SQLiteStatement statement = mDbHelper.getWritableDatabase().compileStatement(
+                "DELETE FROM " + PetContract.PetEntry.TABLE_NAME + " WHERE " + PetContract.PetEntry._ID
+                        + " IN (SELECT " + PetContract.PetEntry._ID + " FROM " + PetContract.PetEntry.TABLE_NAME
+                        + " WHERE " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + "<? LIMIT " + PURGE_BATCH_SIZE + ")");
+        int rowsPurged;
+        try{
+            statement.bindLong(1,deletedBefore);
+            rowsPurged = statement.executeUpdateDelete();
+        }finally {
+            statement.close();
+        }
+        if(rowsPurged!=0 && TextUtils.isEmpty(BuildConfig.SYNC_BASE_URL)){
+            // With no server to push them to, the log rows of purged pets would only pile up
+            mDbHelper.getWritableDatabase().delete(PetSyncStore.CHANGE_LOG_TABLE,PetSyncStore.COLUMN_PET_ID
+                    + " NOT IN (SELECT " + PetContract.PetEntry._ID + " FROM " + PetContract.PetEntry.TABLE_NAME + ")",null);
+        }
+        // Pets name their breed in the same transaction that adds it, so none is dropped in between
+        mDbHelper.getWritableDatabase().delete(PetContract.PetEntry.BREEDS_TABLE_NAME,
+                "NOT EXISTS (SELECT 1 FROM " + PetContract.PetEntry.TABLE_NAME + " WHERE "
+                        + PetContract.PetEntry.TABLE_NAME + "." + PetContract.PetEntry.COLUMN_PET_BREED_ID + "="
+                        + PetContract.PetEntry.BREEDS_TABLE_NAME + "." + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")",null);
+        return rowsPurged;
+    }
+
+    /**
+     * Releases up to {@link #COMPACT_PAGES} free pages and returns how many are left. A
+     * database created before incremental auto-vacuum was enabled is converted by one
+     * full VACUUM instead.
+     */
+    private long compact(){
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        if(DatabaseUtils.longForQuery(database,"PRAGMA auto_vacuum",null)!=AUTO_VACUUM_INCREMENTAL){
+            database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            database.execSQL("VACUUM");
+        }else{
+            // The pragma frees one page per step, so read its result to the end
+            Cursor cursor = database.rawQuery("PRAGMA incremental_vacuum(" + COMPACT_PAGES + ")",null);
+            try{
+                cursor.getCount();
+            }finally {
+                cursor.close();
+            }
+        }
+        return DatabaseUtils.longForQuery(database,"PRAGMA freelist_count",null);
+    }
+
+    /**
+     * Deletes the photo files of purged pets and of replaced or abandoned photos. Deleted
+     * pets keep their photos, since they can still be restored.
+     */
+    private int sweepPhotos(long modifiedBefore){
+        Set<String> referenced = new HashSet<>();
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery("SELECT DISTINCT "
+                + PetContract.PetEntry.COLUMN_PET_PHOTO + " FROM " + PetContract.PetEntry.TABLE_NAME
+                + " WHERE " + PetContract.PetEntry.COLUMN_PET_PHOTO + " IS NOT NULL",null);
+        try{
+            while(cursor.moveToNext()){
+                referenced.add(cursor.getString(0));
+            }
+        }finally {
+            cursor.close();
+        }
+        return new PetPhotos(getContext()).deleteUnreferenced(referenced,modifiedBefore);
+    }
+
+    /**
+     * Queries the pets table, applying the paging query parameters of the uri.
+     */
+    private Cursor queryPets(SQLiteDatabase database, Uri uri, String[] projection,
+                             String selection, String[] selectionArgs, String sortOrder){
+        selection = DatabaseUtils.concatenateWhere(selection,LIVE_SELECTION);
+        String afterId = uri.getQueryParameter(PetContract.QUERY_PARAMETER_AFTER_ID);
+        if(afterId!=null){
+            selection = DatabaseUtils.concatenateWhere(selection,PetContract.PetEntry._ID + ">?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[]{ String.valueOf(parseNonNegative(uri,PetContract.QUERY_PARAMETER_AFTER_ID)) });
+            if(sortOrder==null){
+                sortOrder = PetContract.PetEntry._ID + " ASC";
+            }
+        }
+        return database.query(PetDbHelper.PETS_WITH_BREEDS,resolveProjection(projection),selection,selectionArgs,
+                null,null,sortOrder,buildLimit(uri));
+    }
+
+    /**
+     * Reads the counts of one stats kind from the trigger-maintained summary table, or
+     * computes them from the pets table when the uri asks for live counts.
+     */
+    private static Cursor queryStats(SQLiteDatabase database, Uri uri, String sortOrder){
+        String kind = uri.getLastPathSegment();
+        if(!PetContract.StatsEntry.isValidKind(kind)){
+            throw new IllegalArgumentException("Unknown stats kind for " + uri);
+        }
+        if(sortOrder==null){
+            sortOrder = PetContract.StatsEntry.COLUMN_BUCKET;
+        }
+
+        String sql;
+        String[] selectionArgs = null;
+        boolean live = uri.getBooleanQueryParameter(PetContract.QUERY_PARAMETER_LIVE,false);
+        if(live && PetContract.StatsEntry.KIND_BREED.equals(kind)){
+            // Grouped by the integer id along the breed index, then one name lookup per breed
+            sql = "SELECT " + PetDbHelper.statsBucket(kind) + " AS " + PetContract.StatsEntry.COLUMN_BUCKET
+                    + ", " + PetContract.StatsEntry.COLUMN_TOTAL
+                    + " FROM (SELECT " + PetContract.PetEntry.COLUMN_PET_BREED_ID + ", COUNT(*) AS "
+                    + PetContract.StatsEntry.COLUMN_TOTAL + " FROM " + PetContract.PetEntry.TABLE_NAME
+                    + " WHERE " + LIVE_SELECTION + " GROUP BY " + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")"
+                    + " LEFT JOIN " + PetContract.PetEntry.BREEDS_TABLE_NAME
+                    + " USING (" + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")";
+        }else if(live){
+            sql = "SELECT " + PetDbHelper.statsBucket(kind) + " AS " + PetContract.StatsEntry.COLUMN_BUCKET
+                    + ", COUNT(*) AS " + PetContract.StatsEntry.COLUMN_TOTAL
+                    + " FROM " + PetContract.PetEntry.TABLE_NAME
+                    + " WHERE " + LIVE_SELECTION
+                    + " GROUP BY " + PetContract.StatsEntry.COLUMN_BUCKET;
+        }else{
+            sql = "SELECT " + PetContract.StatsEntry.COLUMN_BUCKET + ", " + PetContract.StatsEntry.COLUMN_TOTAL
+                    + " FROM " + PetContract.StatsEntry.TABLE_NAME
+                    + " WHERE " + PetContract.StatsEntry.COLUMN_KIND + "=?";
+            selectionArgs = new String[]{ kind };
+        }
+        sql += " ORDER BY " + sortOrder;
+
+        String limit = buildLimit(uri);
+        if(limit!=null){
+            sql += " LIMIT " + limit;
+        }
+        return database.rawQuery(sql,selectionArgs);
+    }
+
+    /**
+     * Turns free text into an FTS query that prefix-matches every word, e.g. "lab ret"
+     * becomes "lab* ret*". Returns null if the text has no searchable words.
+     */
+    private static String toMatchQuery(String text){
+        if(text==null){
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for(String token : text.split("[^\\p{L}\\p{Nd}]+")){
+            if(token.isEmpty()){
+                continue;
+            }
+            if(builder.length()>0){
+                builder.append(' ');
+            }
+            builder.append(token).append('*');
+        }
+        return builder.length()==0 ? null : builder.toString();
+    }
+
+    /**
+     * Builds the LIMIT clause from the paging query parameters, or null when the uri has none.
+     */
+    private static String buildLimit(Uri uri){
+        if(uri.getQueryParameter(PetContract.QUERY_PARAMETER_LIMIT)==null){
+            if(uri.getQueryParameter(PetContract.QUERY_PARAMETER_OFFSET)!=null){
+                throw new IllegalArgumentException("Offset requires a limit " + uri);
+            }
+            return null;
+        }
+        long limit = parseNonNegative(uri,PetContract.QUERY_PARAMETER_LIMIT);
+        if(uri.getQueryParameter(PetContract.QUERY_PARAMETER_OFFSET)==null){
+            return String.valueOf(limit);
+        }
+        return parseNonNegative(uri,PetContract.QUERY_PARAMETER_OFFSET) + "," + limit;
+    }
+
+    private static long parseNonNegative(Uri uri, String parameter){
+        try{
+            long value = Long.parseLong(uri.getQueryParameter(parameter));
+            if(value>=0){
+                return value;
+            }
+        }catch (NumberFormatException e){
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid " + parameter + " for " + uri);
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
@@ -76,6 +828,16 @@ public class PetProvider extends ContentProvider {
                 return PetContract.PetEntry.CONTENT_LIST_TYPE;
             case PET_ID:
                 return PetContract.PetEntry.CONTENT_ITEM_TYPE;
+            case PET_SEARCH:
+            case ALL_SHELTER_PETS:
+            case SHELTER_PETS:
+                return PetContract.PetEntry.CONTENT_LIST_TYPE;
+            case SHELTER_PET_ID:
+                return PetContract.PetEntry.CONTENT_ITEM_TYPE;
+            case METRICS:
+                return PetContract.MetricsEntry.CONTENT_TYPE;
+            case STATS:
+                return PetContract.StatsEntry.CONTENT_TYPE;
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri + " with match " + match);
         }
@@ -85,77 +847,451 @@ public class PetProvider extends ContentProvider {
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
         final int match = sUriMatcher.match(uri);
-        switch (match){
-            case PETS:
-                return insertPet(uri,values);
-            default:
-                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        if(match!=PETS && match!=SHELTER_PETS){
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        long start = beginCall("PetProvider.insert");
+        Uri petUri = null;
+        PetShelters.Shelter shelter = acquireShelter(match,uri);
+        try{
+            petUri = insertPet(shelter,uri,values);
+            return petUri;
+        }finally {
+            releaseShelter(shelter);
+            endCall(PetMetrics.INSERT,start,petUri==null ? 0 : 1);
         }
     }
 
-    private Uri insertPet(Uri uri, ContentValues values){
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+    private Uri insertPet(PetShelters.Shelter shelter, Uri uri, ContentValues values){
+        validatePet(values,true);
+        String policy = parseDuplicatesPolicy(uri);
+        PetStatements statements = shelter.statements();
+        SQLiteDatabase database = statements.getDatabase();
 
-        long id = database.insert(PetContract.PetEntry.TABLE_NAME,null,values);
+        long id;
+        String change = PetContract.CHANGE_INSERT;
+        boolean rejected = false;
+        long mergedId = -1;
+        database.beginTransaction();
+        try{
+            id = findDuplicate(shelter,statements,values,policy);
+            if(id==-1){
+                id = insertNewPet(shelter,statements,values);
+            }else if(PetContract.DUPLICATES_MERGE.equals(policy)){
+                mergePet(statements,id,values);
+                mergedId = id;
+                change = PetContract.CHANGE_UPDATE;
+            }else{
+                Log.i(LOG_TAG,"Rejected a duplicate of pet " + id + " for " + uri);
+                rejected = true;
+            }
+            database.setTransactionSuccessful();
+        }finally {
+            database.endTransaction();
+            if(mergedId!=-1){
+                // After the commit, or a reader could cache the row from before the merge
+                shelter.cache.remove(mergedId);
+            }
+        }
 
+        if(rejected){
+            return null;
+        }
         if(id==-1){
             Log.e(LOG_TAG,"Fauled to insert row for " + uri);
             return null;
         }
-        getContext().getContentResolver().notifyChange(uri,null);
+        notifyChange(changeUri(shelter,id,change));
         return ContentUris.withAppendedId(uri,id);
     }
 
+    private static String parseDuplicatesPolicy(Uri uri){
+        String policy = uri.getQueryParameter(PetContract.QUERY_PARAMETER_DUPLICATES);
+        if(policy==null){
+            return PetContract.DUPLICATES_ALLOW;
+        }
+        if(!PetContract.DUPLICATES_ALLOW.equals(policy) && !PetContract.DUPLICATES_REJECT.equals(policy)
+                && !PetContract.DUPLICATES_MERGE.equals(policy)){
+            throw new IllegalArgumentException("Invalid " + PetContract.QUERY_PARAMETER_DUPLICATES + " for " + uri);
+        }
+        return policy;
+    }
+
+    /**
+     * Returns the _id of the live pet that values duplicates, or -1 if there is none or
+     * policy allows duplicates anyway. Runs in the transaction of the insert.
+     */
+    private static long findDuplicate(PetShelters.Shelter shelter, PetStatements statements,
+                                      ContentValues values, String policy){
+        if(PetContract.DUPLICATES_ALLOW.equals(policy)){
+            return -1;
+        }
+        return shelter.duplicates.find(statements,values);
+    }
+
+    /**
+     * Inserts values and adds the new pet's key to the duplicates filter. Returns the
+     * new _id, or -1 if the insert failed.
+     */
+    private static long insertNewPet(PetShelters.Shelter shelter, PetStatements statements, ContentValues values){
+        long id;
+        if(PetStatements.isInsertable(values)){
+            id = statements.insert(values);
+        }else{
+            id = statements.insertValues(values);
+        }
+        if(id!=-1){
+            shelter.duplicates.add(values);
+        }
+        return id;
+    }
+
+    /**
+     * Updates the pet with _id id, which values duplicates, with values. A pet without a
+     * photo keeps the existing one. The key is unchanged, so the filter is too. The
+     * caller evicts the pet from the cache once the transaction has committed.
+     */
+    private static void mergePet(PetStatements statements, long id, ContentValues values){
+        ContentValues merged = values;
+        if(values.getAsString(PetContract.PetEntry.COLUMN_PET_PHOTO)==null){
+            merged = new ContentValues(values);
+            merged.remove(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        }
+        if(PetStatements.isFullRow(merged)){
+            statements.updateById(id,merged);
+        }else{
+            statements.update(merged,PetContract.PetEntry._ID + "=?",new String[]{ String.valueOf(id) });
+        }
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
-
-        int rowsDeleted;
+        long start = beginCall("PetProvider.delete");
+        int rowsDeleted = 0;
+        try{
+            rowsDeleted = deleteUri(uri,selection,selectionArgs);
+            return rowsDeleted;
+        }finally {
+            endCall(PetMetrics.DELETE,start,rowsDeleted);
+        }
+    }
 
+    /**
+     * Marks the matching pets deleted; see {@link PetContract#QUERY_PARAMETER_TOMBSTONE}.
+     * Observers are told they were deleted.
+     */
+    private int deleteUri(Uri uri, String selection, String[] selectionArgs) {
         final int match = sUriMatcher.match(uri);
-        switch (match){
-            case PETS:
-                rowsDeleted =  database.delete(PetContract.PetEntry.TABLE_NAME,selection,selectionArgs);
-                break;
-            case PET_ID:
+        if(match!=PETS && match!=PET_ID && match!=SHELTER_PETS && match!=SHELTER_PET_ID){
+            throw new IllegalArgumentException("Deletion is not supported for " + uri);
+        }
+        PetShelters.Shelter shelter = acquireShelter(match,uri);
+        try{
+            return deletePets(shelter,match==PETS || match==SHELTER_PETS ? PETS : PET_ID,uri,selection,selectionArgs);
+        }finally {
+            releaseShelter(shelter);
+        }
+    }
 
-                selection = PetContract.PetEntry._ID + "=?";
-                selectionArgs = new String[]{ String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted =  database.delete(PetContract.PetEntry.TABLE_NAME,selection,selectionArgs);
-                break;
-            default:
-                throw new IllegalArgumentException("Deletion is not supported for " + uri);
+    private int deletePets(PetShelters.Shelter shelter, int match, Uri uri, String selection, String[] selectionArgs) {
+        long tombstone = System.currentTimeMillis();
+        if(uri.getQueryParameter(PetContract.QUERY_PARAMETER_TOMBSTONE)!=null){
+            tombstone = parseNonNegative(uri,PetContract.QUERY_PARAMETER_TOMBSTONE);
+        }
+
+        int rowsDeleted;
+        Uri notifyUri = uri;
+
+        if(match==PETS){
+            ContentValues values = new ContentValues();
+            values.put(PetContract.PetEntry.COLUMN_PET_DELETED_AT,tombstone);
+            try{
+                rowsDeleted = shelter.helper.getWritableDatabase().update(PetContract.PetEntry.TABLE_NAME,values,
+                        DatabaseUtils.concatenateWhere(PetDbHelper.petsMatching(selection),LIVE_SELECTION),selectionArgs);
+            }finally {
+                shelter.cache.clear();
+            }
+        }else{
+            long id = ContentUris.parseId(uri);
+            rowsDeleted = shelter.statements().deleteById(id,tombstone);
+            shelter.cache.remove(id);
+            notifyUri = changeUri(shelter,id,PetContract.CHANGE_DELETE);
         }
         if(rowsDeleted!=0){
-            getContext().getContentResolver().notifyChange(uri,null);
+            notifyChange(notifyUri);
         }
         return rowsDeleted;
     }
 
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection, @Nullable String[] selectionArgs) {
+        long start = beginCall("PetProvider.update");
+        int rowsUpdated = 0;
+        try{
+            rowsUpdated = updateUri(uri,values,selection,selectionArgs);
+            return rowsUpdated;
+        }finally {
+            endCall(PetMetrics.UPDATE,start,rowsUpdated);
+        }
+    }
+
+    private int updateUri(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
         final int match = sUriMatcher.match(uri);
-        switch (match){
-            case PETS:
-                return updatePet(uri,values,selection,selectionArgs);
-            case PET_ID:
-                selection = PetContract.PetEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updatePet(uri,values,selection,selectionArgs);
-            default:
-                throw new IllegalArgumentException("Update is not supported for " + uri);
+        if(match!=PETS && match!=PET_ID && match!=SHELTER_PETS && match!=SHELTER_PET_ID){
+            throw new IllegalArgumentException("Update is not supported for " + uri);
+        }
+        PetShelters.Shelter shelter = acquireShelter(match,uri);
+        try{
+            if(match==PETS || match==SHELTER_PETS){
+                try{
+                    return updatePet(shelter,uri,-1,values,DatabaseUtils.concatenateWhere(selection,LIVE_SELECTION),selectionArgs);
+                }finally {
+                    shelter.cache.clear();
+                }
+            }
+            long id = ContentUris.parseId(uri);
+            selection = PetContract.PetEntry._ID + "=? AND " + LIVE_SELECTION;
+            selectionArgs = new String[]{String.valueOf(id)};
+            try{
+                return updatePet(shelter,changeUri(shelter,id,PetContract.CHANGE_UPDATE),
+                        id,values,selection,selectionArgs);
+            }finally {
+                shelter.cache.remove(id);
+            }
+        }finally {
+            releaseShelter(shelter);
         }
     }
 
-    private int updatePet(Uri uri, ContentValues values,String selection,String[] selectionArgs){
-        if(values.containsKey(PetContract.PetEntry.COLUMN_PET_NAME)){
+    /**
+     * Updates the matching rows and notifies notifyUri, which is the pet's change uri
+     * when a single pet is updated so observers can refresh just that row. id is that
+     * pet's _id, or -1 when the selection may match several rows.
+     */
+    private int updatePet(PetShelters.Shelter shelter, Uri notifyUri, long id, ContentValues values,String selection,String[] selectionArgs){
+        validatePet(values,false);
+
+        if(values.size()==0){
+            return 0;
+        }
+
+        int rowsUpdated;
+        if(id!=-1 && PetStatements.isFullRow(values)){
+            rowsUpdated = shelter.statements().updateById(id,values);
+        }else{
+            rowsUpdated = shelter.statements().update(values,selection,selectionArgs);
+        }
+
+        if(rowsUpdated!=0){
+            if(id!=-1 && PetStatements.isFullRow(values)){
+                shelter.duplicates.add(values);
+            }else if(changesDuplicateKey(values)){
+                shelter.duplicates.invalidate();
+            }
+            notifyChange(notifyUri);
+        }
+        return rowsUpdated;
+    }
+
+    private static boolean changesDuplicateKey(ContentValues values){
+        return values.containsKey(PetContract.PetEntry.COLUMN_PET_NAME)
+                || values.containsKey(PetContract.PetEntry.COLUMN_PET_BREED)
+                || values.containsKey(PetContract.PetEntry.COLUMN_PET_GENDER)
+                || values.containsKey(PetContract.PetEntry.COLUMN_PET_WEIGHT);
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final int match = sUriMatcher.match(uri);
+        if(match!=PETS && match!=SHELTER_PETS){
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        long start = beginCall("PetProvider.bulkInsert");
+        int rowsInserted = 0;
+        PetShelters.Shelter shelter = acquireShelter(match,uri);
+        try{
+            rowsInserted = bulkInsertPets(shelter,uri,values);
+            return rowsInserted;
+        }finally {
+            releaseShelter(shelter);
+            endCall(PetMetrics.BULK_INSERT,start,rowsInserted);
+        }
+    }
+
+    /**
+     * Inserts all rows in one transaction through the compiled insert statement and
+     * notifies observers once. Any invalid row aborts the whole batch, and columns
+     * other than the pet columns are ignored. Duplicates, of live pets or of earlier
+     * rows of the batch, are handled as {@link PetContract#QUERY_PARAMETER_DUPLICATES}
+     * says, and merged rows are counted as inserted. An import's position is saved in
+     * the same transaction; see {@link PetContract#QUERY_PARAMETER_IMPORT}.
+     */
+    private int bulkInsertPets(PetShelters.Shelter shelter, Uri uri, ContentValues[] values){
+        String policy = parseDuplicatesPolicy(uri);
+        String source = uri.getQueryParameter(PetContract.QUERY_PARAMETER_IMPORT);
+        long position = source==null ? 0 : parseNonNegative(uri,PetContract.QUERY_PARAMETER_IMPORT_POSITION);
+        PetStatements statements = shelter.statements();
+        SQLiteDatabase database = statements.getDatabase();
+
+        int rowsInserted = 0;
+        boolean merged = false;
+        database.beginTransaction();
+        try{
+            for(ContentValues value : values){
+                validatePet(value,true);
+                long duplicateId = findDuplicate(shelter,statements,value,policy);
+                if(duplicateId==-1){
+                    if(statements.insert(value)!=-1){
+                        shelter.duplicates.add(value);
+                        rowsInserted++;
+                    }
+                }else if(PetContract.DUPLICATES_MERGE.equals(policy)){
+                    mergePet(statements,duplicateId,value);
+                    merged = true;
+                    rowsInserted++;
+                }
+            }
+            if(source!=null){
+                database.execSQL("INSERT OR REPLACE INTO " + PetDbHelper.IMPORT_STATE_TABLE + " ("
+                        + PetDbHelper.COLUMN_SOURCE + ", " + PetDbHelper.COLUMN_POSITION + ") VALUES (?, ?)",
+                        new Object[]{ source, position });
+            }
+            database.setTransactionSuccessful();
+        }finally {
+            database.endTransaction();
+            if(merged){
+                // Rows read by other connections before the commit may have been cached
+                shelter.cache.clear();
+            }
+        }
+
+        if(rowsInserted!=0){
+            notifyChange(uri);
+        }
+        return rowsInserted;
+    }
+
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long start = beginCall("PetProvider.applyBatch");
+        ContentProviderResult[] results = null;
+        try{
+            results = applyBatchInTransaction(operations);
+            return results;
+        }finally {
+            endCall(PetMetrics.APPLY_BATCH,start,results==null ? 0 : results.length);
+        }
+    }
+
+    private ContentProviderResult[] applyBatchInTransaction(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        mApplyingBatch.set(Boolean.TRUE);
+        mBatchChanged.set(Boolean.FALSE);
+        boolean committed = false;
+        database.beginTransaction();
+        try{
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            committed = true;
+            return results;
+        }finally {
+            database.endTransaction();
+            // Rows read by other connections before the commit may have been cached
+            mCache.clear();
+            mApplyingBatch.remove();
+            if(committed && Boolean.TRUE.equals(mBatchChanged.get())){
+                getContext().getContentResolver().notifyChange(PetContract.PetEntry.CONTENT_URI,null);
+            }
+            mBatchChanged.remove();
+        }
+    }
+
+    /**
+     * Opens a trace section for a provider call and returns its start time for {@link #endCall}.
+     */
+    private static long beginCall(String section){
+        Trace.beginSection(section);
+        return System.nanoTime();
+    }
+
+    private void endCall(int operation, long start, long rows){
+        mMetrics.record(operation,start,rows);
+        Trace.endSection();
+    }
+
+    private void notifyChange(Uri uri){
+        if(Boolean.TRUE.equals(mApplyingBatch.get())){
+            mBatchChanged.set(Boolean.TRUE);
+            return;
+        }
+        getContext().getContentResolver().notifyChange(uri,null);
+    }
+
+    /**
+     * The helper of the device's own pets, for tests that measure the database under
+     * other settings.
+     */
+    PetDbHelper dbHelper(){
+        return mDbHelper;
+    }
+
+    /**
+     * The change log and pull writes for {@link PetSync}, which runs in this process.
+     * Pulled changes bypass the provider's write paths, so they clear the whole cache.
+     */
+    PetSyncStore syncStore(){
+        return new PetSyncStore(mDbHelper,new PetSyncStore.Listener() {
+            @Override
+            public void onApplied() {
+                mCache.clear();
+                mOwnShelter.duplicates.invalidate();
+                notifyChange(PetContract.PetEntry.CONTENT_URI);
+            }
+        });
+    }
+
+    /**
+     * Returns the compiled statements for the device's own pets.
+     */
+    private PetStatements statements(){
+        return mOwnShelter.statements();
+    }
+
+    /**
+     * Checks the pet columns present in values. When requireAll is set (a new row),
+     * name and gender must be present as well. deleted_at and the sync columns are
+     * never accepted.
+     */
+    private static void validatePet(ContentValues values, boolean requireAll){
+        if(values.containsKey(PetContract.PetEntry.COLUMN_PET_DELETED_AT)){
+            throw new IllegalArgumentException("Pets are deleted and restored through delete and "
+                    + PetContract.METHOD_RESTORE);
+        }
+
+        if(values.containsKey(PetContract.PetEntry.COLUMN_PET_SYNC_ID)
+                || values.containsKey(PetContract.PetEntry.COLUMN_PET_CHANGED_AT)){
+            throw new IllegalArgumentException("Sync columns are only written by PetSync");
+        }
+
+        if(values.containsKey(PetContract.PetEntry.COLUMN_PET_BREED_ID)){
+            throw new IllegalArgumentException("Breeds are written by name, through "
+                    + PetContract.PetEntry.COLUMN_PET_BREED);
+        }
+
+        if(requireAll || values.containsKey(PetContract.PetEntry.COLUMN_PET_NAME)){
             String name = values.getAsString(PetContract.PetEntry.COLUMN_PET_NAME);
             if(name==null){
                 throw new IllegalArgumentException("Pet requires a name");
             }
         }
 
-        if(values.containsKey(PetContract.PetEntry.COLUMN_PET_GENDER)){
+        if(requireAll || values.containsKey(PetContract.PetEntry.COLUMN_PET_GENDER)){
             Integer gender = values.getAsInteger(PetContract.PetEntry.COLUMN_PET_GENDER);
             if(gender==null || !PetContract.PetEntry.isValidGender(gender)){
                 throw new IllegalArgumentException("Pet requires valid gender");
@@ -169,16 +1305,9 @@ public class PetProvider extends ContentProvider {
             }
         }
 
-        if(values.size()==0){
-            return 0;
-        }
-
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
-        int rowsUpdated = database.update(PetContract.PetEntry.TABLE_NAME,values,selection,selectionArgs);
-
-        if(rowsUpdated!=0){
-            getContext().getContentResolver().notifyChange(uri,null);
+        String photo = values.getAsString(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        if(photo!=null && !PetPhotos.isValidName(photo)){
+            throw new IllegalArgumentException("Pet requires a photo imported by PetPhotos");
         }
-        return rowsUpdated;
     }
 }
@@ -0,0 +1,108 @@
+package com.agririze.petproject.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily idle-time job that purges pets deleted more than {@link #TOMBSTONE_RETENTION_MS}
+ * ago and then shrinks the database file, a bounded batch per provider call so the app's
+ * own writes are never held up for long. Photos no pet refers to any more are deleted
+ * once the purge is done.
+ */
+public class PetPurgeJobService extends JobService {
+
+    private static final String LOG_TAG = PetPurgeJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1;
+
+    /** How long deleted pets stay restorable */
+    static final long TOMBSTONE_RETENTION_MS = TimeUnit.HOURS.toMillis(1);
+
+    private volatile boolean mStopped;
+
+    /**
+     * Schedules the job unless it is already scheduled.
+     */
+    public static void schedule(Context context){
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for(JobInfo job : scheduler.getAllPendingJobs()){
+            if(job.getId()==JOB_ID){
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,new ComponentName(context,PetPurgeJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mStopped = false;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    if(purge()){
+                        jobFinished(params,false);
+                    }
+                }catch (RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to purge deleted pets",e);
+                    jobFinished(params,true);
+                }
+            }
+        },LOG_TAG).start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        mStopped = true;
+        return true;
+    }
+
+    /**
+     * Returns true if the work finished, false if the job was stopped first.
+     */
+    private boolean purge(){
+        ContentResolver resolver = getContentResolver();
+        String deletedBefore = String.valueOf(System.currentTimeMillis() - TOMBSTONE_RETENTION_MS);
+
+        int purged = 0;
+        while(!mStopped){
+            Bundle result = resolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_PURGE,deletedBefore,null);
+            int rows = result.getInt(PetContract.EXTRA_ROWS);
+            if(rows==0){
+                break;
+            }
+            purged += rows;
+        }
+
+        int photos = 0;
+        if(!mStopped){
+            photos = resolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_SWEEP_PHOTOS,deletedBefore,null)
+                    .getInt(PetContract.EXTRA_ROWS);
+        }
+
+        while(!mStopped){
+            Bundle result = resolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_COMPACT,null,null);
+            if(result.getLong(PetContract.EXTRA_PAGES)==0){
+                break;
+            }
+        }
+
+        Log.i(LOG_TAG,"Purged " + purged + " deleted pets and " + photos + " photos"
+                + (mStopped ? " before being stopped" : ""));
+        return !mStopped;
+    }
+}
@@ -0,0 +1,514 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs pet writes through the provider on a single background thread and reports the
+ * outcome on the main thread. Updates to a pet that are still waiting to run are merged
+ * into one write, later values winning. Imports and exports run on a thread of their
+ * own so they do not hold up those writes, and report to whichever activity attached
+ * to them last, so they carry on across configuration changes.
+ */
+public class PetRepository {
+
+    private static final String LOG_TAG = PetRepository.class.getSimpleName();
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Hears how an import or export ended, which may also be by {@link #cancelTransfer}.
+     */
+    public interface TransferCallback<T> extends Callback<T> {
+        void onCancelled();
+    }
+
+    private static PetRepository sInstance;
+
+    private final ContentResolver mContentResolver;
+    private final PetPhotos mPhotos;
+    private final Executor mExecutor;
+    private final ExecutorService mTransferExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mPhotoExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Updates queued but not started yet, by uri. Guarded by this. */
+    private final Map<Uri, PendingUpdate> mPendingUpdates = new HashMap<>();
+
+    /**
+     * The import or export started last, until its outcome is delivered, and the same
+     * transfer typed as what it is. Main thread only.
+     */
+    private Transfer<?, ?> mTransfer;
+    private Transfer<PetImporter.ProgressListener, PetImporter.Result> mImport;
+    private Transfer<PetExporter.ProgressListener, Long> mExport;
+
+    public static synchronized PetRepository getInstance(Context context){
+        if(sInstance==null){
+            Context appContext = context.getApplicationContext();
+            sInstance = new PetRepository(appContext.getContentResolver(),new PetPhotos(appContext));
+        }
+        return sInstance;
+    }
+
+    PetRepository(ContentResolver contentResolver, PetPhotos photos) {
+        this(contentResolver,photos,Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * A repository whose writes run on executor, which must run them one at a time in
+     * order. Tests pass one that slows them down.
+     */
+    PetRepository(ContentResolver contentResolver, PetPhotos photos, Executor executor) {
+        mContentResolver = contentResolver;
+        mPhotos = photos;
+        mExecutor = executor;
+    }
+
+    public void insert(final ContentValues values, final Callback<Uri> callback){
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    Uri uri = mContentResolver.insert(PetContract.PetEntry.CONTENT_URI,values);
+                    if(uri==null){
+                        postFailure(callback,new IllegalStateException("Insert failed"));
+                    }else{
+                        postSuccess(callback,uri);
+                    }
+                }catch (RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to insert pet",e);
+                    postFailure(callback,e);
+                }
+            }
+        });
+    }
+
+    public void update(final Uri uri, ContentValues values, Callback<Integer> callback){
+        synchronized (this){
+            PendingUpdate pending = mPendingUpdates.get(uri);
+            if(pending!=null){
+                pending.values.putAll(values);
+                pending.callbacks.add(callback);
+                return;
+            }
+            pending = new PendingUpdate(new ContentValues(values));
+            pending.callbacks.add(callback);
+            mPendingUpdates.put(uri,pending);
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PendingUpdate pending;
+                synchronized (PetRepository.this){
+                    pending = mPendingUpdates.remove(uri);
+                }
+                try{
+                    int rowsUpdated = mContentResolver.update(uri,pending.values,null,null);
+                    for(Callback<Integer> callback : pending.callbacks){
+                        postSuccess(callback,rowsUpdated);
+                    }
+                }catch (RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to update " + uri,e);
+                    for(Callback<Integer> callback : pending.callbacks){
+                        postFailure(callback,e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the pets of uri and returns the tombstone to pass to {@link #restore} to
+     * undo it.
+     */
+    public long delete(final Uri uri, final Callback<Integer> callback){
+        long tombstone = System.currentTimeMillis();
+        final Uri deleteUri = uri.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_TOMBSTONE,String.valueOf(tombstone))
+                .build();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    postSuccess(callback,mContentResolver.delete(deleteUri,null,null));
+                }catch (RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to delete " + uri,e);
+                    postFailure(callback,e);
+                }
+            }
+        });
+        return tombstone;
+    }
+
+    /**
+     * Brings back the pets deleted by the {@link #delete} call that returned tombstone.
+     */
+    public void restore(final long tombstone, final Callback<Integer> callback){
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    Bundle result = mContentResolver.call(PetContract.BASE_CONTENT_URI,
+                            PetContract.METHOD_RESTORE,String.valueOf(tombstone),null);
+                    postSuccess(callback,result.getInt(PetContract.EXTRA_ROWS));
+                }catch (RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to restore " + tombstone,e);
+                    postFailure(callback,e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Imports the pets in a CSV or JSON document; see {@link PetImporter}. Progress is
+     * reported after every chunk. Cancelling the transfer stops the import after the
+     * current chunk, and importing the same uri again resumes it. Call on the main
+     * thread, which the listener and callback are called on, while no transfer is running.
+     */
+    public void importPets(final Uri source, PetImporter.ProgressListener listener,
+                           TransferCallback<PetImporter.Result> callback){
+        final Transfer<PetImporter.ProgressListener, PetImporter.Result> transfer = new Transfer<>(
+                new Progress<PetImporter.ProgressListener>() {
+                    @Override
+                    public void reportTo(PetImporter.ProgressListener listener) {
+                        listener.onProgress(0,0);
+                    }
+                });
+        transfer.attach(listener,callback);
+        mTransfer = transfer;
+        mImport = transfer;
+        transfer.future = mTransferExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if(!transfer.claim()){
+                    return;
+                }
+                PetImporter importer = new PetImporter(mContentResolver);
+                try{
+                    postOutcome(transfer,importer.importPets(source,new PetImporter.ProgressListener() {
+                        @Override
+                        public void onProgress(final long imported, final long rejected) {
+                            postProgress(transfer,new Progress<PetImporter.ProgressListener>() {
+                                @Override
+                                public void reportTo(PetImporter.ProgressListener listener) {
+                                    listener.onProgress(imported,rejected);
+                                }
+                            });
+                        }
+                    }),null);
+                }catch (IOException | RuntimeException e){
+                    // The interrupt may surface as any IOException from the stream
+                    if(transfer.cancelled){
+                        Log.i(LOG_TAG,"Import of " + source + " cancelled");
+                        postCancelled(transfer);
+                        return;
+                    }
+                    Log.e(LOG_TAG,"Failed to import " + source,e);
+                    postOutcome(transfer,null,e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes every pet to destination; see {@link PetExporter}. Progress is reported
+     * after every page. Cancelling the transfer stops the export after the current page.
+     * Call on the main thread, which the listener and callback are called on, while no
+     * transfer is running.
+     */
+    public void exportPets(final Uri destination, final PetExporter.Format format,
+                           PetExporter.ProgressListener listener, TransferCallback<Long> callback){
+        final Transfer<PetExporter.ProgressListener, Long> transfer = new Transfer<>(
+                new Progress<PetExporter.ProgressListener>() {
+                    @Override
+                    public void reportTo(PetExporter.ProgressListener listener) {
+                        listener.onProgress(0);
+                    }
+                });
+        transfer.attach(listener,callback);
+        mTransfer = transfer;
+        mExport = transfer;
+        transfer.future = mTransferExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if(!transfer.claim()){
+                    return;
+                }
+                PetExporter exporter = new PetExporter(mContentResolver);
+                try{
+                    postOutcome(transfer,exporter.exportPets(destination,format,new PetExporter.ProgressListener() {
+                        @Override
+                        public void onProgress(final long exported) {
+                            postProgress(transfer,new Progress<PetExporter.ProgressListener>() {
+                                @Override
+                                public void reportTo(PetExporter.ProgressListener listener) {
+                                    listener.onProgress(exported);
+                                }
+                            });
+                        }
+                    }),null);
+                }catch (IOException | RuntimeException e){
+                    // The interrupt may surface as any IOException from the stream
+                    if(transfer.cancelled){
+                        Log.i(LOG_TAG,"Export to " + destination + " cancelled");
+                        postCancelled(transfer);
+                        return;
+                    }
+                    Log.e(LOG_TAG,"Failed to export to " + destination,e);
+                    postOutcome(transfer,null,e);
+                }
+            }
+        });
+    }
+
+    /**
+     * True until the last import or export has ended, which after {@link #cancelTransfer}
+     * is once it has actually stopped. Call on the main thread.
+     */
+    public boolean isTransferRunning(){
+        return mTransfer!=null && !mTransfer.isFinished();
+    }
+
+    /**
+     * Cancels the running import or export. One that has not started ends at once;
+     * one that has stops after its current chunk or page. Its callback then hears
+     * onCancelled, or how it ended if it finished first. Call on the main thread.
+     */
+    public void cancelTransfer(){
+        Transfer<?, ?> transfer = mTransfer;
+        if(transfer==null || transfer.isFinished()){
+            return;
+        }
+        transfer.cancelled = true;
+        if(transfer.claim()){
+            transfer.future.cancel(false);
+            transfer.onCancelled();
+        }else{
+            // Interrupts the transfer thread, which the importer and exporter check between chunks
+            transfer.future.cancel(true);
+        }
+    }
+
+    /**
+     * Gives the import started last to listener and callback if its outcome has not
+     * been delivered yet, reporting its latest progress or its outcome straight away.
+     * Returns false if there is no such import. Call on the main thread, typically
+     * from onCreate of an activity recreated while the import runs.
+     */
+    public boolean attachImport(PetImporter.ProgressListener listener, TransferCallback<PetImporter.Result> callback){
+        if(mImport==null || mImport!=mTransfer){
+            return false;
+        }
+        mImport.attach(listener,callback);
+        return true;
+    }
+
+    /**
+     * Like {@link #attachImport}, for the export started last.
+     */
+    public boolean attachExport(PetExporter.ProgressListener listener, TransferCallback<Long> callback){
+        if(mExport==null || mExport!=mTransfer){
+            return false;
+        }
+        mExport.attach(listener,callback);
+        return true;
+    }
+
+    /**
+     * Drops the listener and callback of the running transfer, so it does not hold on
+     * to a destroyed activity. Its outcome is kept for the next attach.
+     */
+    public void detachTransfer(){
+        if(mTransfer!=null){
+            mTransfer.attach(null,null);
+        }
+    }
+
+    private <L, R> void postProgress(final Transfer<L, R> transfer, final Progress<L> progress){
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                transfer.onProgress(progress);
+            }
+        });
+    }
+
+    private <L, R> void postOutcome(final Transfer<L, R> transfer, final R result, final Exception failure){
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                transfer.onFinished(result,failure);
+            }
+        });
+    }
+
+    private void postCancelled(final Transfer<?, ?> transfer){
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                transfer.onCancelled();
+            }
+        });
+    }
+
+    /**
+     * Stores the image at source as a pet photo and returns its name, to be saved in
+     * {@link PetContract.PetEntry#COLUMN_PET_PHOTO}. Decoding runs on a thread of its own
+     * so neither writes nor transfers wait for it.
+     */
+    public void importPhoto(final Uri source, final Callback<String> callback){
+        mPhotoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    postSuccess(callback,mPhotos.importPhoto(source));
+                }catch (IOException | RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to import photo " + source,e);
+                    postFailure(callback,e);
+                }
+            }
+        });
+    }
+
+    private <T> void postSuccess(final Callback<T> callback, final T result){
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onSuccess(result);
+            }
+        });
+    }
+
+    private void postFailure(final Callback<?> callback, final Exception e){
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /** A progress report, kept so it can be given again to a newly attached listener */
+    private interface Progress<L> {
+        void reportTo(L listener);
+    }
+
+    /**
+     * An import or export, which runs on the transfer thread while the activity that
+     * started it is recreated. Its progress and outcome go to the listener and callback
+     * attached last; while none is attached, the latest progress and the outcome are
+     * kept for the next. Main thread only, apart from future, cancelled and the start
+     * flag.
+     */
+    private final class Transfer<L, R> {
+        Future<?> future;
+        /** Set once the transfer is cancelled, so its interruption is not taken for a failure */
+        volatile boolean cancelled;
+        private final AtomicBoolean mStarted = new AtomicBoolean();
+        private L mListener;
+        private TransferCallback<R> mCallback;
+        private Progress<L> mProgress;
+        private boolean mFinished;
+        private boolean mCancelled;
+        private R mResult;
+        private Exception mFailure;
+
+        Transfer(Progress<L> progress) {
+            mProgress = progress;
+        }
+
+        /**
+         * Called by the transfer thread before it does any work, and by cancelTransfer to
+         * keep it from starting. Returns false to whichever comes second.
+         */
+        boolean claim(){
+            return mStarted.compareAndSet(false,true);
+        }
+
+        boolean isFinished(){
+            return mFinished;
+        }
+
+        void attach(L listener, TransferCallback<R> callback){
+            mListener = listener;
+            mCallback = callback;
+            if(mFinished){
+                deliver();
+            }else if(listener!=null){
+                mProgress.reportTo(listener);
+            }
+        }
+
+        void onProgress(Progress<L> progress){
+            mProgress = progress;
+            if(mListener!=null && !mFinished){
+                progress.reportTo(mListener);
+            }
+        }
+
+        void onFinished(R result, Exception failure){
+            mFinished = true;
+            mResult = result;
+            mFailure = failure;
+            deliver();
+        }
+
+        void onCancelled(){
+            mFinished = true;
+            mCancelled = true;
+            deliver();
+        }
+
+        private void deliver(){
+            if(mCallback==null){
+                return;
+            }
+            TransferCallback<R> callback = mCallback;
+            mListener = null;
+            mCallback = null;
+            if(mTransfer==this){
+                mTransfer = null;
+                mImport = null;
+                mExport = null;
+            }
+            if(mCancelled){
+                callback.onCancelled();
+            }else if(mFailure==null){
+                callback.onSuccess(mResult);
+            }else{
+                callback.onFailure(mFailure);
+            }
+        }
+    }
+
+    private static final class PendingUpdate {
+        final ContentValues values;
+        final List<Callback<Integer>> callbacks = new ArrayList<>();
+
+        PendingUpdate(ContentValues values) {
+            this.values = values;
+        }
+    }
+}
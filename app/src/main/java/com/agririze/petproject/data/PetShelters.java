@@ -0,0 +1,186 @@
+package com.agririze.petproject.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The databases of other shelters, one file per shelter so one shelter's rows and write
+ * load never slow down another's. At most {@link #MAX_OPEN} are kept open between
+ * calls. A shelter evicted while a call or a cursor still uses it is closed once the
+ * last of them is done, so an open cursor keeps its database open past the bound.
+ */
+class PetShelters {
+
+    /** Shelter databases kept open, each with its own connections and page cache */
+    static final int MAX_OPEN = 8;
+
+    /** Rows of each shelter's single-pet cache */
+    private static final int CACHE_SIZE = 64;
+
+    private static final Pattern DATABASE_NAME = Pattern.compile("shelter_(\\d+)\\.db");
+
+    /**
+     * One pets database with the statements and row cache that go with it. The
+     * provider's own pets are a shelter too, one that is never evicted.
+     */
+    static final class Shelter {
+
+        final long id;
+        final PetDbHelper helper;
+        final PetCache cache;
+        final PetDuplicates duplicates;
+
+        private PetStatements mStatements;
+
+        /** Calls and cursors using the shelter. Guarded by the PetShelters. */
+        private int mUsers;
+        private boolean mEvicted;
+
+        Shelter(long id, PetDbHelper helper, PetCache cache) {
+            this.id = id;
+            this.helper = helper;
+            this.cache = cache;
+            this.duplicates = new PetDuplicates(helper);
+        }
+
+        /**
+         * Returns the compiled statements for the current writable database, recompiling
+         * them if the helper has reopened it.
+         */
+        synchronized PetStatements statements(){
+            SQLiteDatabase database = helper.getWritableDatabase();
+            if(mStatements==null || mStatements.getDatabase()!=database){
+                if(mStatements!=null){
+                    mStatements.close();
+                }
+                mStatements = new PetStatements(database);
+            }
+            return mStatements;
+        }
+
+        private synchronized void close(){
+            duplicates.close();
+            if(mStatements!=null){
+                mStatements.close();
+                mStatements = null;
+            }
+            helper.close();
+        }
+    }
+
+    private final Context mContext;
+    private final LruCache<Long, Shelter> mOpen;
+
+    /** Evicted shelters still in use, handed out again rather than opened twice */
+    private final Map<Long, Shelter> mClosing = new HashMap<>();
+
+    PetShelters(Context context) {
+        mContext = context;
+        mOpen = new LruCache<Long, Shelter>(MAX_OPEN) {
+            @Override
+            protected void entryRemoved(boolean evicted, Long id, Shelter shelter, Shelter newShelter) {
+                // Only called from acquire, which holds the PetShelters lock
+                shelter.mEvicted = true;
+                if(shelter.mUsers==0){
+                    shelter.close();
+                }else{
+                    mClosing.put(id,shelter);
+                }
+            }
+        };
+    }
+
+    static String databaseName(long id){
+        return "shelter_" + id + ".db";
+    }
+
+    /**
+     * Returns the shelter for use until {@link #release}, opening it (and creating its
+     * database) if needed.
+     */
+    synchronized Shelter acquire(long id){
+        Shelter shelter = mOpen.get(id);
+        if(shelter==null){
+            shelter = mClosing.remove(id);
+            if(shelter==null){
+                shelter = new Shelter(id,new PetDbHelper(mContext,databaseName(id)),new PetCache(CACHE_SIZE));
+            }
+            shelter.mEvicted = false;
+            mOpen.put(id,shelter);
+        }
+        shelter.mUsers++;
+        return shelter;
+    }
+
+    synchronized void release(Shelter shelter){
+        shelter.mUsers--;
+        if(shelter.mEvicted && shelter.mUsers==0){
+            mClosing.remove(shelter.id);
+            shelter.close();
+        }
+    }
+
+    /**
+     * Wraps a cursor read from shelter so closing it releases the shelter. The caller's
+     * use of the shelter passes to the cursor.
+     */
+    Cursor releaseOnClose(final Shelter shelter, Cursor cursor){
+        return new CursorWrapper(cursor) {
+            private boolean mReleased;
+
+            @Override
+            public void close() {
+                super.close();
+                synchronized (this){
+                    if(mReleased){
+                        return;
+                    }
+                    mReleased = true;
+                }
+                release(shelter);
+            }
+        };
+    }
+
+    /**
+     * Empties the row caches of every shelter still open.
+     */
+    synchronized void clearCaches(){
+        for(Shelter shelter : mOpen.snapshot().values()){
+            shelter.cache.clear();
+        }
+        for(Shelter shelter : mClosing.values()){
+            shelter.cache.clear();
+        }
+    }
+
+    /**
+     * Ids of every shelter with a database on the device, in ascending order.
+     */
+    long[] ids(){
+        List<Long> ids = new ArrayList<>();
+        for(String name : mContext.databaseList()){
+            Matcher matcher = DATABASE_NAME.matcher(name);
+            if(matcher.matches()){
+                ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        long[] sorted = new long[ids.size()];
+        for(int i = 0; i < sorted.length; i++){
+            sorted[i] = ids.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,303 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+/**
+ * Compiled statements for the provider's fixed-shape writes. Values are bound straight
+ * from ContentValues, skipping the SQL building that SQLiteDatabase.insert/update/delete
+ * repeat on every call. Each statement is locked while it is bound and executed, since
+ * provider calls arrive on several binder threads. A write opens its transaction, and
+ * with it takes the database connection, before it locks a statement, so a thread in
+ * a transaction never waits for a statement locked by a thread waiting for the
+ * connection. Every write here takes a breed by name and stores its id, adding the
+ * breed in the same transaction if it is new.
+ */
+class PetStatements {
+
+    /**
+     * Reads a full {@link Pet} by _id, given the expression that computes its summary.
+     */
+    static String selectById(String summaryColumn){
+        return "SELECT "
+                + PetContract.PetEntry._ID + ", "
+                + PetContract.PetEntry.COLUMN_PET_NAME + ", "
+                + PetContract.PetEntry.COLUMN_PET_BREED + ", "
+                + PetContract.PetEntry.COLUMN_PET_GENDER + ", "
+                + PetContract.PetEntry.COLUMN_PET_WEIGHT + ", "
+                + PetContract.PetEntry.COLUMN_PET_PHOTO + ", "
+                + summaryColumn
+                + " FROM " + PetDbHelper.PETS_WITH_BREEDS
+                + " WHERE " + PetContract.PetEntry._ID + "=? AND " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+    }
+
+    /** Adds the breed bound to it, unless it is there already */
+    static final String SQL_INSERT_BREED = "INSERT OR IGNORE INTO " + PetContract.PetEntry.BREEDS_TABLE_NAME
+            + " (" + PetContract.PetEntry.COLUMN_PET_BREED + ") VALUES (?)";
+
+    private static final String SQL_SELECT_BREED_ID = "SELECT " + PetContract.PetEntry.COLUMN_PET_BREED_ID + " FROM "
+            + PetContract.PetEntry.BREEDS_TABLE_NAME + " WHERE " + PetContract.PetEntry.COLUMN_PET_BREED + "=?";
+
+    /** SQL for the id of the breed bound in its place, or null for a breed that is not there */
+    static final String BREED_ID_OF = "(" + SQL_SELECT_BREED_ID + ")";
+
+    private static final String SQL_INSERT = "INSERT INTO " + PetContract.PetEntry.TABLE_NAME + " ("
+            + PetContract.PetEntry.COLUMN_PET_NAME + ", "
+            + PetContract.PetEntry.COLUMN_PET_BREED_ID + ", "
+            + PetContract.PetEntry.COLUMN_PET_GENDER + ", "
+            + PetContract.PetEntry.COLUMN_PET_WEIGHT + ", "
+            + PetContract.PetEntry.COLUMN_PET_PHOTO + ") VALUES (?, " + BREED_ID_OF + ", ?, ?, ?)";
+
+    private static final String SQL_UPDATE_BY_ID = "UPDATE " + PetContract.PetEntry.TABLE_NAME + " SET "
+            + PetContract.PetEntry.COLUMN_PET_NAME + "=?, "
+            + PetContract.PetEntry.COLUMN_PET_BREED_ID + "=" + BREED_ID_OF + ", "
+            + PetContract.PetEntry.COLUMN_PET_GENDER + "=?, "
+            + PetContract.PetEntry.COLUMN_PET_WEIGHT + "=?, "
+            + PetContract.PetEntry.COLUMN_PET_PHOTO + "=? WHERE "
+            + PetContract.PetEntry._ID + "=? AND " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+
+    private static final String SQL_DELETE_BY_ID = "UPDATE " + PetContract.PetEntry.TABLE_NAME + " SET "
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + "=? WHERE "
+            + PetContract.PetEntry._ID + "=? AND " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+
+    /**
+     * The _id of a live pet matching the bound name and breed (ignoring case, '' for
+     * none), gender and weight, or -1. The name index narrows it down to a few rows.
+     */
+    private static final String SQL_SELECT_DUPLICATE = "SELECT COALESCE((SELECT " + PetContract.PetEntry._ID
+            + " FROM " + PetDbHelper.PETS_WITH_BREEDS + " WHERE "
+            + PetContract.PetEntry.COLUMN_PET_NAME + "=? COLLATE NOCASE AND COALESCE("
+            + PetContract.PetEntry.COLUMN_PET_BREED + ", '')=? COLLATE NOCASE AND "
+            + PetContract.PetEntry.COLUMN_PET_GENDER + "=? AND "
+            + PetContract.PetEntry.COLUMN_PET_WEIGHT + "=? AND "
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL LIMIT 1), -1)";
+
+    private final SQLiteDatabase mDatabase;
+    private final SQLiteStatement mInsert;
+    private final SQLiteStatement mUpdateById;
+    private final SQLiteStatement mDeleteById;
+    private final SQLiteStatement mInsertBreed;
+    private final SQLiteStatement mSelectBreedId;
+    private final SQLiteStatement mSelectDuplicate;
+
+    PetStatements(SQLiteDatabase database) {
+        mDatabase = database;
+        mInsert = database.compileStatement(SQL_INSERT);
+        mUpdateById = database.compileStatement(SQL_UPDATE_BY_ID);
+        mDeleteById = database.compileStatement(SQL_DELETE_BY_ID);
+        mInsertBreed = database.compileStatement(SQL_INSERT_BREED);
+        mSelectBreedId = database.compileStatement(SQL_SELECT_BREED_ID);
+        mSelectDuplicate = database.compileStatement(SQL_SELECT_DUPLICATE);
+    }
+
+    SQLiteDatabase getDatabase(){
+        return mDatabase;
+    }
+
+    /**
+     * True if values only has pet columns and includes name and gender, so it can be
+     * inserted through the compiled statement.
+     */
+    static boolean isInsertable(ContentValues values){
+        int known = 0;
+        for(String column : new String[]{ PetContract.PetEntry.COLUMN_PET_NAME, PetContract.PetEntry.COLUMN_PET_BREED,
+                PetContract.PetEntry.COLUMN_PET_GENDER, PetContract.PetEntry.COLUMN_PET_WEIGHT,
+                PetContract.PetEntry.COLUMN_PET_PHOTO }){
+            if(values.containsKey(column)){
+                known++;
+            }
+        }
+        return known==values.size()
+                && values.getAsString(PetContract.PetEntry.COLUMN_PET_NAME)!=null
+                && values.getAsInteger(PetContract.PetEntry.COLUMN_PET_GENDER)!=null;
+    }
+
+    /**
+     * True if values sets every pet column and nothing else, which is what the editor saves.
+     */
+    static boolean isFullRow(ContentValues values){
+        return values.size()==5 && isInsertable(values)
+                && values.containsKey(PetContract.PetEntry.COLUMN_PET_BREED)
+                && values.containsKey(PetContract.PetEntry.COLUMN_PET_WEIGHT)
+                && values.containsKey(PetContract.PetEntry.COLUMN_PET_PHOTO);
+    }
+
+    long insert(ContentValues values){
+        String breed = breedOf(values);
+        mDatabase.beginTransaction();
+        try{
+            insertBreed(breed);
+            long id;
+            synchronized (mInsert){
+                bindPet(mInsert,values,breed);
+                id = mInsert.executeInsert();
+            }
+            mDatabase.setTransactionSuccessful();
+            return id;
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    int updateById(long id, ContentValues values){
+        String breed = breedOf(values);
+        mDatabase.beginTransaction();
+        try{
+            insertBreed(breed);
+            int rows;
+            synchronized (mUpdateById){
+                bindPet(mUpdateById,values,breed);
+                mUpdateById.bindLong(6,id);
+                rows = mUpdateById.executeUpdateDelete();
+            }
+            mDatabase.setTransactionSuccessful();
+            return rows;
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Inserts values that the compiled statement does not cover through
+     * SQLiteDatabase.insert.
+     */
+    long insertValues(ContentValues values){
+        mDatabase.beginTransaction();
+        try{
+            long id = mDatabase.insert(PetContract.PetEntry.TABLE_NAME,null,withBreedId(values));
+            mDatabase.setTransactionSuccessful();
+            return id;
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Updates the matching pets through SQLiteDatabase.update.
+     */
+    int update(ContentValues values, String selection, String[] selectionArgs){
+        mDatabase.beginTransaction();
+        try{
+            int rows = mDatabase.update(PetContract.PetEntry.TABLE_NAME,withBreedId(values),
+                    PetDbHelper.petsMatching(selection),selectionArgs);
+            mDatabase.setTransactionSuccessful();
+            return rows;
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Marks the pet deleted with the given tombstone, if it is not deleted already.
+     */
+    int deleteById(long id, long tombstone){
+        mDatabase.beginTransaction();
+        try{
+            int rows;
+            synchronized (mDeleteById){
+                mDeleteById.clearBindings();
+                mDeleteById.bindLong(1,tombstone);
+                mDeleteById.bindLong(2,id);
+                rows = mDeleteById.executeUpdateDelete();
+            }
+            mDatabase.setTransactionSuccessful();
+            return rows;
+        }finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the _id of a live pet with the name, breed, gender and weight of values,
+     * or -1; see {@link PetDuplicates}.
+     */
+    long findDuplicate(ContentValues values){
+        String breed = breedOf(values);
+        Integer weight = values.getAsInteger(PetContract.PetEntry.COLUMN_PET_WEIGHT);
+        synchronized (mSelectDuplicate){
+            mSelectDuplicate.bindString(1,values.getAsString(PetContract.PetEntry.COLUMN_PET_NAME));
+            mSelectDuplicate.bindString(2,breed==null ? "" : breed);
+            mSelectDuplicate.bindLong(3,values.getAsInteger(PetContract.PetEntry.COLUMN_PET_GENDER));
+            mSelectDuplicate.bindLong(4,weight==null ? 0 : weight);
+            return mSelectDuplicate.simpleQueryForLong();
+        }
+    }
+
+    void close(){
+        mInsert.close();
+        mUpdateById.close();
+        mDeleteById.close();
+        mInsertBreed.close();
+        mSelectBreedId.close();
+        mSelectDuplicate.close();
+    }
+
+    /**
+     * The breed of values, with an empty breed read as none.
+     */
+    static String breedOf(ContentValues values){
+        String breed = values.getAsString(PetContract.PetEntry.COLUMN_PET_BREED);
+        return TextUtils.isEmpty(breed) ? null : breed;
+    }
+
+    /**
+     * Adds breed to the breeds table if it is new. Must run in the transaction of the
+     * write naming it, so purge cannot drop it in between.
+     */
+    private void insertBreed(String breed){
+        if(breed==null){
+            return;
+        }
+        synchronized (mInsertBreed){
+            mInsertBreed.bindString(1,breed);
+            mInsertBreed.executeInsert();
+        }
+    }
+
+    /**
+     * Returns values with its breed, if it has one, replaced by the breed's id.
+     */
+    private ContentValues withBreedId(ContentValues values){
+        if(!values.containsKey(PetContract.PetEntry.COLUMN_PET_BREED)){
+            return values;
+        }
+        ContentValues resolved = new ContentValues(values);
+        resolved.remove(PetContract.PetEntry.COLUMN_PET_BREED);
+        String breed = breedOf(values);
+        if(breed==null){
+            resolved.putNull(PetContract.PetEntry.COLUMN_PET_BREED_ID);
+            return resolved;
+        }
+        insertBreed(breed);
+        synchronized (mSelectBreedId){
+            mSelectBreedId.bindString(1,breed);
+            resolved.put(PetContract.PetEntry.COLUMN_PET_BREED_ID,mSelectBreedId.simpleQueryForLong());
+        }
+        return resolved;
+    }
+
+    private static void bindPet(SQLiteStatement statement, ContentValues values, String breed){
+        statement.clearBindings();
+        statement.bindString(1,values.getAsString(PetContract.PetEntry.COLUMN_PET_NAME));
+
+        if(breed==null){
+            statement.bindNull(2);
+        }else{
+            statement.bindString(2,breed);
+        }
+
+        statement.bindLong(3,values.getAsInteger(PetContract.PetEntry.COLUMN_PET_GENDER));
+
+        Integer weight = values.getAsInteger(PetContract.PetEntry.COLUMN_PET_WEIGHT);
+        statement.bindLong(4,weight==null ? 0 : weight);
+
+        String photo = values.getAsString(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        if(photo==null){
+            statement.bindNull(5);
+        }else{
+            statement.bindString(5,photo);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentProviderClient;
+import android.content.Context;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Exchanges changed pets with a shelter server. Local changes are pushed from the
+ * change log, oldest first, and dropped from it once the server has them; the server's
+ * changes are then pulled from the position saved by the last pull. Only pets that
+ * changed since the last sync travel, in batches of {@link #BATCH_SIZE}. Photos stay on
+ * the device.
+ */
+public class PetSync {
+
+    public static final int BATCH_SIZE = 500;
+
+    private static final String KEY_PULL_POSITION_PREFIX = "pulled:";
+
+    public static final class Result {
+        /** Changes sent to the server */
+        public final int pushed;
+        /** Pets changed by what the server sent */
+        public final int pulled;
+
+        Result(int pushed, int pulled) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+        }
+    }
+
+    private final PetSyncStore mStore;
+    private final PetSyncClient mClient;
+    private final String mPositionKey;
+
+    /**
+     * @param baseUrl the server's base url, ending in a slash. Each server has its own
+     *                pull position.
+     */
+    public PetSync(Context context, String baseUrl) {
+        mStore = localProvider(context).syncStore();
+        mClient = new PetSyncClient(baseUrl);
+        mPositionKey = KEY_PULL_POSITION_PREFIX + baseUrl;
+    }
+
+    /**
+     * The sync store shares the provider's database and cache, so the provider must run
+     * in this process, which it always does since it is not exported.
+     */
+    private static PetProvider localProvider(Context context){
+        ContentProviderClient client = context.getContentResolver()
+                .acquireContentProviderClient(PetContract.CONTENT_AUTHORITY);
+        if(client==null){
+            throw new IllegalStateException("No provider for " + PetContract.CONTENT_AUTHORITY);
+        }
+        try{
+            return (PetProvider) client.getLocalContentProvider();
+        }finally {
+            client.release();
+        }
+    }
+
+    /**
+     * Pushes, then pulls, until both sides are up to date. Must not run on the main
+     * thread. Stops with an InterruptedIOException between batches if the thread is
+     * interrupted; every batch already done stays done.
+     */
+    public Result sync() throws IOException {
+        String deviceId = mStore.deviceId();
+
+        int pushed = 0;
+        while(true){
+            checkInterrupted();
+            List<PetChange> changes = mStore.readChanges(BATCH_SIZE);
+            if(changes.isEmpty()){
+                break;
+            }
+            mClient.push(deviceId,changes);
+            mStore.acknowledge(changes.get(changes.size() - 1).seq);
+            pushed += changes.size();
+        }
+
+        int pulled = 0;
+        String position = mStore.getState(mPositionKey);
+        while(true){
+            checkInterrupted();
+            PetSyncClient.Pull pull = mClient.pull(deviceId,position,BATCH_SIZE);
+            pulled += mStore.apply(pull.changes,mPositionKey,pull.next);
+            position = pull.next;
+            if(pull.changes.size()<BATCH_SIZE){
+                break;
+            }
+        }
+        return new Result(pushed,pulled);
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if(Thread.interrupted()){
+            throw new InterruptedIOException("Sync interrupted");
+        }
+    }
+}
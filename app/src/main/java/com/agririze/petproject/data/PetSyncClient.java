@@ -0,0 +1,207 @@
+package com.agririze.petproject.data;
+
+import android.net.Uri;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP client for the shelter server's changes endpoint. A push POSTs a batch of
+ * changes as gzipped JSON:
+ *
+ * <pre>{"device": "...", "changes": [{"id": "...", "changed_at": 0, "deleted": false,
+ *   "name": "...", "breed": "...", "gender": 0, "weight": 0}, ...]}</pre>
+ *
+ * <p>A pull GETs changes?since=&lt;position&gt;&amp;limit=&lt;n&gt;&amp;device=&lt;id&gt;
+ * and reads {"changes": [...], "next": "&lt;position&gt;"} in the same form, leaving out
+ * the device's own changes. The response may be gzipped; HttpURLConnection asks for
+ * that and unzips it by itself.
+ */
+class PetSyncClient {
+
+    private static final String PATH_CHANGES = "changes";
+
+    private static final int TIMEOUT_MS = 15_000;
+
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_CHANGES = "changes";
+    private static final String KEY_NEXT = "next";
+    private static final String KEY_ID = "id";
+    private static final String KEY_CHANGED_AT = "changed_at";
+    private static final String KEY_DELETED = "deleted";
+
+    /** One page of pulled changes and the position to pull the next page from */
+    static final class Pull {
+        final List<PetChange> changes;
+        final String next;
+
+        Pull(List<PetChange> changes, String next) {
+            this.changes = changes;
+            this.next = next;
+        }
+    }
+
+    private final Uri mBaseUri;
+
+    /**
+     * @param baseUrl the server's base url, ending in a slash
+     */
+    PetSyncClient(String baseUrl) {
+        mBaseUri = Uri.parse(baseUrl);
+    }
+
+    void push(String deviceId, List<PetChange> changes) throws IOException {
+        HttpURLConnection connection = open(mBaseUri.buildUpon().appendPath(PATH_CHANGES).build());
+        try{
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            // Streams the body instead of buffering it to learn its length
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty("Content-Type","application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding","gzip");
+
+            JsonWriter json = new JsonWriter(new OutputStreamWriter(new GZIPOutputStream(
+                    new BufferedOutputStream(connection.getOutputStream())),StandardCharsets.UTF_8));
+            try{
+                json.beginObject();
+                json.name(KEY_DEVICE).value(deviceId);
+                json.name(KEY_CHANGES).beginArray();
+                for(PetChange change : changes){
+                    writeChange(json,change);
+                }
+                json.endArray();
+                json.endObject();
+            }finally {
+                json.close();
+            }
+            checkResponse(connection);
+        }finally {
+            connection.disconnect();
+        }
+    }
+
+    Pull pull(String deviceId, String since, int limit) throws IOException {
+        Uri.Builder uri = mBaseUri.buildUpon().appendPath(PATH_CHANGES)
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(limit))
+                .appendQueryParameter(KEY_DEVICE,deviceId);
+        if(since!=null){
+            uri.appendQueryParameter("since",since);
+        }
+        HttpURLConnection connection = open(uri.build());
+        try{
+            checkResponse(connection);
+            JsonReader json = new JsonReader(new InputStreamReader(
+                    new BufferedInputStream(connection.getInputStream()),StandardCharsets.UTF_8));
+            try{
+                List<PetChange> changes = new ArrayList<>();
+                String next = since;
+                json.beginObject();
+                while(json.hasNext()){
+                    String key = json.nextName();
+                    if(KEY_CHANGES.equals(key)){
+                        json.beginArray();
+                        while(json.hasNext()){
+                            changes.add(readChange(json));
+                        }
+                        json.endArray();
+                    }else if(KEY_NEXT.equals(key)){
+                        next = json.nextString();
+                    }else{
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+                return new Pull(changes,next);
+            }finally {
+                json.close();
+            }
+        }finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(Uri uri) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri.toString()).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        return connection;
+    }
+
+    private static void checkResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        if(code<200 || code>=300){
+            throw new IOException("Sync server returned " + code + " for " + connection.getURL());
+        }
+    }
+
+    private static void writeChange(JsonWriter json, PetChange change) throws IOException {
+        json.beginObject();
+        json.name(KEY_ID).value(change.syncId);
+        json.name(KEY_CHANGED_AT).value(change.changedAt);
+        json.name(KEY_DELETED).value(change.deleted);
+        if(!change.deleted){
+            json.name(PetContract.PetEntry.COLUMN_PET_NAME).value(change.name);
+            json.name(PetContract.PetEntry.COLUMN_PET_BREED).value(change.breed);
+            json.name(PetContract.PetEntry.COLUMN_PET_GENDER).value(change.gender);
+            json.name(PetContract.PetEntry.COLUMN_PET_WEIGHT).value(change.weight);
+        }
+        json.endObject();
+    }
+
+    private static PetChange readChange(JsonReader json) throws IOException {
+        String syncId = null;
+        long changedAt = 0;
+        boolean deleted = false;
+        String name = null;
+        String breed = null;
+        int gender = -1;
+        int weight = 0;
+        json.beginObject();
+        while(json.hasNext()){
+            String key = json.nextName();
+            if(json.peek()==JsonToken.NULL){
+                json.nextNull();
+                continue;
+            }
+            switch (key){
+                case KEY_ID:
+                    syncId = json.nextString();
+                    break;
+                case KEY_CHANGED_AT:
+                    changedAt = json.nextLong();
+                    break;
+                case KEY_DELETED:
+                    deleted = json.nextBoolean();
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_NAME:
+                    name = json.nextString();
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_BREED:
+                    breed = json.nextString();
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_GENDER:
+                    gender = json.nextInt();
+                    break;
+                case PetContract.PetEntry.COLUMN_PET_WEIGHT:
+                    weight = json.nextInt();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new PetChange(0,syncId,changedAt,deleted,name,breed,gender,weight);
+    }
+}
@@ -0,0 +1,75 @@
+package com.agririze.petproject.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.agririze.petproject.BuildConfig;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hourly job that syncs pets with the shelter server at {@link BuildConfig#SYNC_BASE_URL}
+ * whenever the device is online. Builds without a server never schedule it.
+ */
+public class PetSyncJobService extends JobService {
+
+    private static final String LOG_TAG = PetSyncJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 2;
+
+    private Thread mThread;
+
+    /**
+     * Schedules the job unless it is already scheduled or no server is configured.
+     */
+    public static void schedule(Context context){
+        if(TextUtils.isEmpty(BuildConfig.SYNC_BASE_URL)){
+            return;
+        }
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for(JobInfo job : scheduler.getAllPendingJobs()){
+            if(job.getId()==JOB_ID){
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,new ComponentName(context,PetSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPeriodic(TimeUnit.HOURS.toMillis(1))
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    PetSync.Result result = new PetSync(PetSyncJobService.this,BuildConfig.SYNC_BASE_URL).sync();
+                    Log.i(LOG_TAG,"Pushed " + result.pushed + " and pulled " + result.pulled + " pets");
+                    jobFinished(params,false);
+                }catch (InterruptedIOException e){
+                    // Stopped by onStopJob, which already asked for a retry
+                }catch (IOException | RuntimeException e){
+                    Log.e(LOG_TAG,"Failed to sync pets",e);
+                    jobFinished(params,true);
+                }
+            }
+        },LOG_TAG);
+        mThread.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        mThread.interrupt();
+        return true;
+    }
+}
@@ -0,0 +1,241 @@
+package com.agririze.petproject.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The sync engine's side of the database: the change log that triggers fill as pets
+ * change, and the writes that bring in changes pulled from the server. A pulled change
+ * only wins over the local pet if it is newer, compared by changed_at per pet, so the
+ * last writer wins whichever side synced first. Ties keep the local pet.
+ */
+class PetSyncStore {
+
+    static final String CHANGE_LOG_TABLE = "change_log";
+    static final String COLUMN_SEQ = "seq";
+    static final String COLUMN_PET_ID = "pet_id";
+    static final String COLUMN_SYNC_ID = "sync_id";
+    static final String COLUMN_CHANGED_AT = "changed_at";
+
+    static final String SYNC_STATE_TABLE = "sync_state";
+    static final String COLUMN_KEY = "key";
+    static final String COLUMN_VALUE = "value";
+
+    /** Present in sync_state while pulled changes are written, so they are not logged */
+    static final String KEY_APPLYING = "applying";
+
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    /** Called after pulled changes are committed */
+    interface Listener {
+        void onApplied();
+    }
+
+    private static final String SQL_READ_CHANGES = "SELECT l." + COLUMN_SEQ + ", l." + COLUMN_SYNC_ID
+            + ", l." + COLUMN_CHANGED_AT + ", p." + PetContract.PetEntry._ID + " IS NULL OR p."
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NOT NULL, p."
+            + PetContract.PetEntry.COLUMN_PET_NAME + ", b." + PetContract.PetEntry.COLUMN_PET_BREED + ", p."
+            + PetContract.PetEntry.COLUMN_PET_GENDER + ", p." + PetContract.PetEntry.COLUMN_PET_WEIGHT
+            + " FROM " + CHANGE_LOG_TABLE + " l LEFT JOIN " + PetContract.PetEntry.TABLE_NAME + " p ON p."
+            + PetContract.PetEntry._ID + "=l." + COLUMN_PET_ID + " LEFT JOIN " + PetContract.PetEntry.BREEDS_TABLE_NAME
+            + " b ON b." + PetContract.PetEntry.COLUMN_PET_BREED_ID + "=p." + PetContract.PetEntry.COLUMN_PET_BREED_ID
+            + " ORDER BY l." + COLUMN_SEQ + " LIMIT ?";
+
+    private static final String SQL_FIND_PET = "SELECT " + PetContract.PetEntry._ID + ", "
+            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + " FROM " + PetContract.PetEntry.TABLE_NAME
+            + " WHERE " + PetContract.PetEntry.COLUMN_PET_SYNC_ID + "=?";
+
+    private static final String SQL_INSERT = "INSERT INTO " + PetContract.PetEntry.TABLE_NAME + " ("
+            + PetContract.PetEntry.COLUMN_PET_NAME + ", "
+            + PetContract.PetEntry.COLUMN_PET_BREED_ID + ", "
+            + PetContract.PetEntry.COLUMN_PET_GENDER + ", "
+            + PetContract.PetEntry.COLUMN_PET_WEIGHT + ", "
+            + PetContract.PetEntry.COLUMN_PET_SYNC_ID + ", "
+            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + ") VALUES (?, " + PetStatements.BREED_ID_OF + ", ?, ?, ?, ?)";
+
+    private static final String SQL_UPDATE = "UPDATE " + PetContract.PetEntry.TABLE_NAME + " SET "
+            + PetContract.PetEntry.COLUMN_PET_NAME + "=?, "
+            + PetContract.PetEntry.COLUMN_PET_BREED_ID + "=" + PetStatements.BREED_ID_OF + ", "
+            + PetContract.PetEntry.COLUMN_PET_GENDER + "=?, "
+            + PetContract.PetEntry.COLUMN_PET_WEIGHT + "=?, "
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + "=NULL, "
+            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + "=? WHERE " + PetContract.PetEntry._ID + "=?";
+
+    private static final String SQL_DELETE = "UPDATE " + PetContract.PetEntry.TABLE_NAME + " SET "
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + "=COALESCE("
+            + PetContract.PetEntry.COLUMN_PET_DELETED_AT + ", ?1), "
+            + PetContract.PetEntry.COLUMN_PET_CHANGED_AT + "=?1 WHERE " + PetContract.PetEntry._ID + "=?2";
+
+    private final PetDbHelper mDbHelper;
+    private final Listener mListener;
+
+    PetSyncStore(PetDbHelper dbHelper, Listener listener) {
+        mDbHelper = dbHelper;
+        mListener = listener;
+    }
+
+    /**
+     * Id this device sends with its pushes, so the server can leave its own changes
+     * out of what it pulls. Created on first use.
+     */
+    synchronized String deviceId(){
+        String deviceId = getState(KEY_DEVICE_ID);
+        if(deviceId==null){
+            deviceId = UUID.randomUUID().toString();
+            putState(KEY_DEVICE_ID,deviceId);
+        }
+        return deviceId;
+    }
+
+    String getState(String key){
+        // MAX yields one row, holding null when the key is missing
+        return DatabaseUtils.stringForQuery(mDbHelper.getReadableDatabase(),"SELECT MAX(" + COLUMN_VALUE
+                + ") FROM " + SYNC_STATE_TABLE + " WHERE " + COLUMN_KEY + "=?",new String[]{ key });
+    }
+
+    void putState(String key, String value){
+        putState(mDbHelper.getWritableDatabase(),key,value);
+    }
+
+    private static void putState(SQLiteDatabase database, String key, String value){
+        database.execSQL("INSERT OR REPLACE INTO " + SYNC_STATE_TABLE + " (" + COLUMN_KEY + ", " + COLUMN_VALUE
+                + ") VALUES (?, ?)",new Object[]{ key, value });
+    }
+
+    /**
+     * The oldest limit entries of the change log, each with the pet's current values.
+     * A pet that is gone or deleted is sent as a delete.
+     */
+    List<PetChange> readChanges(int limit){
+        List<PetChange> changes = new ArrayList<>();
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery(SQL_READ_CHANGES,
+                new String[]{ String.valueOf(limit) });
+        try{
+            while(cursor.moveToNext()){
+                boolean deleted = cursor.getInt(3)!=0;
+                changes.add(new PetChange(cursor.getLong(0),cursor.getString(1),cursor.getLong(2),deleted,
+                        deleted ? null : cursor.getString(4),deleted ? null : cursor.getString(5),
+                        deleted ? 0 : cursor.getInt(6),deleted ? 0 : cursor.getInt(7)));
+            }
+        }finally {
+            cursor.close();
+        }
+        return changes;
+    }
+
+    /**
+     * Drops the log entries up to seq once the server has stored them. A pet changed
+     * again since was logged under a higher seq and stays.
+     */
+    void acknowledge(long seq){
+        mDbHelper.getWritableDatabase().delete(CHANGE_LOG_TABLE,COLUMN_SEQ + "<=?",
+                new String[]{ String.valueOf(seq) });
+    }
+
+    /**
+     * Writes the pulled changes that are newer than the local pets and saves position
+     * under positionKey, all in one transaction, so an interrupted pull resumes after
+     * the last batch it committed. Returns the number of pets changed.
+     */
+    int apply(List<PetChange> changes, String positionKey, String position){
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        SQLiteStatement insert = database.compileStatement(SQL_INSERT);
+        SQLiteStatement update = database.compileStatement(SQL_UPDATE);
+        SQLiteStatement delete = database.compileStatement(SQL_DELETE);
+        SQLiteStatement insertBreed = database.compileStatement(PetStatements.SQL_INSERT_BREED);
+        int applied = 0;
+        database.beginTransaction();
+        try{
+            putState(database,KEY_APPLYING,"1");
+            for(PetChange change : changes){
+                if(change.isValid() && apply(database,change,insert,update,delete,insertBreed)){
+                    applied++;
+                }
+            }
+            database.delete(SYNC_STATE_TABLE,COLUMN_KEY + "=?",new String[]{ KEY_APPLYING });
+            putState(database,positionKey,position);
+            database.setTransactionSuccessful();
+        }finally {
+            database.endTransaction();
+            insert.close();
+            update.close();
+            delete.close();
+            insertBreed.close();
+        }
+        if(applied!=0){
+            mListener.onApplied();
+        }
+        return applied;
+    }
+
+    private static boolean apply(SQLiteDatabase database, PetChange change, SQLiteStatement insert,
+                                 SQLiteStatement update, SQLiteStatement delete, SQLiteStatement insertBreed){
+        long id = -1;
+        long changedAt = 0;
+        Cursor cursor = database.rawQuery(SQL_FIND_PET,new String[]{ change.syncId });
+        try{
+            if(cursor.moveToFirst()){
+                id = cursor.getLong(0);
+                changedAt = cursor.getLong(1);
+            }
+        }finally {
+            cursor.close();
+        }
+
+        if(id==-1){
+            // Never seen here, or already purged
+            if(change.deleted){
+                return false;
+            }
+            insertBreed(insertBreed,change);
+            bindValues(insert,change);
+            insert.bindString(5,change.syncId);
+            insert.bindLong(6,change.changedAt);
+            insert.executeInsert();
+            return true;
+        }
+
+        if(change.changedAt<=changedAt){
+            return false;
+        }
+        if(change.deleted){
+            delete.bindLong(1,change.changedAt);
+            delete.bindLong(2,id);
+            delete.executeUpdateDelete();
+        }else{
+            insertBreed(insertBreed,change);
+            bindValues(update,change);
+            update.bindLong(5,change.changedAt);
+            update.bindLong(6,id);
+            update.executeUpdateDelete();
+        }
+        // The local change it replaces no longer needs pushing
+        database.delete(CHANGE_LOG_TABLE,COLUMN_PET_ID + "=?",new String[]{ String.valueOf(id) });
+        return true;
+    }
+
+    private static void insertBreed(SQLiteStatement insertBreed, PetChange change){
+        if(!TextUtils.isEmpty(change.breed)){
+            insertBreed.bindString(1,change.breed);
+            insertBreed.executeInsert();
+        }
+    }
+
+    private static void bindValues(SQLiteStatement statement, PetChange change){
+        statement.bindString(1,change.name);
+        if(TextUtils.isEmpty(change.breed)){
+            statement.bindNull(2);
+        }else{
+            statement.bindString(2,change.breed);
+        }
+        statement.bindLong(3,change.gender);
+        statement.bindLong(4,change.weight);
+    }
+}
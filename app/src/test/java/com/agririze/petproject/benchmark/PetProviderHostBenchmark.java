@@ -0,0 +1,340 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.util.JsonWriter;
+
+import com.agririze.petproject.PetSort;
+import com.agririze.petproject.data.Pet;
+import com.agririze.petproject.data.PetContract;
+import com.agririze.petproject.data.PetProvider;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The operations of the device-side PetProviderBenchmark, run on the JVM through
+ * Robolectric over the same {@link PetFixtures}, so CI can track them without a device.
+ * Robolectric's SQLite is not the device's, so compare these numbers with each other
+ * across commits, not with the device's.
+ *
+ * <p>Every operation is timed at each of {@link #SIZES} rows. The results are written
+ * in androidx.benchmark's JSON layout to PetProviderHostBenchmark.json in the directory
+ * named by the petproject.hostBenchmarkDir system property, which the build sets to
+ * app/build/outputs/host_benchmark.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetProviderHostBenchmark {
+
+    private static final int[] SIZES = { 1_000, 10_000 };
+
+    private static final int WARMUP = 10;
+
+    private static final int ITERATIONS = 50;
+
+    private static final int BULK_SIZE = 1_000;
+
+    private static final int PAGE_SIZE = 50;
+
+    /** One timed run of an operation */
+    private interface Operation {
+        /** Runs the operation once and returns its time in nanoseconds, without any cleanup */
+        long run();
+    }
+
+    private static final class Result {
+        final String name;
+        final int rows;
+        final long[] runs;
+
+        Result(String name, int rows, long[] runs) {
+            this.name = name;
+            this.rows = rows;
+            this.runs = runs;
+        }
+    }
+
+    private static final List<Result> sResults = new ArrayList<>();
+
+    private final Random mRandom = new Random(42);
+    private ContentResolver mResolver;
+    private long[] mIds;
+
+    @Before
+    public void setUp(){
+        Robolectric.setupContentProvider(PetProvider.class,PetContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.getApplication().getContentResolver();
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        File dir = new File(System.getProperty("petproject.hostBenchmarkDir","build/outputs/host_benchmark"));
+        if(!dir.isDirectory() && !dir.mkdirs()){
+            throw new IOException("Cannot create " + dir);
+        }
+        JsonWriter json = new JsonWriter(new FileWriter(new File(dir,"PetProviderHostBenchmark.json")));
+        try{
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("context").beginObject().name("runner").value("robolectric").endObject();
+            json.name("benchmarks").beginArray();
+            for(Result result : sResults){
+                long[] runs = result.runs.clone();
+                Arrays.sort(runs);
+                json.beginObject();
+                json.name("name").value(result.name);
+                json.name("className").value(PetProviderHostBenchmark.class.getName());
+                json.name("params").beginObject().name("rows").value(String.valueOf(result.rows)).endObject();
+                json.name("metrics").beginObject().name("timeNs").beginObject();
+                json.name("minimum").value(runs[0]);
+                json.name("maximum").value(runs[runs.length - 1]);
+                json.name("median").value(runs[runs.length / 2]);
+                json.name("runs").beginArray();
+                for(long run : result.runs){
+                    json.value(run);
+                }
+                json.endArray();
+                json.endObject().endObject();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }finally {
+            json.close();
+        }
+    }
+
+    @Test
+    public void insert(){
+        for(int rows : SIZES){
+            seed(rows);
+            measure("insert",rows,new Operation() {
+                @Override
+                public long run() {
+                    ContentValues values = PetFixtures.randomPet(mRandom);
+                    long start = System.nanoTime();
+                    Uri uri = mResolver.insert(PetContract.PetEntry.CONTENT_URI,values);
+                    long nanos = System.nanoTime() - start;
+                    mResolver.delete(uri,null,null);
+                    PetFixtures.purgeDeleted(mResolver);
+                    return nanos;
+                }
+            });
+        }
+    }
+
+    /**
+     * One thousand rows per run through the transactional bulkInsert path.
+     */
+    @Test
+    public void bulkInsert(){
+        final ContentValues[] batch = new ContentValues[BULK_SIZE];
+        for(int i = 0; i < batch.length; i++){
+            batch[i] = PetFixtures.randomPet(mRandom);
+        }
+        for(int rows : SIZES){
+            seed(rows);
+            final String[] lastId = { String.valueOf(mIds[mIds.length - 1]) };
+            measure("bulkInsert",rows,new Operation() {
+                @Override
+                public long run() {
+                    long start = System.nanoTime();
+                    mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,batch);
+                    long nanos = System.nanoTime() - start;
+                    mResolver.delete(PetContract.PetEntry.CONTENT_URI,PetContract.PetEntry._ID + ">?",lastId);
+                    PetFixtures.purgeDeleted(mResolver);
+                    return nanos;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void update(){
+        for(int rows : SIZES){
+            seed(rows);
+            measure("update",rows,new Operation() {
+                @Override
+                public long run() {
+                    Uri uri = randomPetUri();
+                    ContentValues values = PetFixtures.randomPet(mRandom);
+                    long start = System.nanoTime();
+                    mResolver.update(uri,values,null,null);
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void delete(){
+        for(int rows : SIZES){
+            seed(rows);
+            measure("delete",rows,new Operation() {
+                @Override
+                public long run() {
+                    int index = mRandom.nextInt(mIds.length);
+                    Uri uri = ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,mIds[index]);
+                    long start = System.nanoTime();
+                    mResolver.delete(uri,null,null);
+                    long nanos = System.nanoTime() - start;
+                    mIds[index] = ContentUris.parseId(mResolver.insert(PetContract.PetEntry.CONTENT_URI,
+                            PetFixtures.randomPet(mRandom)));
+                    PetFixtures.purgeDeleted(mResolver);
+                    return nanos;
+                }
+            });
+        }
+    }
+
+    /**
+     * The same pet over and over, so every query after the first is a row cache hit.
+     */
+    @Test
+    public void pointQueryWarm(){
+        for(int rows : SIZES){
+            seed(rows);
+            final Uri uri = randomPetUri();
+            measure("pointQueryWarm",rows,new Operation() {
+                @Override
+                public long run() {
+                    long start = System.nanoTime();
+                    PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,null,null,null));
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    /**
+     * Random pets with a selection, which bypasses the row cache and always reads SQLite.
+     */
+    @Test
+    public void pointQueryCold(){
+        for(int rows : SIZES){
+            seed(rows);
+            measure("pointQueryCold",rows,new Operation() {
+                @Override
+                public long run() {
+                    Uri uri = randomPetUri();
+                    long start = System.nanoTime();
+                    PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,"1",null,null));
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void fullScan(){
+        for(int rows : SIZES){
+            seed(rows);
+            measure("fullScan",rows,new Operation() {
+                @Override
+                public long run() {
+                    long start = System.nanoTime();
+                    PetFixtures.drain(mResolver.query(PetContract.PetEntry.CONTENT_URI,Pet.PROJECTION,null,null,null));
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    /**
+     * The catalog's "female pets by weight" page, served by the (gender, weight) index.
+     */
+    @Test
+    public void filteredQuery(){
+        final Uri uri = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .build();
+        final String[] selectionArgs = { String.valueOf(PetContract.PetEntry.GENDER_FEMALE) };
+        for(int rows : SIZES){
+            seed(rows);
+            measure("filteredQuery",rows,new Operation() {
+                @Override
+                public long run() {
+                    long start = System.nanoTime();
+                    PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,PetContract.PetEntry.COLUMN_PET_GENDER + "=?",
+                            selectionArgs,PetSort.WEIGHT.orderBy()));
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    /**
+     * A page from the middle of the table, read by _id keyset.
+     */
+    @Test
+    public void keysetPage(){
+        for(int rows : SIZES){
+            seed(rows);
+            final Uri uri = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                    .appendQueryParameter(PetContract.QUERY_PARAMETER_AFTER_ID,String.valueOf(mIds[mIds.length / 2]))
+                    .build();
+            measure("keysetPage",rows,new Operation() {
+                @Override
+                public long run() {
+                    long start = System.nanoTime();
+                    PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,null,null,null));
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void searchPrefix(){
+        final Uri uri = PetContract.PetEntry.buildSearchUri("ter").buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .build();
+        for(int rows : SIZES){
+            seed(rows);
+            measure("searchPrefix",rows,new Operation() {
+                @Override
+                public long run() {
+                    long start = System.nanoTime();
+                    PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,null,null,null));
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    private void seed(int rows){
+        PetFixtures.populateIfNeeded(mResolver,rows,mRandom);
+        mIds = PetFixtures.queryIds(mResolver);
+    }
+
+    private static void measure(String name, int rows, Operation operation){
+        for(int i = 0; i < WARMUP; i++){
+            operation.run();
+        }
+        long[] runs = new long[ITERATIONS];
+        for(int i = 0; i < runs.length; i++){
+            runs[i] = operation.run();
+        }
+        sResults.add(new Result(name,rows,runs));
+    }
+
+    private Uri randomPetUri(){
+        return ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,mIds[mRandom.nextInt(mIds.length)]);
+    }
+}
@@ -0,0 +1,82 @@
+package com.agririze.petproject.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks {@link CsvReader} against the RFC 4180 cases spreadsheets write.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void quotedFields_holdCommasAndLineBreaks() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("name","breed"),
+                Arrays.asList("Toto","Terrier, Cairn"),
+                Arrays.asList("Bella","Line one\nline two")),
+                read("name,breed\nToto,\"Terrier, Cairn\"\nBella,\"Line one\nline two\"\n"));
+    }
+
+    @Test
+    public void doubledQuotes_areOneQuote() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("Max \"the dog\"","")),read("\"Max \"\"the dog\"\"\",\"\""));
+    }
+
+    @Test
+    public void crlf_endsRecords() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("name","weight"),
+                Arrays.asList("Toto","7"),
+                Arrays.asList("Luna","\r\n")),
+                read("name,weight\r\nToto,7\r\nLuna,\"\r\n\"\r\n"));
+    }
+
+    @Test
+    public void byteOrderMark_isSkippedAtStartOnly() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("name","breed"),Arrays.asList("\uFEFFToto","")),
+                read("\uFEFFname,breed\n\uFEFFToto,\n"));
+    }
+
+    @Test
+    public void lastRecord_withoutLineBreak() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("a","b"),Arrays.asList("c","")),read("a,b\nc,"));
+    }
+
+    @Test
+    public void unterminatedQuote_fails(){
+        try{
+            read("name\n\"Toto\n");
+            fail("Read an unterminated quoted field");
+        }catch (IOException expected){
+        }
+    }
+
+    @Test
+    public void emptyInput_hasNoRecords() throws IOException {
+        assertNull(new CsvReader(new StringReader("")).readRecord());
+        assertNull(new CsvReader(new StringReader("\uFEFF")).readRecord());
+    }
+
+    private static List<List<String>> read(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        CsvReader reader = new CsvReader(new StringReader(csv));
+        try{
+            List<String> record;
+            while((record = reader.readRecord())!=null){
+                records.add(record);
+            }
+        }finally {
+            reader.close();
+        }
+        return records;
+    }
+}
@@ -0,0 +1,110 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Imports CSV documents into PetProvider on the JVM, through Robolectric: a document
+ * saved with a byte order mark, and one whose import is interrupted and then resumed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetImporterTest {
+
+    private static final Uri SOURCE = Uri.parse("content://com.agririze.petproject.test/pets.csv");
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp(){
+        Robolectric.setupContentProvider(PetProvider.class,PetContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.getApplication().getContentResolver();
+    }
+
+    @Test
+    public void importPets_skipsByteOrderMark() throws IOException {
+        provide("\uFEFFname,breed,gender,weight\r\nToto,Terrier,male,7\r\nBella,,female,4\r\n");
+        PetImporter.Result result = new PetImporter(mResolver).importPets(SOURCE,null);
+        assertEquals(2,result.imported);
+        assertEquals(2,countPets());
+    }
+
+    /**
+     * An import stopped after its first chunk has that chunk's position committed with
+     * it, and importing the document again reads on from there.
+     */
+    @Test
+    public void importPets_resumesAfterLastCommittedChunk() throws IOException {
+        final int rows = PetImporter.CHUNK_SIZE * 2 + 10;
+        final String csv = document(rows);
+        provide(csv);
+        try{
+            new PetImporter(mResolver).importPets(SOURCE,new PetImporter.ProgressListener() {
+                @Override
+                public void onProgress(long imported, long rejected) {
+                    assertEquals(countPets(),position());
+                    // Stops the import before its next chunk, as cancelling the transfer does
+                    Thread.currentThread().interrupt();
+                }
+            });
+            fail("Import not interrupted");
+        }catch (InterruptedIOException expected){
+        }
+        assertEquals(PetImporter.CHUNK_SIZE,countPets());
+        assertEquals(PetImporter.CHUNK_SIZE,position());
+
+        provide(csv);
+        PetImporter.Result result = new PetImporter(mResolver).importPets(SOURCE,null);
+        assertEquals(PetImporter.CHUNK_SIZE,result.resumedFrom);
+        assertEquals(rows - PetImporter.CHUNK_SIZE,result.imported);
+        assertEquals(0,result.duplicates);
+        assertEquals(rows,countPets());
+        assertEquals(0,position());
+    }
+
+    private void provide(String csv){
+        shadowOf(mResolver).registerInputStream(SOURCE,new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** A CSV document of rows distinct pets */
+    private static String document(int rows){
+        StringBuilder csv = new StringBuilder("name,breed,gender,weight\n");
+        for(int i = 0; i < rows; i++){
+            csv.append("Pet ").append(i).append(",Terrier,").append(i % 3).append(',').append(1 + i % 60).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private long position(){
+        Bundle result = mResolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_GET_IMPORT_POSITION,
+                SOURCE.toString(),null);
+        return result.getLong(PetContract.EXTRA_POSITION);
+    }
+
+    private int countPets(){
+        Cursor cursor = mResolver.query(PetContract.PetEntry.CONTENT_URI,new String[]{ PetContract.PetEntry._ID },
+                null,null,null);
+        try{
+            return cursor.getCount();
+        }finally {
+            cursor.close();
+        }
+    }
+}
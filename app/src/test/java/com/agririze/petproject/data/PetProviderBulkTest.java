@@ -0,0 +1,165 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Runs PetProvider's bulkInsert and applyBatch on the JVM, through Robolectric: an
+ * invalid row rolls back the whole call, each call notifies observers once, and
+ * bulkInsert and applyBatch insert more rows per second than one insert per row.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetProviderBulkTest {
+
+    private static final int ROWS = 1_000;
+
+    private ContentResolver mResolver;
+    private ShadowContentResolver mShadowResolver;
+    private final Random mRandom = new Random(42);
+
+    @Before
+    public void setUp(){
+        Robolectric.setupContentProvider(PetProvider.class,PetContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.getApplication().getContentResolver();
+        mShadowResolver = shadowOf(mResolver);
+    }
+
+    @Test
+    public void bulkInsert_invalidRowRollsBackAll(){
+        ContentValues invalid = pet(mRandom);
+        invalid.remove(PetContract.PetEntry.COLUMN_PET_NAME);
+        try{
+            mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,new ContentValues[]{ pet(mRandom), pet(mRandom), invalid });
+            fail("Inserted a pet without a name");
+        }catch (IllegalArgumentException expected){
+        }
+        assertEquals(0,countPets());
+        assertEquals(0,mShadowResolver.getNotifiedUris().size());
+    }
+
+    @Test
+    public void bulkInsert_notifiesOnce(){
+        assertEquals(ROWS,mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,pets(ROWS)));
+        assertEquals(ROWS,countPets());
+        assertEquals(1,mShadowResolver.getNotifiedUris().size());
+    }
+
+    @Test
+    public void applyBatch_invalidOperationRollsBackAll() throws Exception {
+        ContentValues invalid = pet(mRandom);
+        invalid.remove(PetContract.PetEntry.COLUMN_PET_GENDER);
+        ArrayList<ContentProviderOperation> operations = inserts(pets(2));
+        operations.add(ContentProviderOperation.newInsert(PetContract.PetEntry.CONTENT_URI).withValues(invalid).build());
+        try{
+            mResolver.applyBatch(PetContract.CONTENT_AUTHORITY,operations);
+            fail("Inserted a pet without a gender");
+        }catch (IllegalArgumentException expected){
+        }
+        assertEquals(0,countPets());
+        assertEquals(0,mShadowResolver.getNotifiedUris().size());
+    }
+
+    @Test
+    public void applyBatch_notifiesOnce() throws Exception {
+        Uri existing = mResolver.insert(PetContract.PetEntry.CONTENT_URI,pet(mRandom));
+        int notified = mShadowResolver.getNotifiedUris().size();
+
+        ArrayList<ContentProviderOperation> operations = inserts(pets(ROWS));
+        operations.add(ContentProviderOperation.newUpdate(existing).withValues(pet(mRandom)).build());
+        operations.add(ContentProviderOperation.newDelete(existing).build());
+        assertEquals(ROWS + 2,mResolver.applyBatch(PetContract.CONTENT_AUTHORITY,operations).length);
+
+        assertEquals(ROWS,countPets());
+        assertEquals(notified + 1,mShadowResolver.getNotifiedUris().size());
+        assertEquals(PetContract.PetEntry.CONTENT_URI,mShadowResolver.getNotifiedUris().get(notified).uri);
+    }
+
+    /**
+     * Inserts {@link #ROWS} pets one insert at a time, then through bulkInsert and
+     * applyBatch, and prints each path's rows per second.
+     */
+    @Test
+    public void rowsPerSecond_batchedPathsBeatPerRowInserts() throws Exception {
+        ContentValues[] rows = pets(ROWS);
+        long start = System.nanoTime();
+        for(ContentValues row : rows){
+            mResolver.insert(PetContract.PetEntry.CONTENT_URI,row);
+        }
+        double perRow = rowsPerSecond(start);
+
+        rows = pets(ROWS);
+        start = System.nanoTime();
+        mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,rows);
+        double bulkInsert = rowsPerSecond(start);
+
+        ArrayList<ContentProviderOperation> operations = inserts(pets(ROWS));
+        start = System.nanoTime();
+        mResolver.applyBatch(PetContract.CONTENT_AUTHORITY,operations);
+        double applyBatch = rowsPerSecond(start);
+
+        System.out.println("Rows/sec at " + ROWS + " pets: insert " + Math.round(perRow)
+                + ", bulkInsert " + Math.round(bulkInsert) + ", applyBatch " + Math.round(applyBatch));
+        assertEquals(3 * ROWS,countPets());
+        assertTrue("bulkInsert " + bulkInsert + " rows/sec, insert " + perRow,bulkInsert > perRow);
+        assertTrue("applyBatch " + applyBatch + " rows/sec, insert " + perRow,applyBatch > perRow);
+    }
+
+    private static double rowsPerSecond(long start){
+        return ROWS * 1e9 / (System.nanoTime() - start);
+    }
+
+    private int countPets(){
+        Cursor cursor = mResolver.query(PetContract.PetEntry.CONTENT_URI,new String[]{ PetContract.PetEntry._ID },
+                null,null,null);
+        try{
+            return cursor.getCount();
+        }finally {
+            cursor.close();
+        }
+    }
+
+    private static ArrayList<ContentProviderOperation> inserts(ContentValues[] rows){
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for(ContentValues row : rows){
+            operations.add(ContentProviderOperation.newInsert(PetContract.PetEntry.CONTENT_URI).withValues(row).build());
+        }
+        return operations;
+    }
+
+    private ContentValues[] pets(int count){
+        ContentValues[] rows = new ContentValues[count];
+        for(int i = 0; i < count; i++){
+            rows[i] = pet(mRandom);
+        }
+        return rows;
+    }
+
+    private static ContentValues pet(Random random){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,"Pet " + random.nextInt(100_000));
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,random.nextBoolean() ? "Terrier" : null);
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,random.nextInt(3));
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,1 + random.nextInt(60));
+        values.putNull(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        return values;
+    }
+}
@@ -0,0 +1,119 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+
+import com.agririze.petproject.data.PetContract;
+
+import java.util.Random;
+
+/**
+ * Seeds the app's pets table through PetProvider. This wipes whatever the benchmark
+ * build of the app had stored.
+ */
+final class PetFixtures {
+
+    private static final String[] NAMES = {
+            "Toto", "Bella", "Max", "Luna", "Charlie", "Lucy", "Cooper", "Daisy", "Milo", "Molly"
+    };
+
+    private static final String[] BREEDS = {
+            "Terrier", "Labrador Retriever", "Beagle", "Poodle", "Siamese", "Persian", "Boxer", "Tabby", null
+    };
+
+    private static final int CHUNK_SIZE = 5_000;
+
+    private PetFixtures() {}
+
+    static ContentValues randomPet(Random random){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(10_000));
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,BREEDS[random.nextInt(BREEDS.length)]);
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,random.nextInt(3));
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,1 + random.nextInt(60));
+        return values;
+    }
+
+    static void populate(ContentResolver resolver, int rows, Random random){
+        resolver.delete(PetContract.PetEntry.CONTENT_URI,null,null);
+        purgeDeleted(resolver);
+        for(int inserted = 0; inserted < rows; inserted += CHUNK_SIZE){
+            ContentValues[] chunk = new ContentValues[Math.min(CHUNK_SIZE,rows - inserted)];
+            for(int i = 0; i < chunk.length; i++){
+                chunk[i] = randomPet(random);
+            }
+            resolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,chunk);
+        }
+    }
+
+    /**
+     * Like {@link #populate}, but keeps the table if it already has exactly rows live
+     * pets, so a parameterized benchmark seeds each size once rather than before every
+     * method.
+     */
+    static void populateIfNeeded(ContentResolver resolver, int rows, Random random){
+        if(countPets(resolver)!=rows){
+            populate(resolver,rows,random);
+        }
+    }
+
+    /**
+     * Counts the live pets from the gender stats, without reading the table.
+     */
+    static long countPets(ContentResolver resolver){
+        Cursor cursor = resolver.query(PetContract.StatsEntry.buildStatsUri(PetContract.StatsEntry.KIND_GENDER),
+                new String[]{ PetContract.StatsEntry.COLUMN_TOTAL },null,null,null);
+        try{
+            long pets = 0;
+            while(cursor.moveToNext()){
+                pets += cursor.getLong(0);
+            }
+            return pets;
+        }finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Removes every deleted pet right away instead of waiting for the purge job.
+     */
+    static void purgeDeleted(ContentResolver resolver){
+        Bundle result;
+        do{
+            result = resolver.call(PetContract.BASE_CONTENT_URI,PetContract.METHOD_PURGE,
+                    String.valueOf(Long.MAX_VALUE),null);
+        }while(result.getInt(PetContract.EXTRA_ROWS)>0);
+    }
+
+    static long[] queryIds(ContentResolver resolver){
+        Cursor cursor = resolver.query(PetContract.PetEntry.CONTENT_URI,
+                new String[]{ PetContract.PetEntry._ID },null,null,PetContract.PetEntry._ID + " ASC");
+        try{
+            long[] ids = new long[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++){
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        }finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads every row of the cursor so the whole result is actually produced, then closes it.
+     */
+    static int drain(Cursor cursor){
+        int rows = 0;
+        try{
+            while(cursor.moveToNext()){
+                cursor.getLong(0);
+                rows++;
+            }
+        }finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}
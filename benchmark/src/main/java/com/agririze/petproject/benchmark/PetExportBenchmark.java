@@ -0,0 +1,141 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.data.PetExporter;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exports a one million row table and reports throughput, then exports it again to
+ * report how far memory grew. A single run takes seconds, so this times one pass rather
+ * than using BenchmarkRule.
+ *
+ * <p>The second pass samples every {@link #SAMPLE_EVERY_PAGES} pages: the live Java heap
+ * after a collection, so garbage not yet collected is not counted, the native heap
+ * allocated, where cursor windows live, and the process's PSS. Progress is reported
+ * between pages, once a page's cursor is closed, so the samples show memory kept across
+ * pages rather than the one window being read.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetExportBenchmark {
+
+    private static final String TAG = "PetExportBenchmark";
+
+    private static final int ROWS = 1_000_000;
+
+    /** Heap growth allowed for an export whose memory use does not depend on the table size */
+    private static final long MAX_HEAP_GROWTH_BYTES = 8 * 1024 * 1024;
+
+    /** Pages between memory samples, each of which waits for a collection */
+    private static final int SAMPLE_EVERY_PAGES = 10;
+
+    /** Memory in use at one moment */
+    private static final class Memory {
+        final long javaHeap;
+        final long nativeHeap;
+        final long pss;
+
+        Memory(long javaHeap, long nativeHeap, long pss) {
+            this.javaHeap = javaHeap;
+            this.nativeHeap = nativeHeap;
+            this.pss = pss;
+        }
+
+        static Memory sample(){
+            Runtime runtime = Runtime.getRuntime();
+            runtime.gc();
+            System.runFinalization();
+            runtime.gc();
+            return new Memory(runtime.totalMemory() - runtime.freeMemory(),Debug.getNativeHeapAllocatedSize(),
+                    Debug.getPss() * 1024);
+        }
+
+        Memory max(Memory other){
+            return new Memory(Math.max(javaHeap,other.javaHeap),Math.max(nativeHeap,other.nativeHeap),
+                    Math.max(pss,other.pss));
+        }
+    }
+
+    private File mFile;
+
+    @BeforeClass
+    public static void populate(){
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PetFixtures.populate(context.getContentResolver(),ROWS,new Random(42));
+    }
+
+    @After
+    public void tearDown(){
+        if(mFile!=null){
+            mFile.delete();
+        }
+    }
+
+    @Test
+    public void exportCsv() throws IOException {
+        export(PetExporter.Format.CSV);
+    }
+
+    @Test
+    public void exportJson() throws IOException {
+        export(PetExporter.Format.JSON);
+    }
+
+    private void export(PetExporter.Format format) throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mFile = new File(context.getCacheDir(),"pets-export." + format.name().toLowerCase());
+
+        PetExporter exporter = new PetExporter(context.getContentResolver());
+
+        long start = SystemClock.elapsedRealtime();
+        long exported = exporter.exportPets(Uri.fromFile(mFile),format,null);
+        long elapsed = Math.max(1,SystemClock.elapsedRealtime() - start);
+        long bytes = mFile.length();
+
+        final Memory baseline = Memory.sample();
+        final Memory[] peak = { baseline };
+        exporter.exportPets(Uri.fromFile(mFile),format,new PetExporter.ProgressListener() {
+            @Override
+            public void onProgress(long exported) {
+                if(exported % (SAMPLE_EVERY_PAGES * PetExporter.CHUNK_SIZE)==0){
+                    peak[0] = peak[0].max(Memory.sample());
+                }
+            }
+        });
+        peak[0] = peak[0].max(Memory.sample());
+
+        long heapGrowth = peak[0].javaHeap - baseline.javaHeap;
+        Bundle results = new Bundle();
+        results.putLong(format + "_rows",exported);
+        results.putLong(format + "_millis",elapsed);
+        results.putLong(format + "_rows_per_second",exported * 1000 / elapsed);
+        results.putLong(format + "_bytes",bytes);
+        results.putLong(format + "_peak_heap_growth_bytes",heapGrowth);
+        results.putLong(format + "_peak_native_heap_growth_bytes",peak[0].nativeHeap - baseline.nativeHeap);
+        results.putLong(format + "_peak_pss_growth_bytes",peak[0].pss - baseline.pss);
+        Log.i(TAG,results.toString());
+        InstrumentationRegistry.getInstrumentation().sendStatus(0,results);
+
+        assertEquals(ROWS,exported);
+        assertTrue("Heap grew by " + heapGrowth + " bytes",heapGrowth<MAX_HEAP_GROWTH_BYTES);
+    }
+}
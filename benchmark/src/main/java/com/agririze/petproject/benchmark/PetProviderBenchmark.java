@@ -0,0 +1,232 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.PetSort;
+import com.agririze.petproject.data.Pet;
+import com.agririze.petproject.data.PetContract;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Throughput of PetProvider's operations at several table sizes. Each size is seeded
+ * once and reused by every method, which all leave the number of pets as they found it.
+ * Results are written by androidx.benchmark as JSON next to the connected test results.
+ */
+@RunWith(Parameterized.class)
+public class PetProviderBenchmark {
+
+    private static final int BULK_SIZE = 1_000;
+
+    private static final int PAGE_SIZE = 50;
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static Collection<Object[]> sizes(){
+        return Arrays.asList(new Object[][]{ { 1_000 }, { 10_000 }, { 100_000 }, { 1_000_000 } });
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mRows;
+    private final Random mRandom = new Random(42);
+    private ContentResolver mResolver;
+    private long[] mIds;
+
+    public PetProviderBenchmark(int rows) {
+        mRows = rows;
+    }
+
+    @Before
+    public void setUp(){
+        mResolver = InstrumentationRegistry.getInstrumentation().getTargetContext().getContentResolver();
+        PetFixtures.populateIfNeeded(mResolver,mRows,mRandom);
+        mIds = PetFixtures.queryIds(mResolver);
+    }
+
+    @Test
+    public void insert(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            Uri uri = mResolver.insert(PetContract.PetEntry.CONTENT_URI,PetFixtures.randomPet(mRandom));
+            state.pauseTiming();
+            mResolver.delete(uri,null,null);
+            PetFixtures.purgeDeleted(mResolver);
+            state.resumeTiming();
+        }
+    }
+
+    /**
+     * One thousand rows per iteration through the transactional bulkInsert path.
+     */
+    @Test
+    public void bulkInsert(){
+        ContentValues[] batch = new ContentValues[BULK_SIZE];
+        for(int i = 0; i < batch.length; i++){
+            batch[i] = PetFixtures.randomPet(mRandom);
+        }
+        String lastId = String.valueOf(mIds[mIds.length - 1]);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            mResolver.bulkInsert(PetContract.PetEntry.CONTENT_URI,batch);
+            state.pauseTiming();
+            mResolver.delete(PetContract.PetEntry.CONTENT_URI,PetContract.PetEntry._ID + ">?",new String[]{ lastId });
+            PetFixtures.purgeDeleted(mResolver);
+            state.resumeTiming();
+        }
+    }
+
+    /**
+     * {@link #bulkInsert} checking every row for a duplicate first. The rows are new
+     * every iteration, since deleted pets stay in the duplicates filter, so this is the
+     * filter's cost on top of the inserts.
+     */
+    @Test
+    public void bulkInsertRejectingDuplicates(){
+        ContentValues[] batch = new ContentValues[BULK_SIZE];
+        Uri uri = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_DUPLICATES,PetContract.DUPLICATES_REJECT)
+                .build();
+        String lastId = String.valueOf(mIds[mIds.length - 1]);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            for(int i = 0; i < batch.length; i++){
+                batch[i] = PetFixtures.randomPet(mRandom);
+            }
+            state.resumeTiming();
+            mResolver.bulkInsert(uri,batch);
+            state.pauseTiming();
+            mResolver.delete(PetContract.PetEntry.CONTENT_URI,PetContract.PetEntry._ID + ">?",new String[]{ lastId });
+            PetFixtures.purgeDeleted(mResolver);
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void update(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            Uri uri = randomPetUri();
+            ContentValues values = PetFixtures.randomPet(mRandom);
+            state.resumeTiming();
+            mResolver.update(uri,values,null,null);
+        }
+    }
+
+    @Test
+    public void delete(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            int index = mRandom.nextInt(mIds.length);
+            Uri uri = ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,mIds[index]);
+            state.resumeTiming();
+
+            mResolver.delete(uri,null,null);
+
+            state.pauseTiming();
+            mIds[index] = ContentUris.parseId(mResolver.insert(PetContract.PetEntry.CONTENT_URI,PetFixtures.randomPet(mRandom)));
+            PetFixtures.purgeDeleted(mResolver);
+            state.resumeTiming();
+        }
+    }
+
+    /**
+     * The same pet over and over, so every query after the first is a row cache hit.
+     */
+    @Test
+    public void pointQueryWarm(){
+        Uri uri = randomPetUri();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,null,null,null));
+        }
+    }
+
+    /**
+     * Random pets with a selection, which bypasses the row cache and always reads SQLite.
+     */
+    @Test
+    public void pointQueryCold(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            Uri uri = randomPetUri();
+            state.resumeTiming();
+            PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,"1",null,null));
+        }
+    }
+
+    @Test
+    public void fullScan(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(PetContract.PetEntry.CONTENT_URI,Pet.PROJECTION,null,null,null));
+        }
+    }
+
+    /**
+     * The catalog's "female pets by weight" page, served by the (gender, weight) index.
+     */
+    @Test
+    public void filteredQuery(){
+        Uri uri = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .build();
+        String[] selectionArgs = { String.valueOf(PetContract.PetEntry.GENDER_FEMALE) };
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,PetContract.PetEntry.COLUMN_PET_GENDER + "=?",
+                    selectionArgs,PetSort.WEIGHT.orderBy()));
+        }
+    }
+
+    /**
+     * A page from the middle of the table, read by _id keyset.
+     */
+    @Test
+    public void keysetPage(){
+        Uri uri = PetContract.PetEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_AFTER_ID,String.valueOf(mIds[mIds.length / 2]))
+                .build();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,null,null,null));
+        }
+    }
+
+    @Test
+    public void searchPrefix(){
+        Uri uri = PetContract.PetEntry.buildSearchUri("ter").buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .build();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(uri,Pet.PROJECTION,null,null,null));
+        }
+    }
+
+    private Uri randomPetUri(){
+        return ContentUris.withAppendedId(PetContract.PetEntry.CONTENT_URI,mIds[mRandom.nextInt(mIds.length)]);
+    }
+}
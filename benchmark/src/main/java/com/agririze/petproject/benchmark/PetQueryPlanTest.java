@@ -0,0 +1,101 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.PetSort;
+import com.agririze.petproject.data.PetContract;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the catalog's queries are served by indexes
+ * rather than table scans, so the benchmark numbers stay meaningful as the schema changes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetQueryPlanTest {
+
+    /** The provider reads pets joined with their breeds */
+    private static final String SELECT_PETS = "SELECT * FROM " + PetContract.PetEntry.TABLE_NAME + " LEFT JOIN "
+            + PetContract.PetEntry.BREEDS_TABLE_NAME + " USING (" + PetContract.PetEntry.COLUMN_PET_BREED_ID + ")";
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp(){
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // Let the provider create or upgrade the database before opening it directly
+        PetFixtures.drain(context.getContentResolver().query(PetContract.PetEntry.CONTENT_URI,
+                new String[]{ PetContract.PetEntry._ID },"0",null,null));
+        mDatabase = SQLiteDatabase.openDatabase(context.getDatabasePath("shelter.db").getPath(),
+                null,SQLiteDatabase.OPEN_READONLY);
+    }
+
+    @After
+    public void tearDown(){
+        mDatabase.close();
+    }
+
+    @Test
+    public void sortByName_usesNameIndex(){
+        assertPlanContains(SELECT_PETS + " ORDER BY " + PetSort.NAME.orderBy() + " LIMIT 50",
+                PetContract.PetEntry.INDEX_NAME);
+    }
+
+    /**
+     * A page after the first, whose keyset range on the breed lets the pets be read
+     * breed by breed through the breed index instead of sorting them all.
+     */
+    @Test
+    public void sortByBreed_nextPageUsesBreedIndex(){
+        String breed = PetContract.PetEntry.COLUMN_PET_BREED;
+        assertPlanContains(SELECT_PETS + " WHERE " + breed + ">='Beagle' AND (" + breed + ">'Beagle' OR "
+                + PetContract.PetEntry._ID + ">0) ORDER BY " + PetSort.BREED.orderBy() + " LIMIT 50",
+                PetContract.PetEntry.INDEX_BREED);
+    }
+
+    @Test
+    public void genderByWeight_usesGenderWeightIndex(){
+        assertPlanContains(SELECT_PETS + " WHERE " + PetContract.PetEntry.COLUMN_PET_GENDER + "=1 ORDER BY "
+                + PetSort.WEIGHT.orderBy() + " LIMIT 50", PetContract.PetEntry.INDEX_GENDER_WEIGHT);
+    }
+
+    /**
+     * The weight sort over all genders, as the catalog reads its first page.
+     */
+    @Test
+    public void sortByWeight_usesWeightIndex(){
+        assertPlanContains(SELECT_PETS + " WHERE " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL ORDER BY "
+                + PetSort.WEIGHT.orderBy() + " LIMIT 50", PetContract.PetEntry.INDEX_WEIGHT);
+    }
+
+    @Test
+    public void search_usesFullTextIndex(){
+        assertPlanContains(SELECT_PETS + " WHERE " + PetContract.PetEntry._ID + " IN (SELECT docid FROM "
+                + PetContract.PetEntry.SEARCH_TABLE_NAME + " WHERE " + PetContract.PetEntry.SEARCH_TABLE_NAME
+                + " MATCH 'ter*')", PetContract.PetEntry.SEARCH_TABLE_NAME);
+    }
+
+    private void assertPlanContains(String sql, String expected){
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + sql,null);
+        try{
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while(cursor.moveToNext()){
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }finally {
+            cursor.close();
+        }
+        assertTrue("Expected " + expected + " in plan:\n" + plan, plan.indexOf(expected)>=0);
+    }
+}
@@ -0,0 +1,132 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.PetSort;
+import com.agririze.petproject.data.Pet;
+import com.agririze.petproject.data.PetContract;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Query latency of one shelter's pets as the number of shelters on the device grows,
+ * and of the fan-out query over all of them. Beyond eight shelters not all of them
+ * stay open, so cycling through every shelter also pays for reopening databases.
+ */
+@RunWith(Parameterized.class)
+public class PetShelterBenchmark {
+
+    private static final int ROWS_PER_SHELTER = 5_000;
+
+    private static final int PAGE_SIZE = 50;
+
+    @Parameterized.Parameters(name = "shelters={0}")
+    public static Collection<Object[]> counts(){
+        return Arrays.asList(new Object[][]{ { 1 }, { 4 }, { 16 } });
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mShelters;
+    private final Random mRandom = new Random(42);
+    private ContentResolver mResolver;
+    private Uri[] mPageUris;
+
+    public PetShelterBenchmark(int shelters) {
+        mShelters = shelters;
+    }
+
+    @Before
+    public void setUp(){
+        mResolver = InstrumentationRegistry.getInstrumentation().getTargetContext().getContentResolver();
+        mPageUris = new Uri[mShelters];
+        for(int shelter = 1; shelter <= mShelters; shelter++){
+            Uri uri = PetContract.ShelterEntry.buildPetsUri(shelter);
+            topUp(uri);
+            mPageUris[shelter - 1] = uri.buildUpon()
+                    .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                    .build();
+        }
+    }
+
+    /**
+     * Inserts pets until the shelter has {@link #ROWS_PER_SHELTER}. Earlier runs' pets
+     * are kept, since other shelters' deleted pets are never purged.
+     */
+    private void topUp(Uri uri){
+        Cursor cursor = mResolver.query(uri,new String[]{ PetContract.PetEntry._ID },null,null,null);
+        int missing = ROWS_PER_SHELTER - PetFixtures.drain(cursor);
+        if(missing>0){
+            ContentValues[] pets = new ContentValues[missing];
+            for(int i = 0; i < pets.length; i++){
+                pets[i] = PetFixtures.randomPet(mRandom);
+            }
+            mResolver.bulkInsert(uri,pets);
+        }
+    }
+
+    /**
+     * A page of the same shelter every time, whose database stays open.
+     */
+    @Test
+    public void shelterPageWarm(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(mPageUris[0],Pet.PROJECTION,null,null,PetSort.NAME.orderBy()));
+        }
+    }
+
+    /**
+     * A page of each shelter in turn, as several shelters' screens would read them.
+     */
+    @Test
+    public void shelterPageRoundRobin(){
+        int next = 0;
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(mPageUris[next],Pet.PROJECTION,null,null,PetSort.NAME.orderBy()));
+            next = (next + 1) % mPageUris.length;
+        }
+    }
+
+    /**
+     * A page of every shelter at once through the parallel fan-out.
+     */
+    @Test
+    public void allSheltersPage(){
+        StringBuilder shelters = new StringBuilder();
+        for(int shelter = 1; shelter <= mShelters; shelter++){
+            if(shelters.length()>0){
+                shelters.append(',');
+            }
+            shelters.append(shelter);
+        }
+        Uri uri = PetContract.ShelterEntry.ALL_PETS_URI.buildUpon()
+                .appendQueryParameter(PetContract.ShelterEntry.QUERY_PARAMETER_SHELTERS,shelters.toString())
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIMIT,String.valueOf(PAGE_SIZE))
+                .build();
+        String[] projection = Arrays.copyOf(Pet.PROJECTION,Pet.PROJECTION.length + 1);
+        projection[projection.length - 1] = PetContract.ShelterEntry.COLUMN_SHELTER_ID;
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(mResolver.query(uri,projection,null,null,PetSort.NAME.orderBy()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.agririze.petproject.benchmark;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.agririze.petproject.data.PetContract;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reading the trigger-maintained stats against computing them with GROUP BY, on a one
+ * million row table.
+ */
+@RunWith(Parameterized.class)
+public class PetStatsBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    @Parameterized.Parameters(name = "kind={0}")
+    public static Collection<Object[]> kinds(){
+        return Arrays.asList(new Object[][]{
+                { PetContract.StatsEntry.KIND_GENDER },
+                { PetContract.StatsEntry.KIND_BREED },
+                { PetContract.StatsEntry.KIND_WEIGHT }
+        });
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final String mKind;
+
+    public PetStatsBenchmark(String kind) {
+        mKind = kind;
+    }
+
+    @BeforeClass
+    public static void populate(){
+        PetFixtures.populate(resolver(),ROWS,new Random(42));
+    }
+
+    @Test
+    public void summaryTable(){
+        Uri uri = PetContract.StatsEntry.buildStatsUri(mKind);
+        assertEquals(readStats(liveUri()),readStats(uri));
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(resolver().query(uri,null,null,null,null));
+        }
+    }
+
+    @Test
+    public void groupBy(){
+        Uri uri = liveUri();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            PetFixtures.drain(resolver().query(uri,null,null,null,null));
+        }
+    }
+
+    private Uri liveUri(){
+        return PetContract.StatsEntry.buildStatsUri(mKind).buildUpon()
+                .appendQueryParameter(PetContract.QUERY_PARAMETER_LIVE,"true")
+                .build();
+    }
+
+    private static List<String> readStats(Uri uri){
+        List<String> rows = new ArrayList<>();
+        Cursor cursor = resolver().query(uri,null,null,null,null);
+        try{
+            while(cursor.moveToNext()){
+                rows.add(cursor.getString(0) + "=" + cursor.getLong(1));
+            }
+        }finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private static ContentResolver resolver(){
+        return InstrumentationRegistry.getInstrumentation().getTargetContext().getContentResolver();
+    }
+}
@@ -0,0 +1,279 @@
+package com.agririze.petproject.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link PetStatements} against SQLiteDatabase.insert/update/query on the same helper,
+ * one pair of methods per operation. It lives in the data package to reach the
+ * package-private statements, and uses a database file of its own so the provider's
+ * caches never see its writes.
+ *
+ * <p>Deleting a pet only sets its tombstone, so the SQLiteDatabase side of delete is an
+ * update as well. That side looks breed ids up in a map loaded once, while the
+ * statements add and look up the breed in SQL as the provider does, so any gap in
+ * their favour is not down to the breeds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetStatementsBenchmark {
+
+    private static final String DATABASE_NAME = "statements_benchmark.db";
+
+    private static final int ROWS = 10_000;
+
+    private static final String[] BREEDS = {
+            "Terrier", "Labrador Retriever", "Beagle", "Poodle", "Siamese", "Persian", "Boxer", "Tabby", null
+    };
+
+    private static final String BY_ID = PetContract.PetEntry._ID + "=?";
+
+    private static final String LIVE_BY_ID = BY_ID + " AND " + PetContract.PetEntry.COLUMN_PET_DELETED_AT + " IS NULL";
+
+    private static final String SUMMARY_COLUMN = PetContract.PetEntry.COLUMN_PET_NAME + " AS "
+            + PetContract.PetEntry.COLUMN_PET_SUMMARY;
+
+    /** What {@link PetStatements#selectById} reads, for SQLiteDatabase.query */
+    private static final String[] COLUMNS = {
+            PetContract.PetEntry._ID,
+            PetContract.PetEntry.COLUMN_PET_NAME,
+            PetContract.PetEntry.COLUMN_PET_BREED,
+            PetContract.PetEntry.COLUMN_PET_GENDER,
+            PetContract.PetEntry.COLUMN_PET_WEIGHT,
+            PetContract.PetEntry.COLUMN_PET_PHOTO,
+            SUMMARY_COLUMN
+    };
+
+    private static Context sContext;
+    private static PetDbHelper sHelper;
+    private static PetStatements sStatements;
+    private static long[] sIds;
+    private static final Map<String, Long> sBreedIds = new HashMap<>();
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final Random mRandom = new Random(42);
+
+    @BeforeClass
+    public static void setUpClass(){
+        sContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        sContext.deleteDatabase(DATABASE_NAME);
+        sHelper = new PetDbHelper(sContext,DATABASE_NAME);
+        SQLiteDatabase database = sHelper.getWritableDatabase();
+        sStatements = new PetStatements(database);
+
+        Random random = new Random(7);
+        sIds = new long[ROWS];
+        database.beginTransaction();
+        try{
+            for(int i = 0; i < ROWS; i++){
+                sIds[i] = sStatements.insert(randomPet(random));
+            }
+            database.setTransactionSuccessful();
+        }finally {
+            database.endTransaction();
+        }
+
+        Cursor cursor = database.query(PetContract.PetEntry.BREEDS_TABLE_NAME,new String[]{
+                PetContract.PetEntry.COLUMN_PET_BREED, PetContract.PetEntry.COLUMN_PET_BREED_ID },
+                null,null,null,null,null);
+        try{
+            while(cursor.moveToNext()){
+                sBreedIds.put(cursor.getString(0),cursor.getLong(1));
+            }
+        }finally {
+            cursor.close();
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass(){
+        sStatements.close();
+        sHelper.close();
+        sContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void insertStatement(){
+        SQLiteDatabase database = sStatements.getDatabase();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            ContentValues values = randomPet(mRandom);
+            state.resumeTiming();
+
+            long id = sStatements.insert(values);
+
+            state.pauseTiming();
+            database.delete(PetContract.PetEntry.TABLE_NAME,BY_ID,new String[]{ String.valueOf(id) });
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void insertDatabase(){
+        SQLiteDatabase database = sStatements.getDatabase();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            ContentValues values = withBreedId(randomPet(mRandom));
+            state.resumeTiming();
+
+            long id = database.insert(PetContract.PetEntry.TABLE_NAME,null,values);
+
+            state.pauseTiming();
+            database.delete(PetContract.PetEntry.TABLE_NAME,BY_ID,new String[]{ String.valueOf(id) });
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void updateStatement(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            long id = randomId();
+            ContentValues values = randomPet(mRandom);
+            state.resumeTiming();
+
+            sStatements.updateById(id,values);
+        }
+    }
+
+    @Test
+    public void updateDatabase(){
+        SQLiteDatabase database = sStatements.getDatabase();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            String[] args = { String.valueOf(randomId()) };
+            ContentValues values = withBreedId(randomPet(mRandom));
+            state.resumeTiming();
+
+            database.update(PetContract.PetEntry.TABLE_NAME,values,LIVE_BY_ID,args);
+        }
+    }
+
+    @Test
+    public void deleteStatement(){
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            long id = randomId();
+            state.resumeTiming();
+
+            sStatements.deleteById(id,System.currentTimeMillis());
+
+            state.pauseTiming();
+            restore(id);
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void deleteDatabase(){
+        SQLiteDatabase database = sStatements.getDatabase();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            long id = randomId();
+            String[] args = { String.valueOf(id) };
+            state.resumeTiming();
+
+            ContentValues values = new ContentValues();
+            values.put(PetContract.PetEntry.COLUMN_PET_DELETED_AT,System.currentTimeMillis());
+            database.update(PetContract.PetEntry.TABLE_NAME,values,LIVE_BY_ID,args);
+
+            state.pauseTiming();
+            restore(id);
+            state.resumeTiming();
+        }
+    }
+
+    /**
+     * The provider's cache-miss read: the constant SELECT by _id through rawQuery.
+     */
+    @Test
+    public void queryStatement(){
+        SQLiteDatabase database = sStatements.getDatabase();
+        String sql = PetStatements.selectById(SUMMARY_COLUMN);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            String[] args = { String.valueOf(randomId()) };
+            state.resumeTiming();
+
+            drain(database.rawQuery(sql,args));
+        }
+    }
+
+    @Test
+    public void queryDatabase(){
+        SQLiteDatabase database = sStatements.getDatabase();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while(state.keepRunning()){
+            state.pauseTiming();
+            String[] args = { String.valueOf(randomId()) };
+            state.resumeTiming();
+
+            drain(database.query(PetDbHelper.PETS_WITH_BREEDS,COLUMNS,LIVE_BY_ID,args,null,null,null));
+        }
+    }
+
+    private long randomId(){
+        return sIds[mRandom.nextInt(sIds.length)];
+    }
+
+    private static void restore(long id){
+        ContentValues values = new ContentValues();
+        values.putNull(PetContract.PetEntry.COLUMN_PET_DELETED_AT);
+        sStatements.getDatabase().update(PetContract.PetEntry.TABLE_NAME,values,BY_ID,
+                new String[]{ String.valueOf(id) });
+    }
+
+    /** Returns values with its breed replaced by the breed's id, from the seeded breeds */
+    private static ContentValues withBreedId(ContentValues values){
+        String breed = PetStatements.breedOf(values);
+        values.remove(PetContract.PetEntry.COLUMN_PET_BREED);
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED_ID,breed==null ? null : sBreedIds.get(breed));
+        return values;
+    }
+
+    private static void drain(Cursor cursor){
+        try{
+            while(cursor.moveToNext()){
+                cursor.getLong(0);
+            }
+        }finally {
+            cursor.close();
+        }
+    }
+
+    /** A full row, as the editor saves */
+    private static ContentValues randomPet(Random random){
+        ContentValues values = new ContentValues();
+        values.put(PetContract.PetEntry.COLUMN_PET_NAME,"Pet " + random.nextInt(100_000));
+        values.put(PetContract.PetEntry.COLUMN_PET_BREED,BREEDS[random.nextInt(BREEDS.length)]);
+        values.put(PetContract.PetEntry.COLUMN_PET_GENDER,random.nextInt(3));
+        values.put(PetContract.PetEntry.COLUMN_PET_WEIGHT,1 + random.nextInt(60));
+        values.putNull(PetContract.PetEntry.COLUMN_PET_PHOTO);
+        return values;
+    }
+}
@@ -0,0 +1,86 @@
+package com.agririze.petproject.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Flings the catalog down through 10,000 pets. FrameTimingMetric reports the CPU time
+ * of each frame drawn while the list moves, so paging and binding stalls show up as
+ * its upper percentiles.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScrollBenchmark {
+
+    private static final String TARGET_PACKAGE = "com.agririze.petproject";
+
+    private static final int PETS = 10_000;
+
+    private static final int ITERATIONS = 10;
+
+    private static final int FLINGS = 5;
+
+    private static final long FIRST_ROW_TIMEOUT_MS = 5_000;
+
+    @Rule
+    public MacrobenchmarkRule mBenchmarkRule = new MacrobenchmarkRule();
+
+    @Before
+    public void setUp() throws IOException {
+        // Returns once PetSeedReceiver has inserted the pets
+        UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()).executeShellCommand(
+                "am broadcast -a " + TARGET_PACKAGE + ".SEED -p " + TARGET_PACKAGE + " --ei count " + PETS);
+    }
+
+    @Test
+    public void flingCatalog(){
+        mBenchmarkRule.measureRepeated(TARGET_PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                new CompilationMode.Partial(BaselineProfileMode.Require,0),
+                null,
+                ITERATIONS,
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.pressHome();
+                        scope.startActivityAndWait();
+                        scope.getDevice().wait(Until.hasObject(By.res(TARGET_PACKAGE,"name")),FIRST_ROW_TIMEOUT_MS);
+                        return Unit.INSTANCE;
+                    }
+                },
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        UiDevice device = scope.getDevice();
+                        UiObject2 list = device.findObject(By.res(TARGET_PACKAGE,"list"));
+                        // Keeps the fling clear of the system's edge gestures
+                        list.setGestureMargin(device.getDisplayWidth() / 5);
+                        for(int i = 0; i < FLINGS; i++){
+                            list.fling(Direction.DOWN);
+                            device.waitForIdle();
+                        }
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+}
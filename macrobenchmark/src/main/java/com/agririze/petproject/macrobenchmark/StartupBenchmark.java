@@ -0,0 +1,85 @@
+package com.agririze.petproject.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Cold starts the catalog until its first row is on screen. StartupTimingMetric reports
+ * timeToInitialDisplayMs for the first frame and timeToFullDisplayMs for the first rows,
+ * which CatalogActivity marks with reportFullyDrawn. Run with and without the baseline
+ * profile to see what it saves.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String TARGET_PACKAGE = "com.agririze.petproject";
+
+    private static final int PETS = 1_000;
+
+    private static final int ITERATIONS = 10;
+
+    private static final long FIRST_ROW_TIMEOUT_MS = 5_000;
+
+    @Rule
+    public MacrobenchmarkRule mBenchmarkRule = new MacrobenchmarkRule();
+
+    @Before
+    public void setUp() throws IOException {
+        // Returns once PetSeedReceiver has inserted the pets
+        UiDevice.getInstance(InstrumentationRegistry.getInstrumentation()).executeShellCommand(
+                "am broadcast -a " + TARGET_PACKAGE + ".SEED -p " + TARGET_PACKAGE + " --ei count " + PETS);
+    }
+
+    @Test
+    public void coldStartup_noCompilation(){
+        startup(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartup_baselineProfile(){
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require,0));
+    }
+
+    private void startup(CompilationMode compilationMode){
+        mBenchmarkRule.measureRepeated(TARGET_PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.pressHome();
+                        return Unit.INSTANCE;
+                    }
+                },
+                new Function1<MacrobenchmarkScope, Unit>() {
+                    @Override
+                    public Unit invoke(MacrobenchmarkScope scope) {
+                        scope.startActivityAndWait();
+                        scope.getDevice().wait(Until.hasObject(By.res(TARGET_PACKAGE,"name")),FIRST_ROW_TIMEOUT_MS);
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+}